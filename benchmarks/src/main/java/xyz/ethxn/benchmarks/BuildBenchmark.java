@@ -0,0 +1,65 @@
+package xyz.ethxn.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.HanziDictionary;
+import xyz.ethxn.builder.HanziBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The fast and complex builds, from a decoded image to the finished art,
+ * across output widths, stroke counts and serial or parallel rendering.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BuildBenchmark {
+
+    @Param("src/Unihan_DictionaryLikeData.txt")
+    public String dictionaryPath;
+
+    @Param("src/Unihan_IRGSources.txt")
+    public String irgSourcesPath;
+
+    @Param({"test.jpg", "banner.png"})
+    public String image;
+
+    @Param({"30", "100", "300"})
+    public int outputWidth;
+
+    @Param({"10", "25"})
+    public int maxStrokeCount;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private final HanziBuilder hanziBuilder = new HanziBuilder();
+    private HanziArt hanziArt;
+
+    @Setup
+    public void setup() throws IOException {
+        hanziArt = new HanziArt(Fixtures.image(image), outputWidth, HanziDictionary.load(dictionaryPath, irgSourcesPath));
+        hanziArt.setMaxStrokeCount(maxStrokeCount);
+        hanziArt.setParallel(parallel);
+        hanziArt.setSeed(42);
+    }
+
+    @Benchmark
+    public StringBuilder buildFastOutput() {
+        hanziArt.setOutputArt(new StringBuilder());
+        hanziBuilder.buildFastOutput(hanziArt);
+        return hanziArt.getOutputArt();
+    }
+
+    @Benchmark
+    public StringBuilder buildComplexOutput() {
+        hanziArt.setOutputArt(new StringBuilder());
+        hanziBuilder.buildComplexOutput(hanziArt);
+        return hanziArt.getOutputArt();
+    }
+}
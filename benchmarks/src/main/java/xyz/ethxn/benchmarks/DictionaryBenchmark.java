@@ -0,0 +1,79 @@
+package xyz.ethxn.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.ethxn.dictionary.DictionarySnapshot;
+import xyz.ethxn.dictionary.GlyphIndex;
+import xyz.ethxn.dictionary.GlyphKdTree;
+import xyz.ethxn.dictionary.UnihanData;
+import xyz.ethxn.dictionary.UnihanLoader;
+import xyz.ethxn.util.Util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the Unihan data and bucketing it into a glyph index, the old
+ * HashMap way against the byte parser and the binary snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DictionaryBenchmark {
+
+    @Param("src/Unihan_DictionaryLikeData.txt")
+    public String dictionaryPath;
+
+    @Param("src/Unihan_IRGSources.txt")
+    public String irgSourcesPath;
+
+    private UnihanData unihanData;
+    private GlyphIndex glyphIndex;
+    private Path snapshot;
+
+    @Setup
+    public void setup() throws IOException {
+        unihanData = UnihanLoader.load(dictionaryPath, irgSourcesPath);
+        glyphIndex = GlyphIndex.fromUnihanData(unihanData);
+        snapshot = Files.createTempFile("hanzi", ".snapshot");
+        DictionarySnapshot.write(glyphIndex, snapshot);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public Map<?, ?>[] hashMapFromTXT() throws IOException {
+        return new Map<?, ?>[] {
+                Util.hashMapFromTXT("kFourCornerCode", dictionaryPath),
+                Util.hashMapFromTXT("kTotalStrokes", irgSourcesPath)
+        };
+    }
+
+    @Benchmark
+    public UnihanData unihanLoader() throws IOException {
+        return UnihanLoader.load(dictionaryPath, irgSourcesPath);
+    }
+
+    @Benchmark
+    public GlyphIndex bucketing() {
+        return GlyphIndex.fromUnihanData(unihanData);
+    }
+
+    @Benchmark
+    public GlyphIndex snapshotLoad() throws IOException {
+        return DictionarySnapshot.load(snapshot);
+    }
+
+    @Benchmark
+    public GlyphKdTree kdTree() {
+        return GlyphKdTree.fromGlyphIndex(glyphIndex);
+    }
+}
@@ -0,0 +1,36 @@
+package xyz.ethxn.benchmarks;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * The example images bundled with the library, used as benchmark fixtures.
+ */
+final class Fixtures {
+
+    private Fixtures() {}
+
+    /**
+     * Reads a bundled example image.
+     * @param name {@code test.jpg} or {@code banner.png}
+     * @return the decoded image
+     */
+    static BufferedImage image(String name) {
+        String resource = switch (name) {
+            case "test.jpg" -> "/xyz/ethxn/examples/example/test.jpg";
+            case "banner.png" -> "/xyz/ethxn/examples/banner/banner.png";
+            default -> throw new IllegalArgumentException("'" + name + "'" + " is not a bundled image.");
+        };
+        try (InputStream in = Fixtures.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException(resource + " is missing from the classpath");
+            }
+            return ImageIO.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package xyz.ethxn.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.ethxn.image.LuminanceGrid;
+import xyz.ethxn.util.Util;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resizing an image and reading its brightness, the old Graphics2D resize
+ * with per-pixel getRGB against the fused luminance grid.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PreprocessBenchmark {
+
+    @Param({"test.jpg", "banner.png"})
+    public String image;
+
+    @Param({"30", "100", "300"})
+    public int outputWidth;
+
+    private BufferedImage source;
+
+    @Setup
+    public void setup() {
+        source = Fixtures.image(image);
+    }
+
+    @Benchmark
+    public int resizeImage() {
+        BufferedImage resized = Util.resizeImage(source, outputWidth);
+        int sum = 0;
+        for (int y = 0; y < resized.getHeight(); y++) {
+            for (int x = 0; x < resized.getWidth(); x++) {
+                sum += Util.getPixelBrightness(resized, x, y);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public LuminanceGrid luminanceGrid() {
+        return LuminanceGrid.fromImage(source, outputWidth);
+    }
+}
@@ -1,24 +1,62 @@
 package xyz.ethxn;
 
 import xyz.ethxn.builder.HanziBuilder;
+import xyz.ethxn.builder.ProgressiveListener;
+import xyz.ethxn.builder.ProgressiveRenderer;
+import xyz.ethxn.cache.RenderCache;
+import xyz.ethxn.dictionary.GlyphAtlas;
+import xyz.ethxn.dictionary.GlyphIndex;
+import xyz.ethxn.image.ImageDecoder;
+import xyz.ethxn.metrics.RenderListener;
+import xyz.ethxn.metrics.RenderPhase;
+import xyz.ethxn.output.AppendableRowSink;
+import xyz.ethxn.output.ImageRowSink;
+import xyz.ethxn.output.RowSink;
+import xyz.ethxn.output.Utf8RowSink;
 import xyz.ethxn.util.Util;
 
+import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.*;
-
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A single render. Holds the options, random number generator and output
+ * of one piece of art; the glyph data itself lives in a shared
+ * {@link HanziDictionary}. A HanziArt object is not thread-safe, use one
+ * per thread.
+ */
 public class HanziArt {
 
-    public static final Random random = new Random();
-    private List<Set<String>> strokeKeySets = new ArrayList<>();
-    private Set<String> strokeKeys = new HashSet<>();
+    private long seed;                  // seed of the current build
+    private boolean seeded = false;     // whether the seed was set by the user, or is picked per build
+    private Executor executor;          // renders row bands in parallel when set
+    private RenderCache cache;          // reuses grids and art of earlier renders when set
+    private RenderListener renderListener = RenderListener.NONE;
+    private HanziDictionary dictionary; // shared glyph data
     private StringBuilder outputArt = new StringBuilder();
-    private String buildType = "fast";  // fast or complex
+    private String buildType = "fast";  // fast, complex, nearest or density
+    private int blockSize = 2;          // pixels per side of the block matched to each character in nearest mode
+    private boolean dither = false;     // spreads each cell's quantization error to its neighbours
     private BufferedImage image;        // the image to process
+    private Path imagePath;             // or an image file, decoded at the size each build needs
+    private byte[] imageBytes;          // or an encoded image, decoded the same way
+    private String imageHash;           // SHA-256 of the encoded image, computed on first use
+    private BasicFileAttributes hashedFile; // size and modified time of the image file when it was hashed
+    private Rectangle sourceRegion;     // the part of the image to render, null for all of it
     private int outputWidth = 30;       // the width of the output image
     private int maxStrokeCount = 25;    // 1-25, higher usually means more detail but longer processing time
-    private Map<String, String> strokeCountMap;     // hashmap of unicode keys and stroke counts
-    private Map<String, String> fourCornerCodeMap;  // hashmap of unicode keys and four corner codes
     private boolean outputProgress = false;
 
 
@@ -28,40 +66,118 @@ public class HanziArt {
     public HanziArt(){}
 
     public HanziArt(BufferedImage image, int outputWidth, String unihanDictionaryPath, String unihanIRGSourcesPath) throws IOException {
+        this(image, outputWidth, HanziDictionary.load(unihanDictionaryPath, unihanIRGSourcesPath));
+    }
+
+    /**
+     * Constructs a new HanziArt object using an already loaded dictionary.
+     * @param image the image to process
+     * @param outputWidth the width of the output image
+     * @param dictionary the dictionary, can be shared with other HanziArt objects
+     */
+    public HanziArt(BufferedImage image, int outputWidth, HanziDictionary dictionary) {
         this.image = image;
         this.outputWidth = outputWidth;
-        this.strokeCountMap = Util.hashMapFromTXT("kTotalStrokes", unihanIRGSourcesPath);
-        this.fourCornerCodeMap = Util.hashMapFromTXT("kFourCornerCode", unihanDictionaryPath);
+        this.dictionary = dictionary;
     }
 
     /**
      * Builds the output art.
      */
     public void build() {
-        // sets up key sets
-        for (int i = 1; i <= this.getMaxStrokeCount(); i++) {
-            Set<String> keysForStrokeCount = new HashSet<>();
-            for (Map.Entry<String, String> entry : strokeCountMap.entrySet()) {
-                if (entry.getValue().equals(Integer.toString(i))) {
-                    keysForStrokeCount.add(entry.getKey());
-                }
-            }
-            this.strokeKeySets.add(keysForStrokeCount);
+        this.outputArt = new StringBuilder();
+        try {
+            render(new AppendableRowSink(outputArt));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringBuilder never throws
         }
+    }
 
-        HanziBuilder builder = new HanziBuilder();
-        switch (this.getBuildType()) {
-            case "fast":
-                builder.buildFastOutput(this);
-                break;
-            case "complex":
-                builder.buildComplexOutput(this);
-                break;
-            default:
-                throw new IndexOutOfBoundsException("Invalid build type");
+    /**
+     * Builds the output art straight into a sink, one row at a time, without
+     * keeping it in {@link #getOutputArt()}.
+     * @param sink the sink to receive the rows
+     * @throws IOException if the sink fails
+     */
+    public void render(RowSink sink) throws IOException {
+        if (dictionary == null) {
+            throw new IllegalStateException("No dictionary set");
+        }
+        if (!seeded) {
+            this.seed = ThreadLocalRandom.current().nextLong();
+        }
+        if (cache != null) {
+            cache.render(this, sink);
+        } else {
+            new HanziBuilder().build(this, sink);
         }
     }
 
+    /**
+     * Renders coarse to fine, handing each pass to a listener as soon as it's
+     * done. The last pass is the same art {@link #build()} gives.
+     * @param listener receives each pass, coarsest first
+     * @throws IOException if the image can't be decoded or the listener fails
+     * @see ProgressiveRenderer
+     */
+    public void renderProgressive(ProgressiveListener listener) throws IOException {
+        if (dictionary == null) {
+            throw new IllegalStateException("No dictionary set");
+        }
+        if (!seeded) {
+            this.seed = ThreadLocalRandom.current().nextLong();
+        }
+        new ProgressiveRenderer().render(this, listener);
+    }
+
+    /**
+     * Draws the output art as an image, with the glyph atlas of the dictionary.
+     * To get the text too from the same render, pass an {@link ImageRowSink} and
+     * an {@link AppendableRowSink} to {@link #render(RowSink)} through a
+     * {@link xyz.ethxn.output.TeeRowSink}.
+     * @return the image, one atlas cell per character
+     * @throws IOException if the image can't be decoded
+     * @throws IllegalStateException if the dictionary has no glyph atlas, or
+     *         its atlas is missing glyphs this render can pick
+     */
+    public BufferedImage buildImage() throws IOException {
+        if (dictionary == null || dictionary.getGlyphAtlas() == null) {
+            throw new IllegalStateException("The dictionary has no glyph atlas");
+        }
+        GlyphAtlas glyphAtlas = dictionary.getGlyphAtlas();
+        // nearest and density pick from the whole index, the others only up to the max stroke count
+        int pickable = buildType.equals("fast") || buildType.equals("complex")
+                ? Math.min(maxStrokeCount, getGlyphIndex().getMaxStrokeCount())
+                : getGlyphIndex().getMaxStrokeCount();
+        if (glyphAtlas.getMaxStrokeCount() < pickable) {
+            throw new IllegalStateException("The glyph atlas only has glyphs up to " + glyphAtlas.getMaxStrokeCount()
+                    + " strokes, a " + buildType + " render can pick glyphs with up to " + pickable);
+        }
+        ImageRowSink sink = new ImageRowSink(glyphAtlas);
+        render(sink);
+        return sink.getImage();
+    }
+
+    /**
+     * Streams the output art to a stream as UTF-8. Each row is written and
+     * flushed on a background thread while the next one is rendered.
+     * @param out the stream to write to, left open
+     * @throws IOException if the stream fails
+     */
+    public void render(OutputStream out) throws IOException {
+        render(new Utf8RowSink(out, true));
+    }
+
+    /**
+     * Streams the output art to a writer, one row at a time.
+     * @param out the writer to write to, left open
+     * @throws IOException if the writer fails
+     */
+    public void render(Writer out) throws IOException {
+        render(new AppendableRowSink(out));
+        out.flush();
+    }
+
     /**
      * Builds the output art.
      * @param outputProgress whether to output build progress to the console
@@ -71,20 +187,86 @@ public class HanziArt {
         this.build();
     }
 
-    /** todo: update javadoc
-     * Regenerates the stroke key set if the stroke count of the image does not match the stroke count of the cached keys.
-     * @param strokeCount max stroke count of the image
+    public GlyphIndex getGlyphIndex() {
+        return dictionary.getGlyphIndex();
+    }
+
+    /**
+     * Seeds the build, so the same image and options always give the same art,
+     * no matter how many threads render it.
+     * @param seed the seed
      */
-    public void regenerateStrokeKeySet(int strokeCount){
-        if (strokeCount <= 1){
-            this.strokeKeys.clear();
-            this.strokeKeys.add("U+3000");
-            return;
-        } else if (strokeCount >= this.getMaxStrokeCount()){
-            strokeCount = this.maxStrokeCount;
-        }
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.seeded = true;
+    }
+
+    /**
+     * Goes back to picking a new seed for every build.
+     */
+    public void clearSeed() {
+        this.seeded = false;
+    }
+
+    /**
+     * Returns the seed of the last build. Passing it to {@link #setSeed(long)}
+     * reproduces that build.
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return whether the seed was set with {@link #setSeed(long)}, rather than picked per build
+     */
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    /**
+     * Renders through a cache, which can be shared with other HanziArt objects.
+     * @param cache the cache, or {@code null} to render without one
+     */
+    public void setCache(RenderCache cache) {
+        this.cache = cache;
+    }
+
+    public RenderCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Reports the timings and counts of each render to a listener.
+     * @param renderListener the listener, or {@code null} for none
+     */
+    public void setRenderListener(RenderListener renderListener) {
+        this.renderListener = renderListener == null ? RenderListener.NONE : renderListener;
+    }
+
+    public RenderListener getRenderListener() {
+        return renderListener;
+    }
 
-        strokeKeys = strokeKeySets.get(strokeCount - 1);
+    /**
+     * Renders the output in parallel row bands on the given executor,
+     * or on the calling thread if {@code null}.
+     * @param executor the executor to render on
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Turns parallel rendering on the common fork-join pool on or off.
+     * @param parallel whether to render in parallel
+     */
+    public void setParallel(boolean parallel) {
+        this.executor = parallel ? ForkJoinPool.commonPool() : null;
+    }
+
+    public Executor getExecutor() {
+        return executor;
     }
 
     public void setOutputArt(StringBuilder outputArt){
@@ -97,12 +279,155 @@ public class HanziArt {
 
     public void setImage(BufferedImage image) {
         this.image = image;
+        this.imagePath = null;
+        this.imageBytes = null;
+        this.imageHash = null;
+        this.hashedFile = null;
+    }
+
+    /**
+     * Sets an image file to render. Only the resolution and region a build
+     * needs are decoded, so huge images don't have to fit in memory.
+     * @param imagePath the image file
+     */
+    public void setImage(Path imagePath) {
+        this.image = null;
+        this.imagePath = imagePath;
+        this.imageBytes = null;
+        this.imageHash = null;
+        this.hashedFile = null;
+    }
+
+    /**
+     * Sets an encoded image to render, read fully from the stream now, but
+     * decoded only at the resolution and region a build needs.
+     * @param in the image stream, left open
+     * @throws IOException if the stream can't be read
+     */
+    public void setImage(InputStream in) throws IOException {
+        this.image = null;
+        this.imagePath = null;
+        this.imageBytes = in.readAllBytes();
+        this.imageHash = null;
+        this.hashedFile = null;
     }
 
     public BufferedImage getImage() {
         return image;
     }
 
+    /**
+     * Returns the image to render, decoding it if it was set as a file or stream.
+     * @param minWidth the width the decoded image needs to be at least
+     * @return the image, cropped to the source region
+     * @throws IOException if the image can't be decoded
+     */
+    public BufferedImage readImage(int minWidth) throws IOException {
+        if (image != null) {
+            if (sourceRegion == null) {
+                return image;
+            }
+            Rectangle region = sourceRegion.intersection(new Rectangle(image.getWidth(), image.getHeight()));
+            return image.getSubimage(region.x, region.y, region.width, region.height);
+        }
+        if (imagePath != null) {
+            return ImageDecoder.decode(imagePath, minWidth, sourceRegion);
+        }
+        if (imageBytes != null) {
+            return ImageDecoder.decode(new ByteArrayInputStream(imageBytes), minWidth, sourceRegion);
+        }
+        throw new IllegalStateException("No image set");
+    }
+
+    /**
+     * Returns the size of the image to render, within the source region. Only
+     * the header of an image file or stream is read.
+     * @return the width and height in source pixels
+     * @throws IOException if the image can't be read
+     */
+    public Dimension getImageSize() throws IOException {
+        Dimension size;
+        if (image != null) {
+            size = new Dimension(image.getWidth(), image.getHeight());
+        } else if (imagePath != null) {
+            size = ImageDecoder.size(imagePath);
+        } else if (imageBytes != null) {
+            size = ImageDecoder.size(new ByteArrayInputStream(imageBytes));
+        } else {
+            throw new IllegalStateException("No image set");
+        }
+        if (sourceRegion == null) {
+            return size;
+        }
+        Rectangle region = sourceRegion.intersection(new Rectangle(size));
+        if (region.isEmpty()) {
+            throw new IOException("region " + sourceRegion + " is outside the image " + size);
+        }
+        return region.getSize();
+    }
+
+    /**
+     * Decodes part of the image to render with a fixed subsampling step, so
+     * parts decoded separately line up with each other, see
+     * {@link ImageDecoder#decodeSubsampled(Path, Rectangle, int)}.
+     * @param region the part, within the source region
+     * @param subsampling the step, 1 to decode every pixel
+     * @return the part of the image
+     * @throws IOException if the image can't be decoded
+     */
+    public BufferedImage readImage(Rectangle region, int subsampling) throws IOException {
+        Rectangle part = region;
+        if (sourceRegion != null) {
+            part = new Rectangle(region);
+            part.translate(sourceRegion.x, sourceRegion.y);
+            part = part.intersection(sourceRegion);
+        }
+        if (image != null) {
+            return ImageDecoder.subsample(image, part, subsampling);
+        }
+        if (imagePath != null) {
+            return ImageDecoder.decodeSubsampled(imagePath, part, subsampling);
+        }
+        if (imageBytes != null) {
+            return ImageDecoder.decodeSubsampled(new ByteArrayInputStream(imageBytes), part, subsampling);
+        }
+        throw new IllegalStateException("No image set");
+    }
+
+    /**
+     * Returns the SHA-256 hash of the encoded image, hashed once per image.
+     * An image file is hashed again when its size or modified time changes.
+     * @return the hash as hex, or {@code null} if the image was set as a BufferedImage
+     * @throws IOException if the image file can't be read
+     */
+    public String getImageHash() throws IOException {
+        if (imagePath != null) {
+            BasicFileAttributes file = Files.readAttributes(imagePath, BasicFileAttributes.class);
+            if (imageHash == null || hashedFile.size() != file.size()
+                    || !hashedFile.lastModifiedTime().equals(file.lastModifiedTime())) {
+                try (InputStream in = Files.newInputStream(imagePath)) {
+                    imageHash = Util.sha256(in);
+                }
+                hashedFile = file;
+            }
+        } else if (imageHash == null && imageBytes != null) {
+            imageHash = Util.sha256(new ByteArrayInputStream(imageBytes));
+        }
+        return imageHash;
+    }
+
+    /**
+     * Renders only part of the image.
+     * @param sourceRegion the region in source pixels, or {@code null} for the whole image
+     */
+    public void setSourceRegion(Rectangle sourceRegion) {
+        this.sourceRegion = sourceRegion;
+    }
+
+    public Rectangle getSourceRegion() {
+        return sourceRegion;
+    }
+
     public void setOutputWidth(int outputWidth) {
         this.outputWidth = outputWidth;
     }
@@ -118,33 +443,40 @@ public class HanziArt {
         return maxStrokeCount;
     }
 
-    public void setStrokeCountMap(String unihanIRGSourcesPath) throws IOException {
-        this.strokeCountMap = Util.hashMapFromTXT("kTotalStrokes", unihanIRGSourcesPath);
-    }
-
-    public Map<String, String> getStrokeCountMap() {
-        return strokeCountMap;
-    }
-
-    public void setFourCornerCodeMap(String unihanDictionaryPath) throws IOException {
-        this.fourCornerCodeMap = Util.hashMapFromTXT("kFourCornerCode", unihanDictionaryPath);
+    /**
+     * Loads a dictionary for this object only. To share one between renders, use
+     * {@link #setDictionary(HanziDictionary)} instead.
+     * @param txtPaths the paths to the Unihan txt files, e.g. the dictionary and IRG sources files
+     * @throws IOException if a txt file is not found
+     */
+    public void setUnihanData(String... txtPaths) throws IOException {
+        long start = System.nanoTime();
+        this.dictionary = HanziDictionary.load(txtPaths);
+        renderListener.phaseCompleted(RenderPhase.LOAD, System.nanoTime() - start);
     }
 
-    public Map<String, String> getFourCornerCodeMap() {
-        return fourCornerCodeMap;
+    /**
+     * Loads a dictionary for this object only from a precompiled snapshot.
+     * @param snapshotPath the path to the snapshot file
+     * @throws IOException if the snapshot is not found or is invalid
+     */
+    public void setDictionarySnapshot(String snapshotPath) throws IOException {
+        long start = System.nanoTime();
+        this.dictionary = HanziDictionary.fromSnapshot(snapshotPath);
+        renderListener.phaseCompleted(RenderPhase.LOAD, System.nanoTime() - start);
     }
 
-    public void setStrokeKeys(Set<String> strokeKeys) {
-        this.strokeKeys = strokeKeys;
+    public void setDictionary(HanziDictionary dictionary) {
+        this.dictionary = dictionary;
     }
 
-    public Set<String> getStrokeKeys() {
-        return strokeKeys;
+    public HanziDictionary getDictionary() {
+        return dictionary;
     }
 
     /**
      * Set's the build type for the HanziArt object.
-     * @param buildType The build type, {@code 0 = fast, 1 = complex}
+     * @param buildType The build type, {@code 0 = fast, 1 = complex, 2 = nearest, 3 = density}
      * @throws RuntimeException if the build type is invalid
      */
     public void setBuildType(int buildType){
@@ -155,6 +487,12 @@ public class HanziArt {
             case 1:
                 this.buildType = "complex";
                 break;
+            case 2:
+                this.buildType = "nearest";
+                break;
+            case 3:
+                this.buildType = "density";
+                break;
             default:
                 throw new IndexOutOfBoundsException("'"+buildType+"'"+" is an invalid build type.");
         }
@@ -162,7 +500,7 @@ public class HanziArt {
 
     /**
      * Set's the build type for the HanziArt object.
-     * @param buildType The build type, {@code "fast" or "complex"}
+     * @param buildType The build type, {@code "fast", "complex", "nearest" or "density"}
      * @throws RuntimeException if the build type is invalid
      */
     public void setBuildType(String buildType) {
@@ -173,19 +511,48 @@ public class HanziArt {
         return buildType;
     }
 
-    public boolean isOutputProgress() {
-        return outputProgress;
+    /**
+     * Sets the size of the pixel block matched to each character in nearest mode.
+     * @param blockSize the block size, {@code 2, 3 or 4} for 2x2, 3x3 or 4x4 blocks
+     * @throws IllegalArgumentException if the block size is out of range
+     */
+    public void setBlockSize(int blockSize) {
+        if (blockSize < 2 || blockSize > 4) {
+            throw new IllegalArgumentException("'" + blockSize + "'" + " is an invalid block size.");
+        }
+        this.blockSize = blockSize;
     }
 
-    public void setOutputProgress(boolean outputProgress) {
-        this.outputProgress = outputProgress;
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Turns error diffusion dithering on or off. Dithering spreads the difference
+     * between a cell's brightness and the brightness of the stroke count or
+     * density level picked for it to the neighbouring cells, which smooths out
+     * banding in gradients. Applies to the fast, complex and density build types.
+     * Dithered rows depend on the rows above them, so they are always rendered
+     * on one thread.
+     * @param dither whether to dither
+     */
+    public void setDither(boolean dither) {
+        this.dither = dither;
+    }
+
+    public boolean isDither() {
+        return dither;
     }
 
-    public List<Set<String>> getStrokeKeySets() {
-        return strokeKeySets;
+    public boolean isOutputProgress() {
+        return outputProgress;
     }
 
-    public void setStrokeKeySets(List<Set<String>> strokeKeySets) {
-        this.strokeKeySets = strokeKeySets;
+    /**
+     * Prints a line to the console as each row is emitted, on top of the render listener.
+     * @param outputProgress whether to print progress
+     */
+    public void setOutputProgress(boolean outputProgress) {
+        this.outputProgress = outputProgress;
     }
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+package xyz.ethxn;
+
+import xyz.ethxn.dictionary.DictionarySnapshot;
+import xyz.ethxn.dictionary.GlyphAtlas;
+import xyz.ethxn.dictionary.GlyphIndex;
+import xyz.ethxn.dictionary.GlyphKdTree;
+import xyz.ethxn.dictionary.InkDensityTable;
+import xyz.ethxn.dictionary.UnihanLoader;
+import xyz.ethxn.metrics.DictionaryLoadEvent;
+
+import java.awt.Font;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The glyph data shared by every render. A dictionary is immutable once
+ * loaded, so one instance can be kept in memory and handed to any number
+ * of {@link HanziArt} objects, on any number of threads.
+ */
+public final class HanziDictionary {
+
+    private final GlyphIndex glyphIndex;
+    private final GlyphKdTree glyphTree;
+    private final InkDensityTable inkDensityTable; // null until calibrated or loaded
+    private final GlyphAtlas glyphAtlas;           // null until rasterized, for image output
+
+    /**
+     * Wraps an already built glyph index, and builds the lookup structures derived from it.
+     * @param glyphIndex the glyph index
+     */
+    public HanziDictionary(GlyphIndex glyphIndex) {
+        this(glyphIndex, GlyphKdTree.fromGlyphIndex(glyphIndex), null, null);
+    }
+
+    private HanziDictionary(GlyphIndex glyphIndex, GlyphKdTree glyphTree, InkDensityTable inkDensityTable, GlyphAtlas glyphAtlas) {
+        this.glyphIndex = glyphIndex;
+        this.glyphTree = glyphTree;
+        this.inkDensityTable = inkDensityTable;
+        this.glyphAtlas = glyphAtlas;
+    }
+
+    /**
+     * Loads a dictionary from Unihan txt files.
+     * @param txtPaths the paths to the Unihan txt files, e.g. the dictionary and IRG sources files
+     * @return the dictionary
+     * @throws IOException if a txt file is not found
+     */
+    public static HanziDictionary load(String... txtPaths) throws IOException {
+        DictionaryLoadEvent event = new DictionaryLoadEvent();
+        event.begin();
+        return loaded(event, String.join(", ", txtPaths), GlyphIndex.fromUnihanData(UnihanLoader.load(txtPaths)));
+    }
+
+    /**
+     * Loads a dictionary from a precompiled snapshot.
+     * @param snapshotPath the path to the snapshot file
+     * @return the dictionary
+     * @throws IOException if the snapshot is not found or is invalid
+     * @see DictionarySnapshot
+     */
+    public static HanziDictionary fromSnapshot(String snapshotPath) throws IOException {
+        DictionaryLoadEvent event = new DictionaryLoadEvent();
+        event.begin();
+        return loaded(event, snapshotPath, DictionarySnapshot.load(Path.of(snapshotPath)));
+    }
+
+    /**
+     * Loads the snapshot bundled on the classpath.
+     * @return the dictionary
+     * @throws IOException if there is no bundled snapshot, or it is invalid
+     */
+    public static HanziDictionary bundled() throws IOException {
+        DictionaryLoadEvent event = new DictionaryLoadEvent();
+        event.begin();
+        return loaded(event, DictionarySnapshot.BUNDLED_RESOURCE, DictionarySnapshot.loadBundled());
+    }
+
+    private static HanziDictionary loaded(DictionaryLoadEvent event, String source, GlyphIndex glyphIndex) {
+        HanziDictionary dictionary = new HanziDictionary(glyphIndex);
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.glyphs = glyphIndex.size();
+            event.commit();
+        }
+        return dictionary;
+    }
+
+    /**
+     * Returns a copy of this dictionary that also has an ink density table, for the density build type.
+     * @param inkDensityTable the table, see {@link InkDensityTable#calibrate}
+     * @return the new dictionary
+     */
+    public HanziDictionary withInkDensityTable(InkDensityTable inkDensityTable) {
+        return new HanziDictionary(glyphIndex, glyphTree, inkDensityTable, glyphAtlas);
+    }
+
+    /**
+     * Returns a copy of this dictionary with an ink density table loaded from a file.
+     * @param inkDensityTablePath the path to the table file
+     * @return the new dictionary
+     * @throws IOException if the table is not found or is invalid
+     */
+    public HanziDictionary withInkDensityTable(String inkDensityTablePath) throws IOException {
+        return withInkDensityTable(InkDensityTable.load(Path.of(inkDensityTablePath)));
+    }
+
+    /**
+     * Returns a copy of this dictionary that also has a glyph atlas, for image output.
+     * @param glyphAtlas the atlas, see {@link GlyphAtlas#rasterize}
+     * @return the new dictionary
+     */
+    public HanziDictionary withGlyphAtlas(GlyphAtlas glyphAtlas) {
+        return new HanziDictionary(glyphIndex, glyphTree, inkDensityTable, glyphAtlas);
+    }
+
+    /**
+     * Returns a copy of this dictionary with every glyph drawn into an atlas, light on dark.
+     * @param font the font to draw with
+     * @param cellSize the size of one character cell in pixels
+     * @return the new dictionary
+     */
+    public HanziDictionary withGlyphAtlas(Font font, int cellSize) {
+        return withGlyphAtlas(GlyphAtlas.rasterize(glyphIndex, font, cellSize));
+    }
+
+    public GlyphIndex getGlyphIndex() {
+        return glyphIndex;
+    }
+
+    public GlyphKdTree getGlyphTree() {
+        return glyphTree;
+    }
+
+    /**
+     * @return the ink density table, or {@code null} if there isn't one
+     */
+    public InkDensityTable getInkDensityTable() {
+        return inkDensityTable;
+    }
+
+    /**
+     * @return the glyph atlas, or {@code null} if there isn't one
+     */
+    public GlyphAtlas getGlyphAtlas() {
+        return glyphAtlas;
+    }
+}
@@ -0,0 +1,43 @@
+package xyz.ethxn.animation;
+
+import xyz.ethxn.image.ImageDecoder;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Reads the images of a directory as frames, in file name order. Each file
+ * is decoded only when its frame is asked for, subsampled to the width the
+ * render needs.
+ */
+public class DirectoryFrameSource implements FrameSource {
+
+    private final List<Path> files;
+    private final int minWidth;
+    private int index;
+
+    /**
+     * Lists the frames of a directory.
+     * @param directory the directory, every regular file in it is a frame
+     * @param minWidth the width the decoded frames need to be at least, the output width times the grid scale
+     * @throws IOException if the directory can't be listed
+     */
+    public DirectoryFrameSource(Path directory, int minWidth) throws IOException {
+        try (Stream<Path> entries = Files.list(directory)) {
+            this.files = entries.filter(Files::isRegularFile).sorted().toList();
+        }
+        this.minWidth = minWidth;
+    }
+
+    @Override
+    public BufferedImage next() throws IOException {
+        if (index >= files.size()) {
+            return null;
+        }
+        return ImageDecoder.decode(files.get(index++), minWidth, null);
+    }
+}
@@ -0,0 +1,60 @@
+package xyz.ethxn.animation;
+
+/**
+ * The cells of a frame whose glyph changed since the frame before.
+ * Cells are listed in row major order.
+ */
+public final class FrameDelta {
+
+    private final int frame;
+    private final int columns;
+    private final int[] cells;      // y * columns + x of each changed cell
+    private final int[] codePoints; // the new glyph of each changed cell
+    private final int size;
+
+    FrameDelta(int frame, int columns, int[] cells, int[] codePoints, int size) {
+        this.frame = frame;
+        this.columns = columns;
+        this.cells = cells;
+        this.codePoints = codePoints;
+        this.size = size;
+    }
+
+    /**
+     * @return the index of the frame, from 0
+     */
+    public int getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return the number of changed cells
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i the changed cell, 0 to {@link #size()}
+     * @return its column
+     */
+    public int x(int i) {
+        return cells[i] % columns;
+    }
+
+    /**
+     * @param i the changed cell, 0 to {@link #size()}
+     * @return its row
+     */
+    public int y(int i) {
+        return cells[i] / columns;
+    }
+
+    /**
+     * @param i the changed cell, 0 to {@link #size()}
+     * @return its new glyph
+     */
+    public int codePoint(int i) {
+        return codePoints[i];
+    }
+}
@@ -0,0 +1,163 @@
+package xyz.ethxn.animation;
+
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.builder.HanziBuilder;
+import xyz.ethxn.builder.RowRenderer;
+import xyz.ethxn.dictionary.InkDensityTable;
+import xyz.ethxn.image.LuminanceGrid;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Renders the frames of an animation so they don't flicker. Every cell
+ * remembers the quantized brightness it was drawn for: the stroke count of
+ * each of its grid pixels, or their tone level in density mode. A cell whose
+ * quantized brightness is the same as in the last frame keeps its glyph,
+ * and only rows with a changed cell are rendered again, so the cost of
+ * picking glyphs follows how much of the frame changed.
+ *
+ * <p>The options of the given HanziArt object are used for every frame.
+ * Dithering is skipped, as it would carry error into cells that aren't
+ * rendered again. Not thread-safe; render the frames of one animation in order.
+ */
+public class FrameSequenceRenderer {
+
+    /** Spacing between the frame seeds, so each frame draws from its own streams. */
+    private static final long FRAME_SEED_GAMMA = 0xBF58476D1CE4E5B9L;
+
+    private final HanziArt hanziArt;
+    private final HanziBuilder hanziBuilder = new HanziBuilder();
+    private final long seed;
+    private int frame;
+    private int rows;
+    private int columns;
+    private int scale;
+    private byte[] levels = new byte[0];   // quantized brightness of each grid pixel in the last frame, row major
+    private int[] codePoints = new int[0]; // glyph of each cell in the last frame
+    private int[] rowCodePoints = new int[0];
+    private int[] changedCells = new int[0];
+    private int[] changedCodePoints = new int[0];
+
+    /**
+     * Creates a renderer for one animation.
+     * @param hanziArt the options and dictionary to render with. Its image is replaced by each frame
+     */
+    public FrameSequenceRenderer(HanziArt hanziArt) {
+        this.hanziArt = hanziArt;
+        this.seed = hanziArt.isSeeded() ? hanziArt.getSeed() : ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * Renders every frame of a source.
+     * @param source the frames, closed afterwards
+     * @param sink the sink to receive each frame and delta
+     * @return the number of frames rendered
+     * @throws IOException if a frame can't be read, or the sink fails
+     */
+    public int renderAll(FrameSource source, FrameSink sink) throws IOException {
+        try (source) {
+            int count = 0;
+            for (BufferedImage image = source.next(); image != null; image = source.next()) {
+                renderFrame(image, sink);
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Renders the next frame.
+     * @param image the frame
+     * @param sink the sink to receive the frame and its delta
+     * @return the cells that changed since the last frame
+     * @throws IOException if the sink fails
+     */
+    public FrameDelta renderFrame(BufferedImage image, FrameSink sink) throws IOException {
+        boolean dither = hanziArt.isDither();
+        boolean seeded = hanziArt.isSeeded();
+        long previousSeed = hanziArt.getSeed();
+        hanziArt.setImage(image);
+        hanziArt.setDither(false);
+        hanziArt.setSeed(seed + frame * FRAME_SEED_GAMMA);
+        FrameDelta delta;
+        try {
+            delta = diff(hanziBuilder.prepareGrid(hanziArt));
+        } finally {
+            hanziArt.setDither(dither);
+            if (seeded) {
+                hanziArt.setSeed(previousSeed);
+            } else {
+                hanziArt.clearSeed();
+            }
+        }
+
+        sink.acceptFrame(frame, rows, columns, codePoints);
+        sink.acceptDelta(delta);
+        frame++;
+        return delta;
+    }
+
+    private FrameDelta diff(LuminanceGrid grid) {
+        RowRenderer renderer = hanziBuilder.rowRenderer(hanziArt, grid);
+        int scale = HanziBuilder.gridScale(hanziArt);
+        boolean resized = renderer.getRows() != rows || renderer.getColumns() != columns || scale != this.scale;
+        if (resized) {
+            rows = renderer.getRows();
+            columns = renderer.getColumns();
+            this.scale = scale;
+            levels = new byte[rows * scale * columns * scale];
+            codePoints = new int[rows * columns];
+            rowCodePoints = new int[columns];
+            changedCells = new int[rows * columns];
+            changedCodePoints = new int[rows * columns];
+        }
+
+        int maxStrokeCount = hanziArt.getMaxStrokeCount();
+        InkDensityTable inkDensityTable = hanziArt.getBuildType().equals("density")
+                ? hanziArt.getDictionary().getInkDensityTable() : null;
+        byte[] pixels = grid.getPixels();
+        int gridWidth = grid.getWidth();
+        int levelsWidth = columns * scale;
+
+        int changed = 0;
+        for (int y = 0, cell = 0; y < rows; y++) {
+            boolean rendered = false;
+            for (int x = 0; x < columns; x++, cell++) {
+                // the cell changed if the quantized brightness of any of its grid pixels did
+                boolean same = !resized;
+                for (int blockY = 0; blockY < scale; blockY++) {
+                    int i = (y * scale + blockY) * gridWidth + x * scale;
+                    int l = (y * scale + blockY) * levelsWidth + x * scale;
+                    for (int blockX = 0; blockX < scale; blockX++) {
+                        int brightness = pixels[i + blockX] & 0xFF;
+                        byte level = (byte) (inkDensityTable != null
+                                ? inkDensityTable.level(brightness)
+                                : HanziBuilder.strokeCount(brightness, maxStrokeCount));
+                        if (levels[l + blockX] != level) {
+                            levels[l + blockX] = level;
+                            same = false;
+                        }
+                    }
+                }
+                if (same) {
+                    continue;
+                }
+
+                if (!rendered) {
+                    renderer.renderRow(y, rowCodePoints);
+                    rendered = true;
+                }
+                if (resized || rowCodePoints[x] != codePoints[cell]) {
+                    codePoints[cell] = rowCodePoints[x];
+                    changedCells[changed] = cell;
+                    changedCodePoints[changed++] = rowCodePoints[x];
+                }
+            }
+        }
+        return new FrameDelta(frame, columns, Arrays.copyOf(changedCells, changed),
+                Arrays.copyOf(changedCodePoints, changed), changed);
+    }
+}
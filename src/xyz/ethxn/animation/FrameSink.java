@@ -0,0 +1,29 @@
+package xyz.ethxn.animation;
+
+import java.io.IOException;
+
+/**
+ * Receives the frames of an animation as they're rendered. Implement
+ * whichever of the two forms you need, both default to doing nothing.
+ */
+public interface FrameSink {
+
+    /**
+     * Receives a whole frame.
+     * @param frame the index of the frame, from 0
+     * @param rows the number of rows
+     * @param columns the number of characters in each row
+     * @param codePoints the glyphs, row major. Updated in place for the next
+     *                   frame, so copy anything that needs to be kept
+     * @throws IOException if the frame can't be written
+     */
+    default void acceptFrame(int frame, int rows, int columns, int[] codePoints) throws IOException {}
+
+    /**
+     * Receives the cells that changed since the frame before. The first frame,
+     * and any frame whose size differs from the one before, lists every cell.
+     * @param delta the changed cells
+     * @throws IOException if the delta can't be written
+     */
+    default void acceptDelta(FrameDelta delta) throws IOException {}
+}
@@ -0,0 +1,22 @@
+package xyz.ethxn.animation;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Frames of an animation, read one at a time.
+ */
+public interface FrameSource extends Closeable {
+
+    /**
+     * Reads the next frame. The image may be reused for the frame after, so
+     * finish with it before calling again.
+     * @return the frame, or {@code null} after the last one
+     * @throws IOException if the frame can't be read
+     */
+    BufferedImage next() throws IOException;
+
+    @Override
+    default void close() throws IOException {}
+}
@@ -0,0 +1,133 @@
+package xyz.ethxn.animation;
+
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Reads the frames of an animated GIF one at a time through an ImageReader,
+ * without decoding the whole file up front. GIF frames are often patches of
+ * the previous frame, so each one is drawn onto a canvas the size of the
+ * animation, honouring the frame's position and disposal method.
+ */
+public class GifFrameSource implements FrameSource {
+
+    private static final String IMAGE_METADATA = "javax_imageio_gif_image_1.0";
+    private static final String STREAM_METADATA = "javax_imageio_gif_stream_1.0";
+
+    private final ImageInputStream input;
+    private final ImageReader reader;
+    private BufferedImage canvas;
+    private BufferedImage previous;   // the canvas before the last frame, for restoreToPrevious
+    private String disposal = "none"; // disposal method of the last frame
+    private int lastX, lastY, lastWidth, lastHeight;
+    private int index;
+
+    /**
+     * Opens a GIF file.
+     * @param path the GIF file
+     * @throws IOException if the file can't be opened or isn't a GIF
+     */
+    public GifFrameSource(Path path) throws IOException {
+        this.input = ImageIO.createImageInputStream(path.toFile());
+        if (input == null) {
+            throw new IOException("can't open " + path);
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("gif");
+        if (!readers.hasNext()) {
+            input.close();
+            throw new IOException("no GIF reader available");
+        }
+        this.reader = readers.next();
+        reader.setInput(input, true, false);
+    }
+
+    @Override
+    public BufferedImage next() throws IOException {
+        BufferedImage frame;
+        IIOMetadata metadata;
+        try {
+            frame = reader.read(index);
+            metadata = reader.getImageMetadata(index);
+        } catch (IndexOutOfBoundsException e) {
+            return null; // past the last frame
+        }
+        index++;
+
+        if (canvas == null) {
+            int width = frame.getWidth();
+            int height = frame.getHeight();
+            Node screen = child(reader.getStreamMetadata() == null ? null
+                    : reader.getStreamMetadata().getAsTree(STREAM_METADATA), "LogicalScreenDescriptor");
+            if (screen != null) {
+                width = Math.max(width, attribute(screen, "logicalScreenWidth", width));
+                height = Math.max(height, attribute(screen, "logicalScreenHeight", height));
+            }
+            canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+
+        // undo the last frame as it asked, then draw this one
+        Graphics2D g = canvas.createGraphics();
+        switch (disposal) {
+            case "restoreToBackgroundColor" -> {
+                g.setComposite(AlphaComposite.Clear);
+                g.fillRect(lastX, lastY, lastWidth, lastHeight);
+                g.setComposite(AlphaComposite.SrcOver);
+            }
+            case "restoreToPrevious" -> {
+                if (previous != null) {
+                    canvas.setData(previous.getRaster());
+                }
+            }
+            default -> {}
+        }
+
+        Node root = metadata.getAsTree(IMAGE_METADATA);
+        Node descriptor = child(root, "ImageDescriptor");
+        Node control = child(root, "GraphicControlExtension");
+        lastX = descriptor == null ? 0 : attribute(descriptor, "imageLeftPosition", 0);
+        lastY = descriptor == null ? 0 : attribute(descriptor, "imageTopPosition", 0);
+        lastWidth = frame.getWidth();
+        lastHeight = frame.getHeight();
+        disposal = control == null ? "none" : control.getAttributes().getNamedItem("disposalMethod").getNodeValue();
+        if (disposal.equals("restoreToPrevious")) {
+            previous = new BufferedImage(canvas.getColorModel(), canvas.copyData(null), false, null);
+        }
+
+        g.drawImage(frame, lastX, lastY, null);
+        g.dispose();
+        return canvas;
+    }
+
+    private static Node child(Node parent, String name) {
+        if (parent == null) {
+            return null;
+        }
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeName().equals(name)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private static int attribute(Node node, String name, int defaultValue) {
+        Node attribute = node.getAttributes().getNamedItem(name);
+        return attribute == null ? defaultValue : Integer.parseInt(attribute.getNodeValue());
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        input.close();
+    }
+}
@@ -0,0 +1,42 @@
+package xyz.ethxn.batch;
+
+import java.nio.file.Path;
+
+/**
+ * Receives the results of {@link HanziBatchRenderer#renderAll} as each input
+ * finishes. Called from the render threads, so implementations must be
+ * thread-safe.
+ */
+public interface BatchListener {
+
+    /**
+     * Called once an input has been read, before it's decoded, to skip
+     * inputs whose art is already up to date.
+     * @param input the image
+     * @param imageHash the SHA-256 hash of the image bytes
+     * @return true to skip the input, it's then reported to {@link #unchanged}
+     */
+    default boolean isCurrent(Path input, String imageHash) {
+        return false;
+    }
+
+    /**
+     * Called when an input has been rendered.
+     * @param result the rendered art
+     */
+    void rendered(BatchResult result);
+
+    /**
+     * Called when an input was skipped because {@link #isCurrent} returned true.
+     * @param input the image that was skipped
+     */
+    default void unchanged(Path input) {}
+
+    /**
+     * Called when an input fails to render, was cancelled, or its
+     * {@link #rendered} call threw.
+     * @param input the image that failed
+     * @param error the cause
+     */
+    default void failed(Path input, Throwable error) {}
+}
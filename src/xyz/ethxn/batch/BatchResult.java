@@ -0,0 +1,12 @@
+package xyz.ethxn.batch;
+
+import java.nio.file.Path;
+
+/**
+ * The rendered art of one batch input.
+ * @param input the image that was rendered
+ * @param imageHash the SHA-256 hash of the image bytes the art was rendered from
+ * @param outputArt the rendered art
+ * @param seed the seed of the build, to reproduce it
+ */
+public record BatchResult(Path input, String imageHash, String outputArt, long seed) {}
@@ -0,0 +1,222 @@
+package xyz.ethxn.batch;
+
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.HanziDictionary;
+import xyz.ethxn.builder.HanziBuilder;
+import xyz.ethxn.image.LuminanceGrid;
+import xyz.ethxn.output.AppendableRowSink;
+import xyz.ethxn.output.RowSink;
+import xyz.ethxn.util.Util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Renders many images with one shared dictionary. Each input gets its own
+ * {@link HanziArt} on its own (virtual, where available) thread. Decoding is
+ * limited to a few images at a time so memory stays bounded, and submission
+ * blocks once too many inputs are queued, so a stream of tens of thousands
+ * of files is consumed only as fast as it's rendered.
+ *
+ * <p>Every input completes its own future: a failing image fails only its
+ * future, and cancelling a future stops that render at the next row.
+ */
+public class HanziBatchRenderer implements AutoCloseable {
+
+    private final HanziBuilder hanziBuilder = new HanziBuilder();
+    private final HanziDictionary dictionary;
+    private final Consumer<HanziArt> options;
+    private final ExecutorService executor;
+    private final Semaphore decodes;
+    private final Semaphore queued;
+
+    /**
+     * Creates a batch renderer.
+     * @param dictionary the dictionary shared by every render
+     * @param options sets the options of each render, e.g. {@code art -> art.setOutputWidth(100)}
+     * @param maxConcurrentDecodes how many images may be decoded at once
+     * @param maxQueued how many inputs may be submitted but unfinished before submission blocks
+     */
+    public HanziBatchRenderer(HanziDictionary dictionary, Consumer<HanziArt> options, int maxConcurrentDecodes, int maxQueued) {
+        this.dictionary = dictionary;
+        this.options = options;
+        this.executor = Util.newVirtualThreadPerTaskExecutor("hanzi-batch");
+        this.decodes = new Semaphore(maxConcurrentDecodes);
+        this.queued = new Semaphore(maxQueued);
+    }
+
+    /**
+     * Queues one image, blocking while the queue is full.
+     * @param input the image file
+     * @return the future result, cancel it to stop the render
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     */
+    public CompletableFuture<BatchResult> submit(Path input) throws InterruptedException {
+        return submit(input, null);
+    }
+
+    private CompletableFuture<BatchResult> submit(Path input, BatchListener listener) throws InterruptedException {
+        queued.acquire();
+        CompletableFuture<BatchResult> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    if (!result.isCancelled()) {
+                        result.complete(render(input, listener, result));
+                    }
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    queued.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            queued.release();
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * Queues every image of a stream, blocking while the queue is full.
+     * @param inputs the image files
+     * @return the future results, in input order
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     */
+    public List<CompletableFuture<BatchResult>> submitAll(Stream<Path> inputs) throws InterruptedException {
+        List<CompletableFuture<BatchResult>> results = new ArrayList<>();
+        for (Path input : (Iterable<Path>) inputs::iterator) {
+            results.add(submit(input));
+        }
+        return results;
+    }
+
+    /**
+     * Renders every image of a stream, calling back as each one finishes. Results
+     * aren't collected, so memory doesn't grow with the length of the stream.
+     * Each input is hashed on its render thread, from the bytes it's decoded
+     * from, and skipped if {@link BatchListener#isCurrent} says so. An input
+     * whose {@link BatchListener#rendered} call throws is reported to
+     * {@link BatchListener#failed} instead.
+     * @param inputs the image files
+     * @param listener receives each result or failure
+     * @return a future that completes when every input has been handled, or
+     *         completes exceptionally with the first exception thrown by {@link BatchListener#failed}
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     */
+    public CompletableFuture<Void> renderAll(Stream<Path> inputs, BatchListener listener) throws InterruptedException {
+        Semaphore pending = new Semaphore(0);
+        AtomicReference<Throwable> listenerFailure = new AtomicReference<>();
+        int submitted = 0;
+        for (Path input : (Iterable<Path>) inputs::iterator) {
+            submit(input, listener).whenComplete((result, error) -> {
+                try {
+                    report(listener, input, result, error);
+                } catch (Throwable e) {
+                    listenerFailure.compareAndSet(null, e);
+                } finally {
+                    pending.release();
+                }
+            });
+            submitted++;
+        }
+
+        int total = submitted;
+        return CompletableFuture.runAsync(() -> {
+            pending.acquireUninterruptibly(total);
+            if (listenerFailure.get() != null) {
+                throw new CompletionException(listenerFailure.get());
+            }
+        }, executor);
+    }
+
+    private static void report(BatchListener listener, Path input, BatchResult result, Throwable error) {
+        if (error == null && result == null) {
+            listener.unchanged(input);
+            return;
+        }
+        if (error == null) {
+            try {
+                listener.rendered(result);
+                return;
+            } catch (RuntimeException e) {
+                error = e;
+            }
+        }
+        listener.failed(input, error);
+    }
+
+    private BatchResult render(Path input, BatchListener listener, CompletableFuture<BatchResult> result) throws IOException, InterruptedException {
+        HanziArt hanziArt = new HanziArt();
+        hanziArt.setDictionary(dictionary);
+        options.accept(hanziArt);
+
+        // read, hash, decode and resize under the limit, only the grid outlives the decoded image
+        String imageHash;
+        LuminanceGrid grid;
+        decodes.acquire();
+        try {
+            checkCancelled(result);
+            try (InputStream in = Files.newInputStream(input)) {
+                hanziArt.setImage(in);
+            }
+            imageHash = hanziArt.getImageHash();
+            if (listener != null && listener.isCurrent(input, imageHash)) {
+                return null;
+            }
+            grid = hanziBuilder.prepareGrid(hanziArt);
+        } finally {
+            decodes.release();
+        }
+        if (!hanziArt.isSeeded()) {
+            hanziArt.setSeed(ThreadLocalRandom.current().nextLong());
+        }
+
+        StringBuilder outputArt = new StringBuilder();
+        AppendableRowSink art = new AppendableRowSink(outputArt);
+        hanziBuilder.renderRows(hanziArt, hanziBuilder.rowRenderer(hanziArt, grid), new RowSink() {
+            @Override
+            public void acceptRow(int row, int[] codePoints, int length) throws IOException {
+                checkCancelled(result);
+                art.acceptRow(row, codePoints, length);
+            }
+        });
+        return new BatchResult(input, imageHash, outputArt.toString(), hanziArt.getSeed());
+    }
+
+    private static void checkCancelled(CompletableFuture<?> result) {
+        if (result.isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Stops accepting inputs and waits for the queued ones to finish.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // keep waiting, renders of queued inputs are still running
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
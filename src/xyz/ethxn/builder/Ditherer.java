@@ -0,0 +1,72 @@
+package xyz.ethxn.builder;
+
+import java.util.Arrays;
+
+/**
+ * Floyd-Steinberg error diffusion over the cells of a render, one row at a
+ * time. Only the error carried into the current and the next row is kept,
+ * so memory depends on the width alone, and rows must be rendered in order.
+ *
+ * <p>Brightness is clamped to 0-255 before it's quantized, and the error is
+ * taken against the clamped value, so a saturated region, where no stroke
+ * count can get closer, doesn't build up error that spills into its
+ * neighbours.
+ */
+final class Ditherer {
+
+    private int[] current; // error carried into the current row, in 16ths, padded by a cell on each side
+    private int[] next;    // error carried into the next row
+
+    Ditherer(int columns) {
+        this.current = new int[columns + 2];
+        this.next = new int[columns + 2];
+    }
+
+    /**
+     * Moves on to the next row. Call before the first cell of each row.
+     */
+    void startRow() {
+        int[] finished = current;
+        current = next;
+        next = finished;
+        Arrays.fill(next, 0);
+    }
+
+    /**
+     * Adds the error carried into a cell to its brightness.
+     * @param x the column
+     * @param brightness the brightness of the cell, 0-255
+     * @return the brightness to quantize, 0-255
+     */
+    int apply(int x, int brightness) {
+        int error = current[x + 1];
+        return Math.max(0, Math.min(255, brightness + (error >= 0 ? error + 8 : error - 8) / 16));
+    }
+
+    /**
+     * Spreads the error left after quantizing a cell to its unvisited neighbours.
+     * @param x the column
+     * @param error the brightness asked for minus the brightness drawn
+     */
+    void diffuse(int x, int error) {
+        current[x + 2] += error * 7;
+        next[x] += error * 3;
+        next[x + 1] += error * 5;
+        next[x + 2] += error;
+    }
+
+    /**
+     * Returns the brightness a stroke count stands for, the middle of the
+     * brightness range {@link HanziBuilder#strokeCount} maps to it. A stroke
+     * count of 1 is drawn as a blank cell, so it stands for black.
+     * @param strokeCount the stroke count
+     * @param maxStrokeCount the highest stroke count in use
+     * @return the brightness, 0-255
+     */
+    static int strokeBrightness(int strokeCount, int maxStrokeCount) {
+        if (strokeCount <= 1 || maxStrokeCount <= 1) {
+            return 0;
+        }
+        return Math.min(255, (2 * (strokeCount - 1) + 1) * 255 / (2 * (maxStrokeCount - 1)));
+    }
+}
@@ -1,10 +1,28 @@
 package xyz.ethxn.builder;
 
 import xyz.ethxn.HanziArt;
-import xyz.ethxn.util.Util;
+import xyz.ethxn.dictionary.GlyphIndex;
+import xyz.ethxn.dictionary.GlyphKdTree;
+import xyz.ethxn.dictionary.InkDensityTable;
+import xyz.ethxn.image.ColorGrid;
+import xyz.ethxn.image.LuminanceGrid;
+import xyz.ethxn.metrics.RenderEvent;
+import xyz.ethxn.metrics.RenderListener;
+import xyz.ethxn.metrics.RenderPhase;
+import xyz.ethxn.metrics.RenderPhaseEvent;
+import xyz.ethxn.metrics.RenderStats;
+import xyz.ethxn.output.AppendableRowSink;
+import xyz.ethxn.output.ColorRowSink;
+import xyz.ethxn.output.RowSink;
 
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.random.RandomGenerator;
 
 /**
  * Builds the output art. Mostly used by internal methods,
@@ -13,171 +31,625 @@ import java.util.*;
  */
 public class HanziBuilder {
 
+    /** Spacing between the rows before they're mixed into a seed. */
+    private static final long ROW_SEED_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /** The fewest rows worth handing to another thread. */
+    private static final int MIN_BAND_HEIGHT = 4;
+
+    /** How many bands may be rendered ahead of the sink, per processor. */
+    private static final int BANDS_IN_FLIGHT_PER_PROCESSOR = 2;
+
+    /**
+     * Builds the output art of a hanzi art object using its build type, and
+     * hands each finished row to a sink.
+     * @param hanziArt the hanzi art object
+     * @param sink the sink to receive the rows
+     * @throws IOException if the sink fails
+     */
+    public void build(HanziArt hanziArt, RowSink sink) throws IOException {
+        ColorRowSink colorSink = sink instanceof ColorRowSink colored ? colored : null;
+        LuminanceGrid grid = prepareGrid(hanziArt, gridScale(hanziArt), colorSink);
+        renderRows(hanziArt, rowRenderer(hanziArt, grid), sink);
+    }
+
     /**
      * Build the output art using the fast method.
      * @param hanziArt the hanzi art object
      */
     public void buildFastOutput(HanziArt hanziArt) {
-        StringBuilder outputArt = hanziArt.getOutputArt();
-        BufferedImage resizedImage = Util.resizeImage(hanziArt.getImage(), hanziArt.getOutputWidth());
-        int maxStrokeCount = hanziArt.getMaxStrokeCount();
+        buildOutputArt(hanziArt, fastRenderer(hanziArt, outputArtGrid(hanziArt, 1), 0));
+    }
 
-        for (int y = 0; y < resizedImage.getHeight(); y++) {
-            if (hanziArt.isOutputProgress()){
-                System.out.println("...building row " + (y+1) + " of " + resizedImage.getHeight());
-            }
+    /**
+     * Build the output art using the complex method. Each output character covers
+     * a 2x2 block of a grid resized to twice the output width.
+     * @param hanziArt the hanzi art object
+     */
+    public void buildComplexOutput(HanziArt hanziArt) {
+        buildOutputArt(hanziArt, complexRenderer(hanziArt, outputArtGrid(hanziArt, 2), 0));
+    }
 
-            for (int x = 0; x < resizedImage.getWidth(); x++) {
-                int pixelBrightness = Util.getPixelBrightness(resizedImage, x, y);
-                int pixelStrokeCount = 1 + (pixelBrightness * (maxStrokeCount - 1) / 255);
-                pixelStrokeCount = Math.min(pixelStrokeCount, maxStrokeCount);
-                System.out.println(pixelStrokeCount);
-                String pixelHanzi = getRandomHanziFromStrokeCount(pixelStrokeCount, hanziArt);
-                outputArt.append(pixelHanzi);
-            }
-            outputArt.append('\n');
+    /**
+     * Build the output art using the nearest method. Each output character covers
+     * an NxN block, and is the glyph whose stroke count and corner densities are
+     * closest to the block's brightness and the brightness of its four quadrants.
+     * @param hanziArt the hanzi art object
+     */
+    public void buildNearestOutput(HanziArt hanziArt) {
+        buildOutputArt(hanziArt, nearestRenderer(hanziArt, outputArtGrid(hanziArt, hanziArt.getBlockSize()), 0));
+    }
+
+    /**
+     * Build the output art using the density method, which picks characters by
+     * their measured ink coverage instead of their stroke count.
+     * @param hanziArt the hanzi art object
+     * @throws IllegalStateException if the dictionary has no ink density table
+     */
+    public void buildDensityOutput(HanziArt hanziArt) {
+        buildOutputArt(hanziArt, densityRenderer(hanziArt, outputArtGrid(hanziArt, 1), 0));
+    }
+
+    /**
+     * Returns how many grid pixels make up one side of a character cell for a build type.
+     * @param hanziArt the hanzi art object
+     * @return the grid scale
+     */
+    public static int gridScale(HanziArt hanziArt) {
+        return switch (hanziArt.getBuildType()) {
+            case "complex" -> 2;
+            case "nearest" -> hanziArt.getBlockSize();
+            default -> 1;
+        };
+    }
+
+    /**
+     * Decodes and resizes the image of a hanzi art object to the grid its build type reads from.
+     * @param hanziArt the hanzi art object
+     * @return the luminance grid
+     * @throws IOException if the image can't be decoded
+     */
+    public LuminanceGrid prepareGrid(HanziArt hanziArt) throws IOException {
+        return prepareGrid(hanziArt, gridScale(hanziArt), null);
+    }
+
+    /**
+     * Decodes and resizes the image of a hanzi art object to a grid of any
+     * width, for previews. Only the resolution that width needs is decoded.
+     * @param hanziArt the hanzi art object
+     * @param gridWidth the width of the grid
+     * @return the luminance grid
+     * @throws IOException if the image can't be decoded
+     */
+    public LuminanceGrid prepareGrid(HanziArt hanziArt, int gridWidth) throws IOException {
+        return prepareGrid(hanziArt, gridWidth, 1, null);
+    }
+
+    /**
+     * Decodes and resizes the image, and samples the color of each cell too if
+     * there is a color sink to hand them to.
+     */
+    private LuminanceGrid prepareGrid(HanziArt hanziArt, int scale, ColorRowSink colorSink) throws IOException {
+        return prepareGrid(hanziArt, hanziArt.getOutputWidth() * scale, scale, colorSink);
+    }
+
+    private LuminanceGrid prepareGrid(HanziArt hanziArt, int gridWidth, int scale, ColorRowSink colorSink) throws IOException {
+        RenderPhaseEvent decodeEvent = new RenderPhaseEvent();
+        decodeEvent.begin();
+        long start = System.nanoTime();
+        BufferedImage image = hanziArt.readImage(gridWidth);
+        phaseCompleted(hanziArt, decodeEvent, RenderPhase.DECODE, start);
+
+        RenderPhaseEvent resizeEvent = new RenderPhaseEvent();
+        resizeEvent.begin();
+        start = System.nanoTime();
+        LuminanceGrid grid = LuminanceGrid.fromImage(image, gridWidth);
+        if (colorSink != null) {
+            colorSink.setColors(ColorGrid.fromImage(image, grid.getWidth() / scale, grid.getHeight() / scale));
+        }
+        phaseCompleted(hanziArt, resizeEvent, RenderPhase.RESIZE, start);
+        return grid;
+    }
+
+    private static void phaseCompleted(HanziArt hanziArt, RenderPhaseEvent event, RenderPhase phase, long start) {
+        hanziArt.getRenderListener().phaseCompleted(phase, System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.phase = phase.name();
+            event.buildType = hanziArt.getBuildType();
+            event.commit();
         }
-        hanziArt.setOutputArt(outputArt);
     }
 
     /**
-     * Build the output art using the complex method.
+     * Returns the row renderer for the build type of a hanzi art object.
      * @param hanziArt the hanzi art object
-     * @throws NoSuchElementException if the stroke count map or four corner code map is not found
-     */
-    public void buildComplexOutput(HanziArt hanziArt) throws NoSuchElementException{
-        // local declarations
-        StringBuilder outputArt = hanziArt.getOutputArt();
-        BufferedImage resizedImage = Util.resizeImage(hanziArt.getImage(), hanziArt.getOutputWidth());
-        BufferedImage resizedImage2x = Util.resizeImage(hanziArt.getImage(), (hanziArt.getOutputWidth() * 2));
-        Map<String, String> fourCornerCodeMap = hanziArt.getFourCornerCodeMap();
-        int maxStrokeCount = hanziArt.getMaxStrokeCount();
+     * @param grid the grid to render, see {@link #prepareGrid(HanziArt)}
+     * @return the row renderer
+     * @throws IndexOutOfBoundsException if the build type is invalid
+     */
+    public RowRenderer rowRenderer(HanziArt hanziArt, LuminanceGrid grid) {
+        return rowRenderer(hanziArt, grid, 0);
+    }
+
+    /**
+     * Returns the row renderer for a stripe of rows cut out of a larger grid.
+     * Row {@code y} of the stripe draws from the same generator as row
+     * {@code firstRow + y} of the whole grid, so stripes rendered on their own
+     * stitch together into the same art as one render of the whole grid.
+     * @param hanziArt the hanzi art object
+     * @param grid the grid of the stripe
+     * @param firstRow the index of the stripe's first row within the whole art
+     * @return the row renderer
+     * @throws IndexOutOfBoundsException if the build type is invalid
+     */
+    public RowRenderer rowRenderer(HanziArt hanziArt, LuminanceGrid grid, int firstRow) {
+        return rowRenderer(hanziArt, hanziArt.getBuildType(), grid, firstRow);
+    }
 
-        // iterate through image in 2x2 blocks
-        for (int y = 0; y < resizedImage2x.getHeight() - 1; y += 2) {
-            System.out.println("...building row " + ((y / 2) + 1) + " of " + resizedImage.getHeight());
-            for (int x = 0; x < resizedImage2x.getWidth(); x += 2) {
+    /**
+     * Returns the row renderer for a build type other than the hanzi art object's
+     * own, with the rest of its options.
+     * @param hanziArt the hanzi art object
+     * @param buildType the build type, fast, complex, nearest or density
+     * @param grid the grid to render, at the grid scale of that build type
+     * @param firstRow the index of the grid's first row within the whole art
+     * @return the row renderer
+     * @throws IndexOutOfBoundsException if the build type is invalid
+     */
+    public RowRenderer rowRenderer(HanziArt hanziArt, String buildType, LuminanceGrid grid, int firstRow) {
+        return switch (buildType) {
+            case "fast" -> fastRenderer(hanziArt, grid, firstRow);
+            case "complex" -> complexRenderer(hanziArt, grid, firstRow);
+            case "nearest" -> nearestRenderer(hanziArt, grid, firstRow);
+            case "density" -> densityRenderer(hanziArt, grid, firstRow);
+            default -> throw new IndexOutOfBoundsException("Invalid build type");
+        };
+    }
+
+    private RowRenderer fastRenderer(HanziArt hanziArt, LuminanceGrid grid, int firstRow) {
+        GlyphIndex glyphIndex = hanziArt.getGlyphIndex();
+        int maxStrokeCount = hanziArt.getMaxStrokeCount();
+        long seed = hanziArt.getSeed();
+        byte[] pixels = grid.getPixels();
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        Ditherer ditherer = hanziArt.isDither() ? new Ditherer(width) : null;
 
-                ArrayList<Integer> blockBrightness = new ArrayList<>();
+        return new Renderer("fast", height, width, ditherer != null) {
+            @Override
+            public void renderRow(int y, int[] codePoints) {
+                SplittableRandom random = rowRandom(seed, firstRow + y);
+                int blankCells = 0;
+                long candidates = 0;
+                if (ditherer != null) {
+                    ditherer.startRow();
+                }
 
-                // iterate through 2x2 pixel block
-                for (int blockY = y; blockY < y + 2; blockY++) {
-                    for (int blockX = x; blockX < x + 2; blockX++) {
-                        // add brightness for each pixel in block
-                        int pixelBrightnessBlock = Util.getPixelBrightness(resizedImage2x, blockX, blockY);
-                        blockBrightness.add(pixelBrightnessBlock);
+                for (int x = 0, i = y * width; x < width; x++, i++) {
+                    int brightness = pixels[i] & 0xFF;
+                    if (ditherer != null) {
+                        brightness = ditherer.apply(x, brightness);
+                    }
+                    int pixelStrokeCount = strokeCount(brightness, maxStrokeCount);
+                    if (ditherer != null) {
+                        ditherer.diffuse(x, brightness - Ditherer.strokeBrightness(pixelStrokeCount, maxStrokeCount));
                     }
+                    if (pixelStrokeCount <= 1) {
+                        blankCells++;
+                    } else {
+                        candidates += glyphIndex.bucketSize(pixelStrokeCount);
+                    }
+                    codePoints[x] = glyphIndex.randomCodePoint(pixelStrokeCount, random);
                 }
-                int sum = 0;
+                count(blankCells, 0, candidates);
+            }
+        };
+    }
+
+    private RowRenderer complexRenderer(HanziArt hanziArt, LuminanceGrid grid2x, int firstRow) {
+        GlyphIndex glyphIndex = hanziArt.getGlyphIndex();
+        int maxStrokeCount = hanziArt.getMaxStrokeCount();
+        long seed = hanziArt.getSeed();
+        byte[] pixels = grid2x.getPixels();
+        int width2x = grid2x.getWidth();
+        int rows = grid2x.getHeight() / 2;
+        Ditherer ditherer = hanziArt.isDither() ? new Ditherer(width2x / 2) : null;
 
-                // get average brightness of block
-                for (int brightness : blockBrightness) {
-                    sum += brightness;
+        return new Renderer("complex", rows, width2x / 2, ditherer != null) {
+            @Override
+            public void renderRow(int y, int[] codePoints) {
+                SplittableRandom random = rowRandom(seed, firstRow + y);
+                int top = (y * 2) * width2x;
+                int bottom = top + width2x;
+                int blankCells = 0;
+                int fallbackCells = 0;
+                long candidates = 0;
+                if (ditherer != null) {
+                    ditherer.startRow();
                 }
-                int pixelBrightness = sum / blockBrightness.size();
 
-                int pixelStrokeCount = 1 + (pixelBrightness * (maxStrokeCount - 1) / 255);
-                pixelStrokeCount = Math.min(pixelStrokeCount, maxStrokeCount);
-                System.out.println(pixelStrokeCount);
-                int brightestPixelIndex = Util.findGreatestValue(blockBrightness, true);
+                // iterate through the row in 2x2 blocks
+                for (int x = 0; x + 1 < width2x; x += 2) {
+                    // brightness of each pixel in the block, top left, top right, bottom left, bottom right
+                    int topLeft = pixels[top + x] & 0xFF;
+                    int topRight = pixels[top + x + 1] & 0xFF;
+                    int bottomLeft = pixels[bottom + x] & 0xFF;
+                    int bottomRight = pixels[bottom + x + 1] & 0xFF;
 
-                String hanzi = getRandomHanziFromCornerComplexity(hanziArt, fourCornerCodeMap, brightestPixelIndex, pixelStrokeCount);
-                outputArt.append(hanzi);
+                    // get average brightness of block
+                    int pixelBrightness = (topLeft + topRight + bottomLeft + bottomRight) / 4;
+                    if (ditherer != null) {
+                        pixelBrightness = ditherer.apply(x / 2, pixelBrightness);
+                    }
+                    int pixelStrokeCount = strokeCount(pixelBrightness, maxStrokeCount);
+                    if (ditherer != null) {
+                        ditherer.diffuse(x / 2, pixelBrightness - Ditherer.strokeBrightness(pixelStrokeCount, maxStrokeCount));
+                    }
+                    int brightestPixelIndex = brightestPixel(topLeft, topRight, bottomLeft, bottomRight);
+
+                    if (pixelStrokeCount <= 1) {
+                        blankCells++;
+                    } else {
+                        int cornerCandidates = glyphIndex.cornerBucketSize(pixelStrokeCount, brightestPixelIndex);
+                        if (cornerCandidates == 0) {
+                            fallbackCells++;
+                            candidates += glyphIndex.bucketSize(pixelStrokeCount);
+                        } else {
+                            candidates += cornerCandidates;
+                        }
+                    }
+                    codePoints[x / 2] = getRandomHanziFromCornerComplexity(glyphIndex, random, brightestPixelIndex, pixelStrokeCount);
+                }
+                count(blankCells, fallbackCells, candidates);
             }
+        };
+    }
 
-            // next line
-            outputArt.append('\n');
+    private RowRenderer densityRenderer(HanziArt hanziArt, LuminanceGrid grid, int firstRow) {
+        InkDensityTable inkDensityTable = hanziArt.getDictionary().getInkDensityTable();
+        if (inkDensityTable == null) {
+            throw new IllegalStateException("The dictionary has no ink density table");
         }
-        hanziArt.setOutputArt(outputArt);
+        long seed = hanziArt.getSeed();
+        byte[] pixels = grid.getPixels();
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        Ditherer ditherer = hanziArt.isDither() ? new Ditherer(width) : null;
+
+        return new Renderer("density", height, width, ditherer != null) {
+            @Override
+            public void renderRow(int y, int[] codePoints) {
+                SplittableRandom random = rowRandom(seed, firstRow + y);
+                if (ditherer != null) {
+                    ditherer.startRow();
+                }
+
+                for (int x = 0, i = y * width; x < width; x++, i++) {
+                    int luminance = pixels[i] & 0xFF;
+                    if (ditherer != null) {
+                        luminance = ditherer.apply(x, luminance);
+                        ditherer.diffuse(x, luminance - inkDensityTable.level(luminance));
+                    }
+                    codePoints[x] = inkDensityTable.randomCodePoint(luminance, random);
+                }
+            }
+        };
+    }
+
+    private RowRenderer nearestRenderer(HanziArt hanziArt, LuminanceGrid grid, int firstRow) {
+        GlyphKdTree glyphTree = hanziArt.getDictionary().getGlyphTree();
+        int maxStrokeCount = hanziArt.getMaxStrokeCount();
+        int blockSize = hanziArt.getBlockSize();
+        long seed = hanziArt.getSeed();
+        byte[] pixels = grid.getPixels();
+        int width = grid.getWidth();
+        int rows = grid.getHeight() / blockSize;
+
+        // quadrant bounds within a block, the middle row and column of odd blocks count towards both halves
+        int firstHalfEnd = (blockSize + 1) / 2;
+        int secondHalfStart = blockSize / 2;
+        int quadrantArea = firstHalfEnd * firstHalfEnd;
+
+        return new Renderer("nearest", rows, width / blockSize, false) {
+            @Override
+            public void renderRow(int y, int[] codePoints) {
+                GlyphKdTree.Query query = glyphTree.newQuery(rowRandom(seed, firstRow + y));
+                int top = y * blockSize * width;
+                int blankCells = 0;
+
+                for (int x = 0; x + blockSize <= width; x += blockSize) {
+                    int sum = 0;
+                    int topLeft = 0, topRight = 0, bottomLeft = 0, bottomRight = 0;
+                    for (int blockY = 0; blockY < blockSize; blockY++) {
+                        int row = top + blockY * width + x;
+                        for (int blockX = 0; blockX < blockSize; blockX++) {
+                            int brightness = pixels[row + blockX] & 0xFF;
+                            sum += brightness;
+                            if (blockY < firstHalfEnd) {
+                                if (blockX < firstHalfEnd) topLeft += brightness;
+                                if (blockX >= secondHalfStart) topRight += brightness;
+                            }
+                            if (blockY >= secondHalfStart) {
+                                if (blockX < firstHalfEnd) bottomLeft += brightness;
+                                if (blockX >= secondHalfStart) bottomRight += brightness;
+                            }
+                        }
+                    }
+
+                    int pixelBrightness = sum / (blockSize * blockSize);
+                    int pixelStrokeCount = strokeCount(pixelBrightness, maxStrokeCount);
+                    if (pixelStrokeCount <= 1) {
+                        codePoints[x / blockSize] = GlyphIndex.BLANK;
+                        blankCells++;
+                        continue;
+                    }
+
+                    float strokeTarget = 1 + pixelBrightness * (maxStrokeCount - 1) / 255f;
+                    codePoints[x / blockSize] = query.nearest(strokeTarget,
+                            density(topLeft, quadrantArea), density(topRight, quadrantArea),
+                            density(bottomLeft, quadrantArea), density(bottomRight, quadrantArea));
+                }
+                count(blankCells, 0, 0);
+            }
+        };
     }
 
     /**
-     * Returns a random hanzi character from the stroke count map.
-     * @param strokeCount the stroke count of the character (within the pixel)
-     * @param hanziArt the hanzi art object
-     * @return a random hanzi character from the stroke count map.
+     * Base for the build types' row renderers, which only differ in how a row is filled.
+     * Rows add up what they did here, for the render stats.
      */
-    private String getRandomHanziFromStrokeCount(int strokeCount, HanziArt hanziArt){
-        Set<String> keys = hanziArt.getStrokeKeys();
+    private abstract static class Renderer implements RowRenderer {
+        private final String buildType;
+        private final int rows;
+        private final int columns;
+        private final boolean ordered;
+        private final LongAdder blankCells = new LongAdder();
+        private final LongAdder fallbackCells = new LongAdder();
+        private final LongAdder candidates = new LongAdder();
 
-        hanziArt.regenerateStrokeKeySet(strokeCount);
+        Renderer(String buildType, int rows, int columns, boolean ordered) {
+            this.buildType = buildType;
+            this.rows = rows;
+            this.columns = columns;
+            this.ordered = ordered;
+        }
 
-        while (!keys.isEmpty()) {
-            int randomIndex = HanziArt.random.nextInt(keys.size());
-            String unicodeKey = (String) keys.toArray()[randomIndex];
-            if (unicodeKey.length() <= 6 && !unicodeKey.contains("F")) {
-                return Util.unicodeKeyToString(unicodeKey);
-            } else {
-                keys.remove(unicodeKey);
-            }
+        @Override
+        public int getRows() {
+            return rows;
+        }
+
+        @Override
+        public int getColumns() {
+            return columns;
+        }
+
+        @Override
+        public boolean isOrdered() {
+            return ordered;
+        }
+
+        void count(int blankCells, int fallbackCells, long candidates) {
+            this.blankCells.add(blankCells);
+            this.fallbackCells.add(fallbackCells);
+            this.candidates.add(candidates);
+        }
+    }
+
+    private LuminanceGrid outputArtGrid(HanziArt hanziArt, int scale) {
+        try {
+            return prepareGrid(hanziArt, scale, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return Util.unicodeKeyToString("U+3000"); // no match found, default to white space
     }
 
     /**
-     * Returns a random hanzi character from the stroke count map.
-     * @param brightestPixelIndex the index of the brightest pixel in the 2x2 block
-     * @param strokeCount the stroke count of the character
-     * @return a random hanzi character from the stroke count map.
-     * @throws NumberFormatException if the four corner code is not a number
+     * Renders into the output art of a hanzi art object.
      */
-    private String getRandomHanziFromCornerComplexity(HanziArt hanziArt, Map<String, String> fourCornerCodeMap, int brightestPixelIndex, int strokeCount) throws NumberFormatException{
-        hanziArt.regenerateStrokeKeySet(strokeCount);
-
-        while (!hanziArt.getStrokeKeys().isEmpty()) {
-            int randomIndex = HanziArt.random.nextInt(hanziArt.getStrokeKeys().size());
-            String unicodeKey = (String) hanziArt.getStrokeKeys().toArray()[randomIndex];
+    private void buildOutputArt(HanziArt hanziArt, RowRenderer renderer) {
+        try {
+            renderRows(hanziArt, renderer, new AppendableRowSink(hanziArt.getOutputArt()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringBuilder never throws
+        }
+    }
 
-            // makes sure unicode key has a matching four corners value
-            if (fourCornerCodeMap.get(unicodeKey) == null){
-                hanziArt.getStrokeKeys().remove(unicodeKey);
-                continue;
-            }
+    /**
+     * Renders every row into a sink, either on the calling thread or split into
+     * bands on the executor of the hanzi art object. Bands are handed to the sink
+     * in order, with only a few rendered ahead so memory stays bounded, and each
+     * row draws from its own seeded generator, so the output doesn't depend on
+     * how many threads were used. Ordered renderers, such as dithered ones that
+     * carry error from row to row, always render on the calling thread, in
+     * order. Timings and counts go to the render listener of the hanzi art object, and to a flight recorder {@link RenderEvent}.
+     * @param hanziArt the hanzi art object
+     * @param renderer the renderer of the rows
+     * @param sink the sink to receive the rows
+     * @throws IOException if the sink fails
+     */
+    public void renderRows(HanziArt hanziArt, RowRenderer renderer, RowSink sink) throws IOException {
+        int rows = renderer.getRows();
+        int columns = renderer.getColumns();
+        Executor executor = hanziArt.getExecutor();
+        RenderListener listener = hanziArt.isOutputProgress()
+                ? RenderListener.printingProgress(hanziArt.getRenderListener())
+                : hanziArt.getRenderListener();
 
-            // if the four corner code is 0000.0, then the character is not in the dictionary
-            if (processUnicodeKey(unicodeKey, strokeCount, fourCornerCodeMap, hanziArt)){
-                return Util.unicodeKeyToString(unicodeKey);
+        RenderEvent event = new RenderEvent();
+        event.begin();
+        long start = System.nanoTime();
+        LongAdder selectNanos = new LongAdder();
+        long emitNanos = 0;
+        boolean finished = false;
+        try {
+            sink.begin(rows, columns);
+            if (executor == null || rows <= MIN_BAND_HEIGHT || renderer.isOrdered()) {
+                int[] codePoints = new int[columns];
+                for (int y = 0; y < rows; y++) {
+                    long selecting = System.nanoTime();
+                    renderer.renderRow(y, codePoints);
+                    long emitting = System.nanoTime();
+                    sink.acceptRow(y, codePoints, columns);
+                    selectNanos.add(emitting - selecting);
+                    emitNanos += System.nanoTime() - emitting;
+                    listener.rowEmitted(y, rows);
+                }
             } else {
-                hanziArt.getStrokeKeys().remove(unicodeKey);
+                int processors = Runtime.getRuntime().availableProcessors();
+                int bandCount = Math.max(1, Math.min(processors * 4, rows / MIN_BAND_HEIGHT));
+                int bandHeight = (rows + bandCount - 1) / bandCount;
+                int inFlight = processors * BANDS_IN_FLIGHT_PER_PROCESSOR;
+
+                ArrayDeque<CompletableFuture<int[]>> bands = new ArrayDeque<>();
+                int nextBand = 0;
+                int[] row = new int[columns];
+                for (int fromRow = 0; fromRow < rows; fromRow += bandHeight) {
+                    while (bands.size() < inFlight && nextBand < rows) {
+                        int from = nextBand;
+                        int to = Math.min(rows, from + bandHeight);
+                        bands.add(CompletableFuture.supplyAsync(() -> {
+                            long selecting = System.nanoTime();
+                            int[] band = new int[(to - from) * columns];
+                            int[] codePoints = new int[columns];
+                            for (int y = from; y < to; y++) {
+                                renderer.renderRow(y, codePoints);
+                                System.arraycopy(codePoints, 0, band, (y - from) * columns, columns);
+                            }
+                            selectNanos.add(System.nanoTime() - selecting);
+                            return band;
+                        }, executor));
+                        nextBand = to;
+                    }
+
+                    int[] band = bands.remove().join();
+                    int to = Math.min(rows, fromRow + bandHeight);
+                    long emitting = System.nanoTime();
+                    for (int y = fromRow; y < to; y++) {
+                        System.arraycopy(band, (y - fromRow) * columns, row, 0, columns);
+                        sink.acceptRow(y, row, columns);
+                        listener.rowEmitted(y, rows);
+                    }
+                    emitNanos += System.nanoTime() - emitting;
+                }
             }
 
-            String cornerCodesString = fourCornerCodeMap.get(unicodeKey);
+            long emitting = System.nanoTime();
+            finished = true;
+            sink.finish();
+            emitNanos += System.nanoTime() - emitting;
+        } finally {
+            if (!finished) {
+                sink.finish();
+            }
+        }
 
-            // Split the string into individual values using space as a delimiter
-            String[] cornerCodesArray = cornerCodesString.split(" ");
+        String buildType = hanziArt.getBuildType();
+        long blankCells = 0, fallbackCells = 0, candidates = 0;
+        if (renderer instanceof Renderer counted) {
+            buildType = counted.buildType;
+            blankCells = counted.blankCells.sum();
+            fallbackCells = counted.fallbackCells.sum();
+            candidates = counted.candidates.sum();
+        }
+        RenderStats stats = new RenderStats(buildType, rows, columns, blankCells, fallbackCells,
+                candidates, selectNanos.sum(), emitNanos, System.nanoTime() - start);
+        listener.phaseCompleted(RenderPhase.SELECT, stats.selectNanos());
+        listener.phaseCompleted(RenderPhase.EMIT, stats.emitNanos());
+        listener.renderCompleted(stats);
+        if (event.shouldCommit()) {
+            event.buildType = stats.buildType();
+            event.rows = rows;
+            event.columns = columns;
+            event.blankCells = blankCells;
+            event.fallbackCells = fallbackCells;
+            event.averageCandidates = stats.averageCandidates();
+            event.selectNanos = stats.selectNanos();
+            event.emitNanos = stats.emitNanos();
+            event.cellsPerSecond = stats.cellsPerSecond();
+            event.commit();
+        }
+    }
 
-            // Parse the first value as an integer
-            int cornerCode = (int) Double.parseDouble(cornerCodesArray[0]);
+    /**
+     * Maps the brightness of a quadrant to a corner density in the range 1-10.
+     */
+    private static float density(int brightnessSum, int area) {
+        return 1 + (brightnessSum / (float) area) * 9 / 255f;
+    }
 
-            ArrayList<Integer> cornerDigits = Util.getDigits(cornerCode);
+    /**
+     * Maps a brightness to a stroke count, brighter pixels get more strokes.
+     * @param brightness the brightness, usually 0-255. Dithered brightness can
+     *                   fall outside that range, and is drawn as the nearest end
+     * @param maxStrokeCount the highest stroke count to use
+     * @return the stroke count in the range 1-maxStrokeCount
+     */
+    public static int strokeCount(int brightness, int maxStrokeCount) {
+        int strokeCount = 1 + (brightness * (maxStrokeCount - 1) / 255);
+        return Math.max(1, Math.min(strokeCount, maxStrokeCount));
+    }
 
-            // check for corner complexity match
-            if (brightestPixelIndex == Util.findGreatestValue(cornerDigits, true)) {
-                if (unicodeKey.length() <= 6 && !unicodeKey.contains("F")) {
-                    return Util.unicodeKeyToString(unicodeKey);
-                } else {
-                    hanziArt.getStrokeKeys().remove(unicodeKey);
-                }
-            }
+    /**
+     * Returns the index of the brightest pixel of a 2x2 block, the first one if several tie.
+     */
+    private static int brightestPixel(int topLeft, int topRight, int bottomLeft, int bottomRight) {
+        int index = 0;
+        int greatest = topLeft;
+        if (topRight > greatest) {
+            index = 1;
+            greatest = topRight;
+        }
+        if (bottomLeft > greatest) {
+            index = 2;
+            greatest = bottomLeft;
         }
+        if (bottomRight > greatest) {
+            index = 3;
+        }
+        return index;
+    }
 
-        hanziArt.regenerateStrokeKeySet(strokeCount);
-        System.out.println("Size: " + hanziArt.getStrokeKeys().size());
-        int randomIndex = HanziArt.random.nextInt(hanziArt.getStrokeKeys().size());
-        String unicodeKey = (String) hanziArt.getStrokeKeys().toArray()[randomIndex];
+    /**
+     * Returns the generator for one row of output. The seed and row are mixed
+     * together first: SplittableRandom steps its state by the same gamma as
+     * the row spacing, so seeding it with {@code seed + row * gamma} would make
+     * each row's stream the one above it shifted by one draw.
+     * @param seed the seed of the build
+     * @param row the row index
+     * @return a generator that depends only on the seed and row
+     */
+    public static SplittableRandom rowRandom(long seed, int row) {
+        return new SplittableRandom(mix64(mix64(seed) + row * ROW_SEED_GAMMA));
+    }
 
-        return Util.unicodeKeyToString(unicodeKey); // no match found, default to random from list
+    /**
+     * Stafford's variant 13 of the MurmurHash3 finalizer, which spreads every
+     * input bit over the whole output.
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 
-    public boolean processUnicodeKey(String unicodeKey, int strokeCount, Map<String, String> fourCornerCodeMap, HanziArt hanziArt) {
-        String fourCornerCode = fourCornerCodeMap.get(unicodeKey);
 
-        if (("0000.0".equals(fourCornerCode) || strokeCount == 1)
-                && unicodeKey.length() <= 6 && !unicodeKey.contains("F")) {
-            return true;
-        } else {
-            hanziArt.getStrokeKeys().remove(unicodeKey);
-            return false;
+    /**
+     * Returns a random hanzi character whose four corner code matches the brightest pixel of a block.
+     * @param brightestPixelIndex the index of the brightest pixel in the 2x2 block
+     * @param strokeCount the stroke count of the character
+     * @return the code point of a matching hanzi, or a random one from the bucket if none match.
+     */
+    private static int getRandomHanziFromCornerComplexity(GlyphIndex glyphIndex, RandomGenerator random, int brightestPixelIndex, int strokeCount) {
+        if (strokeCount <= 1) {
+            return GlyphIndex.BLANK;
+        }
+
+        int candidates = glyphIndex.cornerBucketSize(strokeCount, brightestPixelIndex);
+        if (candidates > 0) {
+            return glyphIndex.cornerCodePoint(strokeCount, brightestPixelIndex, random.nextInt(candidates));
         }
+
+        return glyphIndex.randomCodePoint(strokeCount, random); // no match found, default to random from list
     }
 }
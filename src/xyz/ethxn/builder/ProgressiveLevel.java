@@ -0,0 +1,29 @@
+package xyz.ethxn.builder;
+
+/**
+ * One pass of a progressive render.
+ * @param index the pass, from 0 for the coarsest
+ * @param last whether this is the final, full quality pass
+ * @param buildType the build type the pass was rendered with
+ * @param rows the number of rows
+ * @param columns the number of characters in each row
+ * @param cellScale how many cells of the final pass each cell of this pass covers, across and down
+ * @param codePoints the glyphs, row major
+ */
+public record ProgressiveLevel(int index, boolean last, String buildType, int rows, int columns,
+                               int cellScale, int[] codePoints) {
+
+    /**
+     * @return the glyphs as text, one line per row
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder(rows * (columns + 1));
+        for (int y = 0, i = 0; y < rows; y++) {
+            for (int x = 0; x < columns; x++, i++) {
+                text.appendCodePoint(codePoints[i]);
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+}
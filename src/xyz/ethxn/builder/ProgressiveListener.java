@@ -0,0 +1,16 @@
+package xyz.ethxn.builder;
+
+import java.io.IOException;
+
+/**
+ * Receives each pass of a progressive render as soon as it's done.
+ */
+public interface ProgressiveListener {
+
+    /**
+     * Called once per pass, coarsest first.
+     * @param level the finished pass
+     * @throws IOException if the pass can't be shown or written
+     */
+    void levelRendered(ProgressiveLevel level) throws IOException;
+}
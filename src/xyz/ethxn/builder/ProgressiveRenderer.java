@@ -0,0 +1,82 @@
+package xyz.ethxn.builder;
+
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.image.LuminanceGrid;
+import xyz.ethxn.output.RowSink;
+
+import java.io.IOException;
+
+/**
+ * Renders coarse to fine, so something is on screen long before the full
+ * render is done. The coarse pass decodes only as much of the image as its
+ * narrow grid needs, so it doesn't wait for a full decode. The image is then
+ * decoded once more, to the grid the final pass needs, and the full width
+ * fast pass reads a level built down from that grid.
+ *
+ * <p>The passes are the fast build type at a fraction of the output width,
+ * then the fast build type at the full width, then the HanziArt object's own
+ * build type at the full width, if it isn't fast. Each pass reuses the seed
+ * and options of the HanziArt object, which is left as it was.
+ */
+public class ProgressiveRenderer {
+
+    private final HanziBuilder hanziBuilder = new HanziBuilder();
+    private int coarseFactor = 4;
+
+    /**
+     * Sets how much narrower the first pass is than the output.
+     * @param coarseFactor the factor, 1 to skip the coarse pass
+     */
+    public void setCoarseFactor(int coarseFactor) {
+        if (coarseFactor < 1) {
+            throw new IllegalArgumentException("'" + coarseFactor + "'" + " is an invalid coarse factor.");
+        }
+        this.coarseFactor = coarseFactor;
+    }
+
+    public int getCoarseFactor() {
+        return coarseFactor;
+    }
+
+    /**
+     * Renders every pass of a hanzi art object.
+     * @param hanziArt the hanzi art object, seeded
+     * @param listener receives each pass
+     * @throws IOException if the image can't be decoded or the listener fails
+     */
+    public void render(HanziArt hanziArt, ProgressiveListener listener) throws IOException {
+        String buildType = hanziArt.getBuildType();
+        int outputWidth = hanziArt.getOutputWidth();
+        boolean refine = !buildType.equals("fast");
+        int coarseWidth = outputWidth / coarseFactor;
+        int index = 0;
+
+        if (coarseFactor > 1 && coarseWidth >= 1) {
+            LuminanceGrid coarse = hanziBuilder.prepareGrid(hanziArt, coarseWidth);
+            listener.levelRendered(renderLevel(hanziArt, "fast", coarse, index++, false, coarseFactor));
+        }
+
+        LuminanceGrid finest = hanziBuilder.prepareGrid(hanziArt);
+        int finestScale = HanziBuilder.gridScale(hanziArt);
+        // one fast grid cell per output cell
+        LuminanceGrid full = finestScale == 1 ? finest
+                : finest.downsample(finest.getWidth() / finestScale, finest.getHeight() / finestScale);
+        listener.levelRendered(renderLevel(hanziArt, "fast", full, index++, !refine, 1));
+        if (refine) {
+            listener.levelRendered(renderLevel(hanziArt, buildType, finest, index, true, 1));
+        }
+    }
+
+    private ProgressiveLevel renderLevel(HanziArt hanziArt, String buildType, LuminanceGrid grid, int index, boolean last, int cellScale) throws IOException {
+        RowRenderer renderer = hanziBuilder.rowRenderer(hanziArt, buildType, grid, 0);
+        int columns = renderer.getColumns();
+        int[] codePoints = new int[renderer.getRows() * columns];
+        hanziBuilder.renderRows(hanziArt, renderer, new RowSink() {
+            @Override
+            public void acceptRow(int row, int[] rowCodePoints, int length) {
+                System.arraycopy(rowCodePoints, 0, codePoints, row * columns, length);
+            }
+        });
+        return new ProgressiveLevel(index, last, buildType, renderer.getRows(), columns, cellScale, codePoints);
+    }
+}
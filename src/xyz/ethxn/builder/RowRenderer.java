@@ -0,0 +1,37 @@
+package xyz.ethxn.builder;
+
+/**
+ * Picks the characters of one build, a row at a time. Unless the renderer is
+ * ordered, rows don't depend on each other, so they can be rendered in any
+ * order, on any thread, or by separate renderers for separate stripes.
+ */
+public interface RowRenderer {
+
+    /**
+     * @return the number of rows of output
+     */
+    int getRows();
+
+    /**
+     * @return the number of characters per row
+     */
+    int getColumns();
+
+    /**
+     * Renders one row of output.
+     * @param row the index of the row
+     * @param codePoints receives the characters of the row, at least {@link #getColumns()} long
+     */
+    void renderRow(int row, int[] codePoints);
+
+    /**
+     * Returns whether rows depend on the rows before them, as when dithering
+     * carries error from row to row. Every row of an ordered renderer must then
+     * be rendered once, in order, on one thread at a time, and the whole art by
+     * this one renderer.
+     * @return true if the rows must be rendered in order
+     */
+    default boolean isOrdered() {
+        return false;
+    }
+}
@@ -0,0 +1,144 @@
+package xyz.ethxn.cache;
+
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.HanziDictionary;
+import xyz.ethxn.builder.HanziBuilder;
+import xyz.ethxn.builder.RowRenderer;
+import xyz.ethxn.image.LuminanceGrid;
+import xyz.ethxn.output.ColorRowSink;
+import xyz.ethxn.output.RowSink;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+
+/**
+ * Caches renders by the content of their image. Two levels are kept:
+ * luminance grids, keyed by the image hash, grid width and source region,
+ * and finished art, keyed by that plus every option that changes the glyphs.
+ * A render that only changes the max stroke count or build type reuses the
+ * grid and skips straight to glyph selection; a repeated seeded render is
+ * replayed from the art cache without touching the image at all.
+ *
+ * <p>Only images set as a file or stream are cached, since a BufferedImage
+ * has no encoded content to hash. Colored output isn't cached either, as
+ * the cache keeps no colors. Unseeded renders reuse grids but their art
+ * isn't cached, as it's meant to differ each time. One cache can be shared by
+ * many HanziArt objects and threads.
+ */
+public class RenderCache {
+
+    private final HanziBuilder hanziBuilder = new HanziBuilder();
+    private final LruCache<GridKey, LuminanceGrid> grids;
+    private final LruCache<ArtKey, CachedArt> arts;
+
+    private record GridKey(String imageHash, int gridWidth, Rectangle sourceRegion) {}
+
+    private record ArtKey(GridKey grid, HanziDictionary dictionary, String buildType,
+                          int maxStrokeCount, int blockSize, boolean dither, long seed) {}
+
+    private record CachedArt(int rows, int columns, int[] codePoints) {}
+
+    /**
+     * Creates an empty cache.
+     * @param maxGridBytes the memory the cached luminance grids may use
+     * @param maxArtBytes the memory the cached art may use
+     */
+    public RenderCache(long maxGridBytes, long maxArtBytes) {
+        this.grids = new LruCache<>(maxGridBytes, grid -> grid.getPixels().length);
+        this.arts = new LruCache<>(maxArtBytes, art -> 4L * art.codePoints().length);
+    }
+
+    /**
+     * Renders a hanzi art object through the cache. Called by
+     * {@link HanziArt#render(RowSink)} once a cache is set.
+     * @param hanziArt the hanzi art object, seeded
+     * @param sink the sink to receive the rows
+     * @throws IOException if the image can't be read or the sink fails
+     */
+    public void render(HanziArt hanziArt, RowSink sink) throws IOException {
+        String imageHash = hanziArt.getImageHash();
+        if (imageHash == null || sink instanceof ColorRowSink) {
+            hanziBuilder.build(hanziArt, sink);
+            return;
+        }
+
+        GridKey gridKey = new GridKey(imageHash, hanziArt.getOutputWidth() * HanziBuilder.gridScale(hanziArt),
+                hanziArt.getSourceRegion() == null ? null : new Rectangle(hanziArt.getSourceRegion()));
+        ArtKey artKey = !hanziArt.isSeeded() ? null : new ArtKey(gridKey, hanziArt.getDictionary(),
+                hanziArt.getBuildType(), hanziArt.getMaxStrokeCount(), hanziArt.getBlockSize(), hanziArt.isDither(), hanziArt.getSeed());
+
+        CachedArt cachedArt = artKey == null ? null : arts.get(artKey);
+        if (cachedArt != null) {
+            replay(cachedArt, sink);
+            return;
+        }
+
+        LuminanceGrid grid = grids.get(gridKey);
+        if (grid == null) {
+            grid = hanziBuilder.prepareGrid(hanziArt);
+            grids.put(gridKey, grid);
+        }
+        RowRenderer renderer = hanziBuilder.rowRenderer(hanziArt, grid);
+        if (artKey == null) {
+            hanziBuilder.renderRows(hanziArt, renderer, sink);
+            return;
+        }
+
+        // record the rows on their way to the sink
+        int columns = renderer.getColumns();
+        int[] codePoints = new int[renderer.getRows() * columns];
+        hanziBuilder.renderRows(hanziArt, renderer, new RowSink() {
+            @Override
+            public void begin(int rows, int columns) throws IOException {
+                sink.begin(rows, columns);
+            }
+
+            @Override
+            public void acceptRow(int row, int[] rowCodePoints, int length) throws IOException {
+                System.arraycopy(rowCodePoints, 0, codePoints, row * columns, length);
+                sink.acceptRow(row, rowCodePoints, length);
+            }
+
+            @Override
+            public void finish() throws IOException {
+                sink.finish();
+            }
+        });
+        arts.put(artKey, new CachedArt(renderer.getRows(), columns, codePoints));
+    }
+
+    private static void replay(CachedArt art, RowSink sink) throws IOException {
+        try {
+            sink.begin(art.rows(), art.columns());
+            int[] row = new int[art.columns()];
+            for (int y = 0; y < art.rows(); y++) {
+                System.arraycopy(art.codePoints(), y * art.columns(), row, 0, art.columns());
+                sink.acceptRow(y, row, art.columns());
+            }
+        } finally {
+            sink.finish();
+        }
+    }
+
+    /**
+     * Removes every cached grid and piece of art.
+     */
+    public void clear() {
+        grids.clear();
+        arts.clear();
+    }
+
+    /**
+     * @return the luminance grid level, for its hit, miss and eviction counts
+     */
+    public LruCache<?, LuminanceGrid> getGridCache() {
+        return grids;
+    }
+
+    /**
+     * @return the finished art level, for its hit, miss and eviction counts
+     */
+    public LruCache<?, ?> getArtCache() {
+        return arts;
+    }
+}
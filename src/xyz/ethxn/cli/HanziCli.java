@@ -0,0 +1,421 @@
+package xyz.ethxn.cli;
+
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.HanziDictionary;
+import xyz.ethxn.batch.BatchListener;
+import xyz.ethxn.batch.BatchResult;
+import xyz.ethxn.batch.HanziBatchRenderer;
+
+import javax.imageio.ImageIO;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Renders images from the command line, with one dictionary loaded for the
+ * whole run and the images rendered concurrently. Inputs are image files,
+ * directories, searched recursively for images, or globs such as
+ * {@code "scans/**.png"}. The art of each image is written next to it, or
+ * under the output directory, as the image's file name with {@code .txt}
+ * added.
+ *
+ * <p>The content hash of every rendered image is kept in a manifest, and
+ * images whose content and options haven't changed since are skipped. In
+ * watch mode the inputs are watched after the first pass, and new or
+ * modified images are rendered as they appear.
+ */
+public final class HanziCli {
+
+    private static final String USAGE = """
+            usage: img-hanzi -d <dictionary> [options] <file | directory | glob>...
+              -w, --width <n>          output width in characters (default 80)
+              -m, --mode <mode>        fast, complex, nearest or density (default fast)
+              -s, --max-strokes <n>    highest stroke count to use, 1-25 (default 25)
+              -b, --block-size <n>     block size of nearest mode, 2-4 (default 2)
+                  --seed <n>           seed, for the same art every run
+                  --dither             spread quantization error to neighbouring cells
+              -o, --output <dir>       write the art here instead of next to each image
+              -d, --dictionary <file>  a snapshot, or a Unihan txt file (repeatable); required
+                  --density-table <file>  ink density table, required for density mode
+              -j, --jobs <n>           images decoded at once (default: processors)
+                  --manifest <file>    content hash manifest (default: .img-hanzi-manifest in the output directory)
+                  --force              render every image, even unchanged ones
+                  --watch              keep watching the inputs and render new or modified images
+            """;
+
+    /** How long the inputs must be quiet before a batch of changes is rendered. */
+    private static final long WATCH_SETTLE_MILLIS = 300;
+
+    /**
+     * Where to look for images: a directory, how deep below it, and which of
+     * the paths below it, relative to it, are wanted.
+     */
+    private record InputSpec(Path base, int maxDepth, PathMatcher matcher, boolean imagesOnly) {
+        boolean matches(Path path) {
+            if (!path.startsWith(base) || path.equals(base)) {
+                return false;
+            }
+            Path relative = base.relativize(path);
+            return relative.getNameCount() <= maxDepth && matcher.matches(relative)
+                    && (!imagesOnly || isImage(path));
+        }
+    }
+
+    private final List<InputSpec> specs = new ArrayList<>();
+    private final List<String> dictionaryPaths = new ArrayList<>();
+    private String densityTablePath;
+    private int width = 80;
+    private String mode = "fast";
+    private int maxStrokeCount = 25;
+    private int blockSize = 2;
+    private Long seed;
+    private boolean dither;
+    private Path outputDir;
+    private Path manifestPath;
+    private int jobs = Runtime.getRuntime().availableProcessors();
+    private boolean force;
+    private boolean watch;
+
+    private HanziCli() {}
+
+    /**
+     * Runs the command line tool.
+     * @param args the options and inputs, see the usage message
+     * @throws IOException if the dictionary or manifest can't be loaded
+     * @throws InterruptedException if interrupted while rendering
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        HanziCli cli = new HanziCli();
+        try {
+            cli.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+        System.exit(cli.run());
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-h", "--help" -> {
+                    System.out.print(USAGE);
+                    System.exit(0);
+                }
+                case "-w", "--width" -> width = intValue(arg, args, ++i, 1, Integer.MAX_VALUE);
+                case "-m", "--mode" -> {
+                    mode = value(arg, args, ++i);
+                    if (!List.of("fast", "complex", "nearest", "density").contains(mode)) {
+                        throw new IllegalArgumentException("'" + mode + "'" + " is an invalid build type.");
+                    }
+                }
+                case "-s", "--max-strokes" -> maxStrokeCount = intValue(arg, args, ++i, 1, 25);
+                case "-b", "--block-size" -> blockSize = intValue(arg, args, ++i, 2, 4);
+                case "--seed" -> {
+                    try {
+                        seed = Long.parseLong(value(arg, args, ++i));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("'" + args[i] + "'" + " is an invalid seed.");
+                    }
+                }
+                case "--dither" -> dither = true;
+                case "-o", "--output" -> outputDir = Path.of(value(arg, args, ++i)).toAbsolutePath().normalize();
+                case "-d", "--dictionary" -> dictionaryPaths.add(value(arg, args, ++i));
+                case "--density-table" -> densityTablePath = value(arg, args, ++i);
+                case "-j", "--jobs" -> jobs = intValue(arg, args, ++i, 1, Integer.MAX_VALUE);
+                case "--manifest" -> manifestPath = Path.of(value(arg, args, ++i));
+                case "--force" -> force = true;
+                case "--watch" -> watch = true;
+                default -> {
+                    if (arg.startsWith("-") && arg.length() > 1) {
+                        throw new IllegalArgumentException("unknown option " + arg);
+                    }
+                    specs.add(inputSpec(arg));
+                }
+            }
+        }
+        if (specs.isEmpty()) {
+            throw new IllegalArgumentException("no inputs given");
+        }
+        if (dictionaryPaths.isEmpty()) {
+            throw new IllegalArgumentException("no dictionary given");
+        }
+        if (mode.equals("density") && densityTablePath == null) {
+            throw new IllegalArgumentException("density mode needs an ink density table, see --density-table");
+        }
+    }
+
+    private static String value(String option, String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return args[i];
+    }
+
+    private static int intValue(String option, String[] args, int i, int min, int max) {
+        String value = value(option, args, i);
+        try {
+            int n = Integer.parseInt(value);
+            if (n >= min && n <= max) {
+                return n;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("'" + value + "'" + " is an invalid value for " + option);
+    }
+
+    /**
+     * Turns an input argument into a spec. A glob is split at its first
+     * segment with a wildcard: the segments before it are the directory to
+     * search, and the rest is matched against the paths below it.
+     */
+    private static InputSpec inputSpec(String arg) {
+        String[] segments = arg.replace('\\', '/').split("/", -1);
+        int wildcard = 0;
+        while (wildcard < segments.length && !hasWildcard(segments[wildcard])) {
+            wildcard++;
+        }
+        if (wildcard == segments.length) {
+            Path path = Path.of(arg).toAbsolutePath().normalize();
+            if (Files.isDirectory(path)) {
+                return new InputSpec(path, Integer.MAX_VALUE, relative -> true, true);
+            }
+            Path fileName = path.getFileName();
+            return new InputSpec(path.getParent(), 1, fileName::equals, false);
+        }
+
+        String base = String.join("/", List.of(segments).subList(0, wildcard));
+        String pattern = String.join("/", List.of(segments).subList(wildcard, segments.length));
+        int maxDepth = pattern.contains("**") ? Integer.MAX_VALUE : segments.length - wildcard;
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        Path basePath = Path.of(base.isEmpty() && arg.startsWith("/") ? "/" : base).toAbsolutePath().normalize();
+        return new InputSpec(basePath, maxDepth, matcher, true);
+    }
+
+    private static boolean hasWildcard(String segment) {
+        return segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0
+                || segment.indexOf('[') >= 0 || segment.indexOf('{') >= 0;
+    }
+
+    private static boolean isImage(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) {
+            return false;
+        }
+        String suffix = name.substring(dot + 1).toLowerCase(Locale.ROOT);
+        for (String readable : ImageIO.getReaderFileSuffixes()) {
+            if (readable.equalsIgnoreCase(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int run() throws IOException, InterruptedException {
+        HanziDictionary dictionary;
+        if (dictionaryPaths.size() == 1 && !dictionaryPaths.get(0).endsWith(".txt")) {
+            dictionary = HanziDictionary.fromSnapshot(dictionaryPaths.get(0));
+        } else {
+            dictionary = HanziDictionary.load(dictionaryPaths.toArray(new String[0]));
+        }
+        if (densityTablePath != null) {
+            dictionary = dictionary.withInkDensityTable(densityTablePath);
+        }
+
+        if (manifestPath == null) {
+            manifestPath = (outputDir != null ? outputDir : Path.of("")).resolve(".img-hanzi-manifest");
+        }
+        RenderManifest manifest = new RenderManifest(manifestPath);
+
+        try (HanziBatchRenderer renderer = new HanziBatchRenderer(dictionary, this::applyOptions, jobs, jobs * 4)) {
+            Set<Path> inputs = new LinkedHashSet<>();
+            for (InputSpec spec : specs) {
+                if (!Files.isDirectory(spec.base())) {
+                    System.err.println(spec.base() + ": no such directory");
+                    continue;
+                }
+                try (Stream<Path> paths = Files.walk(spec.base(), spec.maxDepth())) {
+                    paths.filter(Files::isRegularFile).filter(spec::matches).forEach(inputs::add);
+                }
+            }
+            int failed = renderPass(renderer, manifest, inputs);
+            if (!watch) {
+                return failed == 0 ? 0 : 1;
+            }
+            watch(renderer, manifest);
+            return 0;
+        }
+    }
+
+    private void applyOptions(HanziArt hanziArt) {
+        hanziArt.setOutputWidth(width);
+        hanziArt.setBuildType(mode);
+        hanziArt.setMaxStrokeCount(maxStrokeCount);
+        hanziArt.setBlockSize(blockSize);
+        hanziArt.setDither(dither);
+        if (seed != null) {
+            hanziArt.setSeed(seed);
+        }
+    }
+
+    /**
+     * @return everything that changes the art of an image, besides the image itself
+     */
+    private String optionsSignature() {
+        return "width=" + width + ",mode=" + mode + ",maxStrokes=" + maxStrokeCount + ",blockSize=" + blockSize
+                + ",dither=" + dither + ",seed=" + (seed == null ? "random" : seed)
+                + ",dictionary=" + String.join(";", dictionaryPaths)
+                + (mode.equals("density") ? ",densityTable=" + densityTablePath : "");
+    }
+
+    private Path outputPath(Path input) {
+        if (outputDir == null) {
+            return input.resolveSibling(input.getFileName() + ".txt");
+        }
+        for (InputSpec spec : specs) {
+            if (spec.matches(input)) {
+                Path relative = spec.base().relativize(input);
+                return outputDir.resolve(relative.toString() + ".txt");
+            }
+        }
+        return outputDir.resolve(input.getFileName() + ".txt");
+    }
+
+    /**
+     * Renders every input whose content or options changed since it was last rendered.
+     * @return the number of inputs that failed
+     */
+    private int renderPass(HanziBatchRenderer renderer, RenderManifest manifest, Set<Path> inputs) throws IOException, InterruptedException {
+        String options = optionsSignature();
+        AtomicInteger rendered = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        try {
+            renderer.renderAll(inputs.stream(), new BatchListener() {
+                @Override
+                public boolean isCurrent(Path input, String imageHash) {
+                    return !force && manifest.isCurrent(input, imageHash, options) && Files.exists(outputPath(input));
+                }
+
+                @Override
+                public void unchanged(Path input) {
+                    skipped.incrementAndGet();
+                }
+
+                @Override
+                public void rendered(BatchResult result) {
+                    Path output = outputPath(result.input());
+                    try {
+                        Files.createDirectories(output.getParent());
+                        Files.writeString(output, result.outputArt(), StandardCharsets.UTF_8);
+                    } catch (IOException e) {
+                        failed(result.input(), e);
+                        return;
+                    }
+                    manifest.put(result.input(), result.imageHash(), options);
+                    rendered.incrementAndGet();
+                    System.out.println(result.input() + " -> " + output);
+                }
+
+                @Override
+                public void failed(Path input, Throwable error) {
+                    failed.incrementAndGet();
+                    System.err.println(input + ": " + error);
+                }
+            }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause()); // the listener handles every failure
+        } finally {
+            manifest.save();
+        }
+        System.out.println("rendered " + rendered + ", unchanged " + skipped + ", failed " + failed);
+        return failed.get();
+    }
+
+    /**
+     * Watches the input directories until interrupted, rendering new and
+     * modified images once the changes settle.
+     */
+    private void watch(HanziBatchRenderer renderer, RenderManifest manifest) throws IOException, InterruptedException {
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            Map<WatchKey, Path> directories = new HashMap<>();
+            for (InputSpec spec : specs) {
+                register(watchService, directories, spec.base(), spec.maxDepth() - 1);
+            }
+            System.out.println("watching " + directories.size() + " directories, ctrl-c to stop");
+
+            while (true) {
+                Set<Path> changed = new LinkedHashSet<>();
+                WatchKey key = watchService.take();
+                // keep collecting until the inputs have been quiet for a moment, so half written files settle
+                while (key != null) {
+                    Path directory = directories.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                            continue;
+                        }
+                        Path path = directory.resolve((Path) event.context());
+                        if (Files.isDirectory(path)) {
+                            for (InputSpec spec : specs) {
+                                if (path.startsWith(spec.base()) && spec.base().relativize(path).getNameCount() < spec.maxDepth()) {
+                                    register(watchService, directories, path, spec.maxDepth() - 1 - spec.base().relativize(path).getNameCount());
+                                    try (Stream<Path> paths = Files.walk(path)) {
+                                        paths.filter(Files::isRegularFile).forEach(changed::add);
+                                    }
+                                }
+                            }
+                        } else {
+                            changed.add(path);
+                        }
+                    }
+                    if (!key.reset()) {
+                        directories.remove(key);
+                    }
+                    key = watchService.poll(WATCH_SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                changed.removeIf(path -> !Files.isRegularFile(path) || specs.stream().noneMatch(spec -> spec.matches(path)));
+                if (!changed.isEmpty()) {
+                    renderPass(renderer, manifest, changed);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // shutting down
+        }
+    }
+
+    private static void register(WatchService watchService, Map<WatchKey, Path> directories, Path directory, int depth) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory, Math.max(0, depth))) {
+            for (Path path : (Iterable<Path>) paths.filter(Files::isDirectory)::iterator) {
+                WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                directories.put(key, path);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package xyz.ethxn.cli;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Remembers the content hash of each image and the options it was last
+ * rendered with, so a later run can skip images that haven't changed. Kept
+ * as a properties file mapping the absolute path of each image to its hash
+ * and options, and replaced in one move when saved, so a run that's killed
+ * halfway leaves the previous manifest intact.
+ */
+final class RenderManifest {
+
+    private final Path file;
+    private final Properties entries = new Properties();
+    private boolean changed;
+
+    /**
+     * Loads a manifest, or starts an empty one if the file doesn't exist yet.
+     * @param file the manifest file
+     * @throws IOException if the file can't be read
+     */
+    RenderManifest(Path file) throws IOException {
+        this.file = file;
+        if (Files.exists(file)) {
+            try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                entries.load(in);
+            }
+        }
+    }
+
+    /**
+     * @param input the image
+     * @param imageHash the SHA-256 hash of the image file
+     * @param options the options it would be rendered with
+     * @return true if the image was last rendered from the same content with the same options
+     */
+    synchronized boolean isCurrent(Path input, String imageHash, String options) {
+        return (imageHash + " " + options).equals(entries.getProperty(key(input)));
+    }
+
+    synchronized void put(Path input, String imageHash, String options) {
+        entries.setProperty(key(input), imageHash + " " + options);
+        changed = true;
+    }
+
+    /**
+     * Writes the manifest, if anything was added since it was loaded or last saved.
+     * @throws IOException if the file can't be written
+     */
+    synchronized void save() throws IOException {
+        if (!changed) {
+            return;
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            entries.store(out, "img-hanzi render manifest");
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        changed = false;
+    }
+
+    private static String key(Path input) {
+        return input.toAbsolutePath().normalize().toString();
+    }
+}
@@ -0,0 +1,214 @@
+package xyz.ethxn.dictionary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes precompiled glyph index snapshots. A snapshot holds the
+ * processed stroke count buckets, four corner codes, brightest corners and
+ * corner candidate tables. Loading one from a file is a memory map: the
+ * glyph index reads its tables straight from the mapped pages, which the
+ * operating system shares between every process that maps the same file,
+ * so only the checksum pass touches the data at startup.
+ *
+ * <p>Layout, all little endian, with the int sections first so every
+ * section is aligned to its element size:
+ * <pre>
+ * int     magic ("HNZI")
+ * int     version
+ * int     glyph count (n)
+ * int     max stroke count (m)
+ * int     corner candidate count (c)
+ * int[]   bucket offsets (m + 2)
+ * int[]   corner offsets (4 * (m + 1) + 1)
+ * int[]   code points (n)
+ * int[]   corner candidates (c)
+ * short[] four corner codes (n)
+ * byte[]  brightest corners (n)
+ * int     CRC32 of everything above
+ * </pre>
+ *
+ * <p>Create one with the main method, e.g.
+ * {@code java xyz.ethxn.dictionary.DictionarySnapshot hanzi.snapshot Unihan_DictionaryLikeData.txt Unihan_IRGSources.txt},
+ * or build the jar with {@code -Dunihan.irgSources=path/to/Unihan_IRGSources.txt}
+ * to compile one and bundle it at {@link #BUNDLED_RESOURCE}.
+ */
+public final class DictionarySnapshot {
+
+    /** Classpath location of a bundled snapshot. */
+    public static final String BUNDLED_RESOURCE = "/hanzi.snapshot";
+
+    private static final int MAGIC = 0x495A4E48; // "HNZI"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 5 * 4;
+
+    private DictionarySnapshot() {}
+
+    /**
+     * Compiles the Unihan txt files into a snapshot.
+     * @param args the snapshot path, followed by the Unihan txt paths
+     * @throws IOException if a file can't be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: DictionarySnapshot <snapshot> <unihan txt>...");
+            System.exit(1);
+        }
+        String[] txtPaths = new String[args.length - 1];
+        System.arraycopy(args, 1, txtPaths, 0, txtPaths.length);
+
+        GlyphIndex glyphIndex = GlyphIndex.fromUnihanData(UnihanLoader.load(txtPaths));
+        Path snapshotPath = Path.of(args[0]);
+        if (snapshotPath.getParent() != null) {
+            Files.createDirectories(snapshotPath.getParent());
+        }
+        write(glyphIndex, snapshotPath);
+        System.out.println("wrote " + glyphIndex.size() + " glyphs to " + args[0]);
+    }
+
+    /**
+     * Writes a glyph index to a snapshot file.
+     * @param glyphIndex the glyph index to write
+     * @param snapshotPath the path of the snapshot file
+     * @throws IOException if the file can't be written
+     */
+    public static void write(GlyphIndex glyphIndex, Path snapshotPath) throws IOException {
+        int count = glyphIndex.size();
+        int cornerCount = glyphIndex.cornerCodePoints.limit();
+        int size = HEADER_BYTES + (glyphIndex.offsets.length + glyphIndex.cornerOffsets.length) * 4
+                + count * (4 + 2 + 1) + cornerCount * 4 + 4;
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(count);
+        buffer.putInt(glyphIndex.getMaxStrokeCount());
+        buffer.putInt(cornerCount);
+        for (int offset : glyphIndex.offsets) {
+            buffer.putInt(offset);
+        }
+        for (int offset : glyphIndex.cornerOffsets) {
+            buffer.putInt(offset);
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(glyphIndex.codePoints.get(i));
+        }
+        for (int i = 0; i < cornerCount; i++) {
+            buffer.putInt(glyphIndex.cornerCodePoints.get(i));
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putShort(glyphIndex.fourCornerCodes.get(i));
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.put(glyphIndex.brightestCorners.get(i));
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Loads a glyph index by memory-mapping a snapshot file.
+     * @param snapshotPath the path of the snapshot file
+     * @return the glyph index
+     * @throws IOException if the file can't be read, or isn't a valid snapshot
+     */
+    public static GlyphIndex load(Path snapshotPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Loads a glyph index from a snapshot stream, e.g. a bundled resource.
+     * @param in the snapshot stream, left open
+     * @return the glyph index
+     * @throws IOException if the stream can't be read, or isn't a valid snapshot
+     */
+    public static GlyphIndex load(InputStream in) throws IOException {
+        return read(ByteBuffer.wrap(in.readAllBytes()));
+    }
+
+    /**
+     * Loads the snapshot bundled at {@link #BUNDLED_RESOURCE}.
+     * @return the glyph index
+     * @throws IOException if there is no bundled snapshot, or it isn't valid
+     */
+    public static GlyphIndex loadBundled() throws IOException {
+        try (InputStream in = DictionarySnapshot.class.getResourceAsStream(BUNDLED_RESOURCE)) {
+            if (in == null) {
+                throw new IOException("no snapshot bundled at " + BUNDLED_RESOURCE);
+            }
+            return load(in);
+        }
+    }
+
+    /**
+     * Checks a snapshot and wraps its sections as the tables of a glyph index,
+     * without copying them.
+     */
+    private static GlyphIndex read(ByteBuffer buffer) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < HEADER_BYTES + 4 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a hanzi dictionary snapshot");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("unsupported snapshot version " + buffer.getInt(4));
+        }
+
+        int checksumPosition = buffer.limit() - 4;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(0).limit(checksumPosition));
+        if ((int) crc.getValue() != buffer.getInt(checksumPosition)) {
+            throw new IOException("snapshot checksum mismatch");
+        }
+
+        int count = buffer.getInt(8);
+        int maxStrokeCount = buffer.getInt(12);
+        int cornerCount = buffer.getInt(16);
+        int[] offsets = new int[maxStrokeCount + 2];
+        int[] cornerOffsets = new int[4 * (maxStrokeCount + 1) + 1];
+        if (count < 0 || maxStrokeCount < 0 || cornerCount < 0 || (long) HEADER_BYTES
+                + (offsets.length + cornerOffsets.length) * 4L + count * 7L + cornerCount * 4L + 4 != buffer.limit()) {
+            throw new IOException("snapshot sections don't match its size");
+        }
+
+        // the offset tables are tiny and read on every lookup, so they're copied
+        int position = HEADER_BYTES;
+        slice(buffer, position, offsets.length * 4).asIntBuffer().get(offsets);
+        position += offsets.length * 4;
+        slice(buffer, position, cornerOffsets.length * 4).asIntBuffer().get(cornerOffsets);
+        position += cornerOffsets.length * 4;
+        IntBuffer codePoints = slice(buffer, position, count * 4).asIntBuffer();
+        position += count * 4;
+        IntBuffer cornerCodePoints = slice(buffer, position, cornerCount * 4).asIntBuffer();
+        position += cornerCount * 4;
+        ShortBuffer fourCornerCodes = slice(buffer, position, count * 2).asShortBuffer();
+        position += count * 2;
+        ByteBuffer brightestCorners = slice(buffer, position, count);
+
+        return new GlyphIndex(codePoints, offsets, fourCornerCodes, brightestCorners, cornerCodePoints, cornerOffsets);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+        return buffer.slice(position, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
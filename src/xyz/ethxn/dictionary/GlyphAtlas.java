@@ -0,0 +1,177 @@
+package xyz.ethxn.dictionary;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+
+/**
+ * Every glyph of an index drawn once with a real font, as grayscale tiles, so
+ * image output is a copy per cell rather than a drawString. All tiles live in
+ * one array, {@code cellSize * cellSize} bytes each, and a small open
+ * addressing table maps code points to their tile. Slot 0 is the blank cell,
+ * which is also used for code points that weren't drawn.
+ *
+ * <p>An atlas drawn up to a lower stroke count only serves fast and complex
+ * renders with at most that many strokes; nearest and density renders can
+ * pick any glyph of the index, so they need an atlas of all of them, see
+ * {@link #getMaxStrokeCount()}.
+ */
+public final class GlyphAtlas {
+
+    private static final int EMPTY = -1; // free key in the slot table, code points are never negative
+
+    private final String fontName;
+    private final int cellSize;
+    private final int maxStrokeCount; // highest stroke count bucket drawn
+    private final int tileArea;
+    private final byte[] tiles;  // tile i starts at i * tileArea, rows of cellSize pixels
+    private final int[] keys;    // code point of each table entry, or EMPTY
+    private final int[] slots;   // tile of each table entry
+    private final int mask;
+    private final int shift;     // keeps the top bits of the hash, as many as the table needs
+    private final int size;
+
+    private GlyphAtlas(String fontName, int cellSize, int maxStrokeCount, int[] codePoints, byte[] tiles, int size) {
+        this.fontName = fontName;
+        this.cellSize = cellSize;
+        this.maxStrokeCount = maxStrokeCount;
+        this.tileArea = cellSize * cellSize;
+        this.tiles = tiles;
+        this.size = size;
+
+        // power of two, at most half full, so probes stay short
+        int capacity = Integer.highestOneBit(Math.max(2, size * 2 - 1)) << 1;
+        this.keys = new int[capacity];
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        this.shift = 32 - Integer.numberOfTrailingZeros(capacity);
+        Arrays.fill(keys, EMPTY);
+        for (int slot = 0; slot < size; slot++) {
+            int i = hash(codePoints[slot]);
+            while (keys[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = codePoints[slot];
+            slots[i] = slot;
+        }
+    }
+
+    /**
+     * Draws every glyph of an index, light on dark.
+     * @param glyphIndex the glyphs to draw
+     * @param font the font to draw with, its size is set to fit the cell
+     * @param cellSize the size of one character cell in pixels
+     * @return the atlas
+     */
+    public static GlyphAtlas rasterize(GlyphIndex glyphIndex, Font font, int cellSize) {
+        return rasterize(glyphIndex, font, cellSize, glyphIndex.getMaxStrokeCount(), 255, 0);
+    }
+
+    /**
+     * Draws the glyphs of an index that a render can pick. Glyphs the font can't
+     * display are left out, and come out blank.
+     * @param glyphIndex the glyphs to draw
+     * @param font the font to draw with, its size is set to fit the cell
+     * @param cellSize the size of one character cell in pixels
+     * @param maxStrokeCount the highest stroke count bucket to draw, the max stroke count of the renders
+     * @param foreground the gray level of the ink, 0-255
+     * @param background the gray level of the cell, 0-255
+     * @return the atlas
+     */
+    public static GlyphAtlas rasterize(GlyphIndex glyphIndex, Font font, int cellSize, int maxStrokeCount, int foreground, int background) {
+        BufferedImage cell = new BufferedImage(cellSize, cellSize, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] pixels = ((DataBufferByte) cell.getRaster().getDataBuffer()).getData();
+        Graphics2D g = cell.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(font.deriveFont((float) cellSize));
+        g.setColor(new Color(foreground, foreground, foreground));
+        FontMetrics metrics = g.getFontMetrics();
+        int baseline = (cellSize - metrics.getHeight()) / 2 + metrics.getAscent();
+
+        maxStrokeCount = Math.max(0, Math.min(maxStrokeCount, glyphIndex.getMaxStrokeCount()));
+        int end = glyphIndex.offsets[maxStrokeCount + 1];
+        int tileArea = cellSize * cellSize;
+        int[] codePoints = new int[end + 1];
+        byte[] tiles = new byte[(end + 1) * tileArea];
+        Arrays.fill(tiles, 0, tileArea, (byte) background);
+        codePoints[0] = GlyphIndex.BLANK;
+        int size = 1;
+
+        for (int i = 0; i < end; i++) {
+            int codePoint = glyphIndex.codePoints.get(i);
+            if (!font.canDisplay(codePoint)) {
+                continue;
+            }
+            Arrays.fill(pixels, (byte) background);
+            String glyph = new String(Character.toChars(codePoint));
+            g.drawString(glyph, (cellSize - metrics.stringWidth(glyph)) / 2, baseline);
+
+            System.arraycopy(pixels, 0, tiles, size * tileArea, tileArea);
+            codePoints[size++] = codePoint;
+        }
+        g.dispose();
+        return new GlyphAtlas(font.getName(), cellSize, maxStrokeCount, codePoints, Arrays.copyOf(tiles, size * tileArea), size);
+    }
+
+    private int hash(int codePoint) {
+        return (codePoint * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * Returns the tile of a code point.
+     * @param codePoint the code point
+     * @return the tile index, 0 (blank) if the glyph wasn't drawn
+     */
+    public int slot(int codePoint) {
+        for (int i = hash(codePoint); ; i = (i + 1) & mask) {
+            int key = keys[i];
+            if (key == codePoint) {
+                return slots[i];
+            }
+            if (key == EMPTY) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Copies the tile of a code point into a grayscale raster.
+     * @param codePoint the code point
+     * @param destination the raster data, one byte per pixel
+     * @param offset the index of the top left pixel of the cell
+     * @param stride the number of bytes between two rows of the raster
+     */
+    public void copyTile(int codePoint, byte[] destination, int offset, int stride) {
+        int tile = slot(codePoint) * tileArea;
+        for (int y = 0; y < cellSize; y++) {
+            System.arraycopy(tiles, tile + y * cellSize, destination, offset + y * stride, cellSize);
+        }
+    }
+
+    /**
+     * @return the number of tiles, including the blank one
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the highest stroke count bucket that was drawn, glyphs with more strokes come out blank
+     */
+    public int getMaxStrokeCount() {
+        return maxStrokeCount;
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    public String getFontName() {
+        return fontName;
+    }
+}
@@ -0,0 +1,284 @@
+package xyz.ethxn.dictionary;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.random.RandomGenerator;
+
+/**
+ * An immutable index of renderable hanzi, grouped by stroke count.
+ * All code points are packed into one array, with an offset table
+ * marking where each stroke count bucket starts, so picking a glyph
+ * is a single array read. Four corner data is kept in arrays parallel
+ * to the code points, and a second packed table lists the candidates
+ * for each stroke count and brightest corner, so complex mode lookups
+ * are a single array read too.
+ *
+ * <p>The per-glyph tables are buffers, so an index loaded from a snapshot
+ * can read them straight from the memory-mapped file, whose pages are shared
+ * by every process that maps it, see {@link DictionarySnapshot}.
+ */
+public final class GlyphIndex {
+
+    /** The ideographic space, used when a bucket has nothing to offer. */
+    public static final int BLANK = 0x3000;
+
+    /** Corner of a glyph without a four corner code. */
+    public static final int NO_CORNER = -1;
+
+    /** Corner of a glyph whose four corner code is 0000, which fits any block. */
+    public static final int ANY_CORNER = 4;
+
+    final IntBuffer codePoints;        // every glyph, ordered by stroke count
+    final int[] offsets;               // offsets[s] is the index of the first glyph with s strokes
+    final ShortBuffer fourCornerCodes; // four corner code of each glyph, or UnihanData.NO_VALUE
+    final ByteBuffer brightestCorners; // corner with the greatest four corner digit, 0-3 = TL, TR, BL, BR
+    final IntBuffer cornerCodePoints;  // glyphs by stroke count, then corner, with 0000 glyphs under every corner
+    final int[] cornerOffsets;         // cornerOffsets[s * 4 + c] is the first glyph with s strokes and corner c
+    private final int maxStrokeCount;
+
+    /**
+     * Creates an index from tables that are already built, e.g. views of a snapshot.
+     */
+    GlyphIndex(IntBuffer codePoints, int[] offsets, ShortBuffer fourCornerCodes, ByteBuffer brightestCorners,
+               IntBuffer cornerCodePoints, int[] cornerOffsets) {
+        this.codePoints = codePoints;
+        this.offsets = offsets;
+        this.fourCornerCodes = fourCornerCodes;
+        this.brightestCorners = brightestCorners;
+        this.cornerCodePoints = cornerCodePoints;
+        this.cornerOffsets = cornerOffsets;
+        this.maxStrokeCount = offsets.length - 2;
+    }
+
+    /**
+     * Creates an index from the glyph tables, and builds the corner tables from them.
+     */
+    static GlyphIndex of(int[] codePoints, int[] offsets, short[] fourCornerCodes, byte[] brightestCorners) {
+        int maxStrokeCount = offsets.length - 2;
+
+        // [strokeCount][corner] -> candidates, packed the same way as the stroke buckets
+        int cells = (maxStrokeCount + 1) * 4;
+        int[] cornerOffsets = new int[cells + 1];
+        for (int s = 0; s <= maxStrokeCount; s++) {
+            for (int i = offsets[s]; i < offsets[s + 1]; i++) {
+                int corner = brightestCorners[i];
+                if (corner == ANY_CORNER) {
+                    for (int c = 0; c < 4; c++) {
+                        cornerOffsets[s * 4 + c + 1]++;
+                    }
+                } else if (corner != NO_CORNER) {
+                    cornerOffsets[s * 4 + corner + 1]++;
+                }
+            }
+        }
+        for (int cell = 1; cell <= cells; cell++) {
+            cornerOffsets[cell] += cornerOffsets[cell - 1];
+        }
+        int[] cornerCodePoints = new int[cornerOffsets[cells]];
+        int[] next = cornerOffsets.clone();
+        for (int s = 0; s <= maxStrokeCount; s++) {
+            for (int i = offsets[s]; i < offsets[s + 1]; i++) {
+                int corner = brightestCorners[i];
+                if (corner == ANY_CORNER) {
+                    for (int c = 0; c < 4; c++) {
+                        cornerCodePoints[next[s * 4 + c]++] = codePoints[i];
+                    }
+                } else if (corner != NO_CORNER) {
+                    cornerCodePoints[next[s * 4 + corner]++] = codePoints[i];
+                }
+            }
+        }
+        return new GlyphIndex(IntBuffer.wrap(codePoints), offsets, ShortBuffer.wrap(fourCornerCodes),
+                ByteBuffer.wrap(brightestCorners), IntBuffer.wrap(cornerCodePoints), cornerOffsets);
+    }
+
+    /**
+     * Builds an index of every renderable character with a stroke count.
+     * @param unihanData the loaded Unihan properties
+     * @return the glyph index
+     */
+    public static GlyphIndex fromUnihanData(UnihanData unihanData) {
+        int maxStrokeCount = 0;
+        for (int codePoint = 0; codePoint <= 0xFFFF; codePoint++) {
+            maxStrokeCount = Math.max(maxStrokeCount, unihanData.getTotalStrokes(codePoint));
+        }
+
+        // counting sort by stroke count
+        int[] offsets = new int[maxStrokeCount + 2];
+        for (int codePoint = 0; codePoint <= 0xFFFF; codePoint++) {
+            int strokes = unihanData.getTotalStrokes(codePoint);
+            if (strokes >= 1 && isRenderable(codePoint)) {
+                offsets[strokes + 1]++;
+            }
+        }
+        for (int s = 1; s < offsets.length; s++) {
+            offsets[s] += offsets[s - 1];
+        }
+        int count = offsets[offsets.length - 1];
+        int[] codePoints = new int[count];
+        short[] fourCornerCodes = new short[count];
+        byte[] brightestCorners = new byte[count];
+        int[] next = offsets.clone();
+        for (int codePoint = 0; codePoint <= 0xFFFF; codePoint++) {
+            int strokes = unihanData.getTotalStrokes(codePoint);
+            if (strokes >= 1 && isRenderable(codePoint)) {
+                int i = next[strokes]++;
+                int fourCornerCode = unihanData.getFourCornerCode(codePoint);
+                codePoints[i] = codePoint;
+                fourCornerCodes[i] = (short) fourCornerCode;
+                brightestCorners[i] = (byte) brightestCornerOf(fourCornerCode);
+            }
+        }
+        return of(codePoints, offsets, fourCornerCodes, brightestCorners);
+    }
+
+    /**
+     * Finds the corner with the greatest digit of a four corner code. The digits
+     * are read top left, top right, bottom left, bottom right, and ties go to the
+     * first corner.
+     * @param fourCornerCode the four corner code, without the fifth digit
+     * @return the corner index 0-3, {@link #ANY_CORNER} for 0000, or {@link #NO_CORNER}
+     */
+    public static int brightestCornerOf(int fourCornerCode) {
+        if (fourCornerCode == UnihanData.NO_VALUE) {
+            return NO_CORNER;
+        }
+        if (fourCornerCode == 0) {
+            return ANY_CORNER;
+        }
+
+        int corner = 0;
+        int greatest = -1;
+        int divisor = 1000;
+        for (int i = 0; i < 4; i++) {
+            int digit = (fourCornerCode / divisor) % 10;
+            if (digit > greatest) {
+                greatest = digit;
+                corner = i;
+            }
+            divisor /= 10;
+        }
+        return corner;
+    }
+
+    /**
+     * Whether a code point can be drawn as a cell. Only BMP characters
+     * without an {@code F} in their hex code are used, which skips the
+     * compatibility ideographs and private use blocks.
+     * @param codePoint the code point to check
+     * @return true if the code point can be used in the output art
+     */
+    public static boolean isRenderable(int codePoint) {
+        if (codePoint > 0xFFFF) {
+            return false;
+        }
+        for (int shift = 0; shift < 16; shift += 4) {
+            if (((codePoint >> shift) & 0xF) == 0xF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the highest stroke count that has a bucket
+     */
+    public int getMaxStrokeCount() {
+        return maxStrokeCount;
+    }
+
+    /**
+     * @return the number of glyphs in the index
+     */
+    public int size() {
+        return codePoints.limit();
+    }
+
+    /**
+     * Returns the number of glyphs with a given stroke count.
+     * @param strokeCount the stroke count, clamped to the indexed range
+     * @return the size of the bucket
+     */
+    public int bucketSize(int strokeCount) {
+        int s = clamp(strokeCount);
+        return offsets[s + 1] - offsets[s];
+    }
+
+    /**
+     * Returns a glyph from a stroke count bucket.
+     * @param strokeCount the stroke count, clamped to the indexed range
+     * @param i the position within the bucket
+     * @return the code point of the glyph
+     */
+    public int codePoint(int strokeCount, int i) {
+        return codePoints.get(offsets[clamp(strokeCount)] + i);
+    }
+
+    /**
+     * Returns the four corner code of a glyph from a stroke count bucket.
+     * @param strokeCount the stroke count, clamped to the indexed range
+     * @param i the position within the bucket
+     * @return the four corner code, or {@link UnihanData#NO_VALUE}
+     */
+    public int fourCornerCode(int strokeCount, int i) {
+        return fourCornerCodes.get(offsets[clamp(strokeCount)] + i);
+    }
+
+    /**
+     * Returns the brightest corner of a glyph from a stroke count bucket.
+     * @param strokeCount the stroke count, clamped to the indexed range
+     * @param i the position within the bucket
+     * @return the corner index 0-3, {@link #ANY_CORNER}, or {@link #NO_CORNER}
+     * @see #brightestCornerOf(int)
+     */
+    public int brightestCorner(int strokeCount, int i) {
+        return brightestCorners.get(offsets[clamp(strokeCount)] + i);
+    }
+
+    /**
+     * Returns a random glyph with a given stroke count. Stroke counts of 1
+     * or less, and empty buckets, give a blank cell.
+     * @param strokeCount the stroke count of the character (within the pixel)
+     * @param random the random number generator to use
+     * @return the code point of the glyph
+     */
+    public int randomCodePoint(int strokeCount, RandomGenerator random) {
+        if (strokeCount <= 1) {
+            return BLANK;
+        }
+        int size = bucketSize(strokeCount);
+        if (size == 0) {
+            return BLANK;
+        }
+        return codePoint(strokeCount, random.nextInt(size));
+    }
+
+    /**
+     * Returns the number of glyphs with a given stroke count whose brightest
+     * corner is a given corner, or whose four corner code is 0000.
+     * @param strokeCount the stroke count, clamped to the indexed range
+     * @param corner the corner index 0-3, top left, top right, bottom left, bottom right
+     * @return the number of candidates
+     */
+    public int cornerBucketSize(int strokeCount, int corner) {
+        int cell = clamp(strokeCount) * 4 + corner;
+        return cornerOffsets[cell + 1] - cornerOffsets[cell];
+    }
+
+    /**
+     * Returns a candidate glyph for a stroke count and brightest corner.
+     * @param strokeCount the stroke count, clamped to the indexed range
+     * @param corner the corner index 0-3
+     * @param i the position within the candidates
+     * @return the code point of the glyph
+     * @see #cornerBucketSize(int, int)
+     */
+    public int cornerCodePoint(int strokeCount, int corner, int i) {
+        return cornerCodePoints.get(cornerOffsets[clamp(strokeCount) * 4 + corner] + i);
+    }
+
+    private int clamp(int strokeCount) {
+        return Math.max(0, Math.min(strokeCount, maxStrokeCount));
+    }
+}
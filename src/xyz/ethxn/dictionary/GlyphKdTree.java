@@ -0,0 +1,277 @@
+package xyz.ethxn.dictionary;
+
+import xyz.ethxn.util.Util;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * A k-d tree over glyph feature vectors, for nearest-neighbour glyph matching.
+ * Each glyph's vector is its stroke count followed by the visual density of
+ * its four corners (see {@link Util#getComplexity(int)}), read from the four
+ * corner code. Glyphs with identical vectors share one tree node, and a query
+ * picks randomly among them so flat areas don't repeat one character.
+ * The tree is immutable; use one {@link Query} per thread.
+ */
+public final class GlyphKdTree {
+
+    /** Number of dimensions: stroke count, then top left, top right, bottom left, bottom right density. */
+    public static final int DIMENSIONS = 5;
+
+    /** How much a stroke of difference counts against a corner density step of difference. */
+    public static final float STROKE_WEIGHT = 2f;
+
+    private final float[] points;     // DIMENSIONS floats per node, in tree order
+    private final byte[] splitAxes;   // split axis of each node
+    private final int[] groupOffsets; // groupOffsets[node] is the first glyph of that node's group
+    private final int[] codePoints;   // glyphs, grouped by node
+
+    private GlyphKdTree(float[] points, byte[] splitAxes, int[] groupOffsets, int[] codePoints) {
+        this.points = points;
+        this.splitAxes = splitAxes;
+        this.groupOffsets = groupOffsets;
+        this.codePoints = codePoints;
+    }
+
+    /**
+     * Builds a tree from every glyph of an index that has a four corner code.
+     * @param glyphIndex the glyph index
+     * @return the tree
+     */
+    public static GlyphKdTree fromGlyphIndex(GlyphIndex glyphIndex) {
+        int count = 0;
+        for (int i = 0; i < glyphIndex.size(); i++) {
+            if (glyphIndex.fourCornerCodes.get(i) != UnihanData.NO_VALUE) {
+                count++;
+            }
+        }
+
+        // feature vectors, packed as one long per glyph so duplicates sort together
+        long[] keys = new long[count];
+        int[] glyphs = new int[count];
+        int k = 0;
+        for (int s = 1; s <= glyphIndex.getMaxStrokeCount(); s++) {
+            for (int i = glyphIndex.offsets[s]; i < glyphIndex.offsets[s + 1]; i++) {
+                int fourCornerCode = glyphIndex.fourCornerCodes.get(i);
+                if (fourCornerCode == UnihanData.NO_VALUE) {
+                    continue;
+                }
+                long key = s;
+                for (int divisor = 1000; divisor > 0; divisor /= 10) {
+                    key = (key << 4) | Util.getComplexity((fourCornerCode / divisor) % 10);
+                }
+                keys[k] = (key << 32) | k;
+                glyphs[k] = glyphIndex.codePoints.get(i);
+                k++;
+            }
+        }
+        Arrays.sort(keys, 0, k);
+
+        // collapse duplicates into groups
+        int[] groupOffsets = new int[k + 1];
+        int[] codePoints = new int[k];
+        long[] uniqueKeys = new long[k];
+        int groups = 0;
+        for (int i = 0; i < k; i++) {
+            long key = keys[i] >>> 32;
+            if (groups == 0 || uniqueKeys[groups - 1] != key) {
+                uniqueKeys[groups] = key;
+                groupOffsets[groups] = i;
+                groups++;
+            }
+            codePoints[i] = glyphs[(int) keys[i]];
+        }
+        groupOffsets[groups] = k;
+
+        float[] vectors = new float[groups * DIMENSIONS];
+        for (int g = 0; g < groups; g++) {
+            long key = uniqueKeys[g];
+            for (int d = DIMENSIONS - 1; d >= 1; d--) {
+                vectors[g * DIMENSIONS + d] = key & 0xF;
+                key >>>= 4;
+            }
+            vectors[g * DIMENSIONS] = key * STROKE_WEIGHT;
+        }
+
+        // arrange the groups in tree order, each node is the median of its range
+        int[] order = new int[groups];
+        for (int g = 0; g < groups; g++) {
+            order[g] = g;
+        }
+        byte[] splitAxes = new byte[groups];
+        arrange(vectors, order, splitAxes, 0, groups);
+
+        float[] points = new float[groups * DIMENSIONS];
+        int[] treeGroupOffsets = new int[groups + 1];
+        int[] treeCodePoints = new int[k];
+        int next = 0;
+        for (int node = 0; node < groups; node++) {
+            int g = order[node];
+            System.arraycopy(vectors, g * DIMENSIONS, points, node * DIMENSIONS, DIMENSIONS);
+            treeGroupOffsets[node] = next;
+            int size = groupOffsets[g + 1] - groupOffsets[g];
+            System.arraycopy(codePoints, groupOffsets[g], treeCodePoints, next, size);
+            next += size;
+        }
+        treeGroupOffsets[groups] = next;
+
+        return new GlyphKdTree(points, splitAxes, treeGroupOffsets, treeCodePoints);
+    }
+
+    /**
+     * Recursively orders {@code order[from, to)} so the middle element is the median
+     * along the axis of greatest spread, with smaller values before it.
+     */
+    private static void arrange(float[] vectors, int[] order, byte[] splitAxes, int from, int to) {
+        if (to - from <= 1) {
+            return;
+        }
+
+        int axis = 0;
+        float widest = -1;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            float min = Float.MAX_VALUE;
+            float max = -Float.MAX_VALUE;
+            for (int i = from; i < to; i++) {
+                float v = vectors[order[i] * DIMENSIONS + d];
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            if (max - min > widest) {
+                widest = max - min;
+                axis = d;
+            }
+        }
+
+        int mid = (from + to) >>> 1;
+        select(vectors, order, from, to - 1, mid, axis);
+        splitAxes[mid] = (byte) axis;
+        arrange(vectors, order, splitAxes, from, mid);
+        arrange(vectors, order, splitAxes, mid + 1, to);
+    }
+
+    /**
+     * Quickselect, puts the k-th smallest element along an axis at index k.
+     */
+    private static void select(float[] vectors, int[] order, int left, int right, int k, int axis) {
+        while (left < right) {
+            float pivot = vectors[order[(left + right) >>> 1] * DIMENSIONS + axis];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (vectors[order[i] * DIMENSIONS + axis] < pivot) {
+                    i++;
+                }
+                while (vectors[order[j] * DIMENSIONS + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i] = order[j];
+                    order[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the number of distinct feature vectors in the tree
+     */
+    public int size() {
+        return splitAxes.length;
+    }
+
+    /**
+     * Creates a query for this tree. Queries reuse their own scratch state,
+     * so keep one per thread rather than one per lookup.
+     * @param random the generator used to pick among glyphs with the same vector
+     * @return the query
+     */
+    public Query newQuery(RandomGenerator random) {
+        return new Query(random);
+    }
+
+    /**
+     * A reusable nearest-neighbour lookup. Not thread-safe.
+     */
+    public final class Query {
+
+        private final float[] target = new float[DIMENSIONS];
+        private final RandomGenerator random;
+        private int bestNode;
+        private float bestDistance;
+
+        private Query(RandomGenerator random) {
+            this.random = random;
+        }
+
+        /**
+         * Finds a glyph closest to a stroke count and four corner densities.
+         * @param strokeCount the wanted stroke count
+         * @param topLeft the wanted top left density, 1-10
+         * @param topRight the wanted top right density, 1-10
+         * @param bottomLeft the wanted bottom left density, 1-10
+         * @param bottomRight the wanted bottom right density, 1-10
+         * @return the code point of the glyph, or {@link GlyphIndex#BLANK} if the tree is empty
+         */
+        public int nearest(float strokeCount, float topLeft, float topRight, float bottomLeft, float bottomRight) {
+            if (splitAxes.length == 0) {
+                return GlyphIndex.BLANK;
+            }
+            target[0] = strokeCount * STROKE_WEIGHT;
+            target[1] = topLeft;
+            target[2] = topRight;
+            target[3] = bottomLeft;
+            target[4] = bottomRight;
+            bestNode = -1;
+            bestDistance = Float.MAX_VALUE;
+
+            search(0, splitAxes.length);
+
+            int from = groupOffsets[bestNode];
+            int size = groupOffsets[bestNode + 1] - from;
+            return codePoints[from + (size == 1 ? 0 : random.nextInt(size))];
+        }
+
+        private void search(int from, int to) {
+            if (from >= to) {
+                return;
+            }
+            int node = (from + to) >>> 1;
+
+            float distance = 0;
+            int base = node * DIMENSIONS;
+            for (int d = 0; d < DIMENSIONS; d++) {
+                float diff = points[base + d] - target[d];
+                distance += diff * diff;
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                bestNode = node;
+            }
+
+            int axis = splitAxes[node];
+            float planeDistance = target[axis] - points[base + axis];
+            if (planeDistance < 0) {
+                search(from, node);
+                if (planeDistance * planeDistance < bestDistance) {
+                    search(node + 1, to);
+                }
+            } else {
+                search(node + 1, to);
+                if (planeDistance * planeDistance < bestDistance) {
+                    search(from, node);
+                }
+            }
+        }
+    }
+}
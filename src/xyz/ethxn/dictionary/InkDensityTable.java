@@ -0,0 +1,279 @@
+package xyz.ethxn.dictionary;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+import java.util.zip.CRC32;
+
+/**
+ * Maps luminance straight to glyphs by measured ink coverage. Every glyph of
+ * an index is drawn once with a real font, the share of its cell covered in
+ * ink is measured, and the glyphs are sorted into 256 tone levels. At render
+ * time a pixel's candidates are {@code levels[luminance]}, no stroke count
+ * buckets involved.
+ *
+ * <p>Calibrate once and save the table next to the dictionary snapshot, e.g.
+ * {@code java xyz.ethxn.dictionary.InkDensityTable hanzi.ink "Noto Sans CJK SC" 32 hanzi.snapshot}.
+ * The layout, all little endian, is a magic ("HNZD"), a version, the font name,
+ * the cell size, the glyph count, the code points sorted by coverage, one level
+ * byte per glyph, and a CRC32 of everything before it.
+ */
+public final class InkDensityTable {
+
+    private static final int MAGIC = 0x445A4E48; // "HNZD"
+    private static final int VERSION = 1;
+    private static final int LEVELS = 256;
+
+    private final String fontName;
+    private final int cellSize;
+    private final int[] codePoints;  // glyphs, sorted by coverage
+    private final byte[] levels;     // tone level of each glyph, 0 = no ink, 255 = the densest glyph
+    private final int[] levelStarts; // levelStarts[l] is the first glyph for luminance l
+    private final int[] levelEnds;   // levelEnds[l] is one past the last glyph for luminance l
+
+    private InkDensityTable(String fontName, int cellSize, int[] codePoints, byte[] levels) {
+        this.fontName = fontName;
+        this.cellSize = cellSize;
+        this.codePoints = codePoints;
+        this.levels = levels;
+        this.levelStarts = new int[LEVELS];
+        this.levelEnds = new int[LEVELS];
+
+        // exact levels first, the glyphs are sorted so each level is one run
+        Arrays.fill(levelStarts, -1);
+        for (int i = 0; i < codePoints.length; i++) {
+            int level = levels[i] & 0xFF;
+            if (levelStarts[level] < 0) {
+                levelStarts[level] = i;
+            }
+            levelEnds[level] = i + 1;
+        }
+
+        // levels without a glyph borrow the nearest level that has one
+        for (int level = 0; level < LEVELS; level++) {
+            if (levelStarts[level] >= 0) {
+                continue;
+            }
+            for (int distance = 1; distance < LEVELS; distance++) {
+                int below = level - distance;
+                int above = level + distance;
+                int nearest = below >= 0 && exact(levels, below) ? below
+                        : above < LEVELS && exact(levels, above) ? above : -1;
+                if (nearest >= 0) {
+                    levelStarts[level] = levelStarts[nearest];
+                    levelEnds[level] = levelEnds[nearest];
+                    break;
+                }
+            }
+        }
+    }
+
+    private boolean exact(byte[] levels, int level) {
+        int start = levelStarts[level];
+        return start >= 0 && (levels[start] & 0xFF) == level;
+    }
+
+    /**
+     * Calibrates a table by drawing every glyph of an index. Glyphs the font
+     * can't display are left out; the blank cell is always included as the
+     * lightest tone.
+     * @param glyphIndex the glyphs to measure
+     * @param font the font to draw with, its size is set to fit the cell
+     * @param cellSize the size of one character cell in pixels
+     * @return the table
+     */
+    public static InkDensityTable calibrate(GlyphIndex glyphIndex, Font font, int cellSize) {
+        BufferedImage cell = new BufferedImage(cellSize, cellSize, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] pixels = ((DataBufferByte) cell.getRaster().getDataBuffer()).getData();
+        Graphics2D g = cell.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(font.deriveFont((float) cellSize));
+        FontMetrics metrics = g.getFontMetrics();
+        int baseline = (cellSize - metrics.getHeight()) / 2 + metrics.getAscent();
+
+        int[] measured = new int[glyphIndex.size() + 1];
+        double[] coverage = new double[glyphIndex.size() + 1];
+        int count = 0;
+        measured[count] = GlyphIndex.BLANK;
+        coverage[count++] = 0;
+
+        for (int i = 0; i < glyphIndex.size(); i++) {
+            int codePoint = glyphIndex.codePoints.get(i);
+            if (!font.canDisplay(codePoint)) {
+                continue;
+            }
+            Arrays.fill(pixels, (byte) 0);
+            String glyph = new String(Character.toChars(codePoint));
+            g.drawString(glyph, (cellSize - metrics.stringWidth(glyph)) / 2, baseline);
+
+            long ink = 0;
+            for (byte pixel : pixels) {
+                ink += pixel & 0xFF;
+            }
+            measured[count] = codePoint;
+            coverage[count++] = ink / (255.0 * pixels.length);
+        }
+        g.dispose();
+
+        // sort by coverage, then stretch the measured range over all 256 levels
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(coverage[a], coverage[b]));
+        double densest = coverage[order[count - 1]];
+
+        int[] codePoints = new int[count];
+        byte[] levels = new byte[count];
+        for (int i = 0; i < count; i++) {
+            codePoints[i] = measured[order[i]];
+            levels[i] = (byte) (densest == 0 ? 0 : Math.round(coverage[order[i]] / densest * (LEVELS - 1)));
+        }
+        return new InkDensityTable(font.getName(), cellSize, codePoints, levels);
+    }
+
+    /**
+     * Calibrates a table for a dictionary and saves it.
+     * @param args the output path, the font name, the cell size, then a snapshot path or the Unihan txt paths
+     * @throws IOException if a file can't be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("usage: InkDensityTable <output> <font name> <cell size> <snapshot | unihan txt...>");
+            System.exit(1);
+        }
+        System.setProperty("java.awt.headless", "true");
+
+        GlyphIndex glyphIndex;
+        if (args.length == 4 && !args[3].endsWith(".txt")) {
+            glyphIndex = DictionarySnapshot.load(Path.of(args[3]));
+        } else {
+            glyphIndex = GlyphIndex.fromUnihanData(UnihanLoader.load(Arrays.copyOfRange(args, 3, args.length)));
+        }
+
+        InkDensityTable table = calibrate(glyphIndex, new Font(args[1], Font.PLAIN, 1), Integer.parseInt(args[2]));
+        table.write(Path.of(args[0]));
+        System.out.println("measured " + table.size() + " glyphs with " + table.getFontName());
+    }
+
+    /**
+     * Writes the table to a file.
+     * @param path the path of the file
+     * @throws IOException if the file can't be written
+     */
+    public void write(Path path) throws IOException {
+        byte[] name = fontName.getBytes(StandardCharsets.UTF_8);
+        int size = 4 * 3 + name.length + 4 * 2 + codePoints.length * 5 + 4;
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(name.length);
+        buffer.put(name);
+        buffer.putInt(cellSize);
+        buffer.putInt(codePoints.length);
+        for (int codePoint : codePoints) {
+            buffer.putInt(codePoint);
+        }
+        buffer.put(levels);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Loads a table by memory-mapping a file written by {@link #write(Path)}.
+     * @param path the path of the file
+     * @return the table
+     * @throws IOException if the file can't be read, or isn't a valid table
+     */
+    public static InkDensityTable load(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (buffer.remaining() < 4 * 6 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("not an ink density table");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("unsupported ink density table version " + buffer.getInt(4));
+        }
+        int checksumPosition = buffer.limit() - 4;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(0).limit(checksumPosition));
+        if ((int) crc.getValue() != buffer.getInt(checksumPosition)) {
+            throw new IOException("ink density table checksum mismatch");
+        }
+
+        buffer.position(8);
+        byte[] name = new byte[buffer.getInt()];
+        buffer.get(name);
+        int cellSize = buffer.getInt();
+        int count = buffer.getInt();
+        int[] codePoints = new int[count];
+        byte[] levels = new byte[count];
+        buffer.asIntBuffer().get(codePoints);
+        buffer.position(buffer.position() + count * 4);
+        buffer.get(levels);
+
+        return new InkDensityTable(new String(name, StandardCharsets.UTF_8), cellSize, codePoints, levels);
+    }
+
+    /**
+     * Returns a random glyph whose ink coverage best matches a luminance.
+     * @param luminance the luminance in the range 0-255, brighter means more ink
+     * @param random the random number generator to use
+     * @return the code point of the glyph
+     */
+    public int randomCodePoint(int luminance, RandomGenerator random) {
+        int start = levelStarts[luminance];
+        int size = levelEnds[luminance] - start;
+        return codePoints[size == 1 ? start : start + random.nextInt(size)];
+    }
+
+    /**
+     * Returns the tone level actually drawn for a luminance, which can differ
+     * when no glyph has exactly that coverage.
+     * @param luminance the luminance in the range 0-255
+     * @return the tone level of the glyphs picked for it, 0-255
+     */
+    public int level(int luminance) {
+        return levels[levelStarts[luminance]] & 0xFF;
+    }
+
+    /**
+     * @return the number of measured glyphs, including the blank cell
+     */
+    public int size() {
+        return codePoints.length;
+    }
+
+    public String getFontName() {
+        return fontName;
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+}
@@ -0,0 +1,49 @@
+package xyz.ethxn.dictionary;
+
+import java.util.Arrays;
+
+/**
+ * Typed Unihan properties, indexed directly by code point.
+ * Filled by {@link UnihanLoader} and read-only afterwards.
+ */
+public final class UnihanData {
+
+    /** Returned when a character has no value for a property. */
+    public static final int NO_VALUE = -1;
+
+    /** One past the highest code point in the Unihan database. */
+    static final int CODE_POINT_LIMIT = 0x40000;
+
+    final byte[] totalStrokes = new byte[CODE_POINT_LIMIT];    // kTotalStrokes, 0 = no value
+    final short[] fourCornerCodes = new short[CODE_POINT_LIMIT]; // kFourCornerCode without the fifth digit, -1 = no value
+
+    UnihanData() {
+        Arrays.fill(fourCornerCodes, (short) NO_VALUE);
+    }
+
+    /**
+     * Returns the primary kTotalStrokes value of a character.
+     * @param codePoint the code point of the character
+     * @return the stroke count, or {@link #NO_VALUE}
+     */
+    public int getTotalStrokes(int codePoint) {
+        if (codePoint < 0 || codePoint >= CODE_POINT_LIMIT) {
+            return NO_VALUE;
+        }
+        int strokes = totalStrokes[codePoint] & 0xFF;
+        return strokes == 0 ? NO_VALUE : strokes;
+    }
+
+    /**
+     * Returns the first four digits of the primary kFourCornerCode value of a character,
+     * e.g. {@code 2727} for {@code 2727.7}.
+     * @param codePoint the code point of the character
+     * @return the four corner code, or {@link #NO_VALUE}
+     */
+    public int getFourCornerCode(int codePoint) {
+        if (codePoint < 0 || codePoint >= CODE_POINT_LIMIT) {
+            return NO_VALUE;
+        }
+        return fourCornerCodes[codePoint];
+    }
+}
@@ -0,0 +1,149 @@
+package xyz.ethxn.dictionary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Loads Unihan txt files in a single pass. Each file is memory-mapped
+ * and scanned byte by byte, and every property the renderer needs is
+ * parsed straight into the primitive tables of a {@link UnihanData},
+ * without creating a String per line or per field.
+ */
+public final class UnihanLoader {
+
+    private static final byte[] TOTAL_STROKES = "kTotalStrokes".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FOUR_CORNER_CODE = "kFourCornerCode".getBytes(StandardCharsets.US_ASCII);
+
+    private UnihanLoader() {}
+
+    /**
+     * Loads every needed property from a set of Unihan txt files.
+     * Properties may be spread across the files in any way.
+     * @param txtPaths the paths to the txt files, e.g. the dictionary and IRG sources files
+     * @return the loaded properties
+     * @throws IOException if a txt file can't be read
+     */
+    public static UnihanData load(String... txtPaths) throws IOException {
+        UnihanData data = new UnihanData();
+        for (String txtPath : txtPaths) {
+            try (FileChannel channel = FileChannel.open(Path.of(txtPath), StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                parse(buffer, data);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Parses Unihan lines of the form {@code U+XXXX<tab>kProperty<tab>value} into the tables.
+     * Comments, blank lines and properties that aren't needed are skipped.
+     */
+    static void parse(ByteBuffer buffer, UnihanData data) {
+        int limit = buffer.limit();
+        int pos = buffer.position();
+
+        while (pos < limit) {
+            int lineEnd = pos;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+
+            if (lineEnd - pos > 2 && buffer.get(pos) == 'U' && buffer.get(pos + 1) == '+') {
+                parseLine(buffer, pos + 2, lineEnd, data);
+            }
+            pos = lineEnd + 1;
+        }
+    }
+
+    private static void parseLine(ByteBuffer buffer, int pos, int lineEnd, UnihanData data) {
+        // code point
+        int codePoint = 0;
+        int b;
+        while (pos < lineEnd && (b = hexValue(buffer.get(pos))) >= 0) {
+            codePoint = (codePoint << 4) | b;
+            pos++;
+        }
+        if (pos >= lineEnd || buffer.get(pos) != '\t' || codePoint >= UnihanData.CODE_POINT_LIMIT) {
+            return;
+        }
+        pos++;
+
+        // property name
+        int nameStart = pos;
+        while (pos < lineEnd && buffer.get(pos) != '\t') {
+            pos++;
+        }
+        int nameLength = pos - nameStart;
+        pos++;
+        if (pos >= lineEnd) {
+            return;
+        }
+
+        // value, only the first of a space separated list is used
+        if (matches(buffer, nameStart, nameLength, TOTAL_STROKES)) {
+            int strokes = parseInt(buffer, pos, lineEnd);
+            if (strokes > 0 && strokes <= 0xFF) {
+                data.totalStrokes[codePoint] = (byte) strokes;
+            }
+        } else if (matches(buffer, nameStart, nameLength, FOUR_CORNER_CODE)) {
+            // the first four digits, the fifth after the '.' is a supplementary corner
+            int code = 0;
+            int digits = 0;
+            while (digits < 4 && pos < lineEnd) {
+                int digit = buffer.get(pos++) - '0';
+                if (digit < 0 || digit > 9) {
+                    return;
+                }
+                code = code * 10 + digit;
+                digits++;
+            }
+            if (digits == 4) {
+                data.fourCornerCodes[codePoint] = (short) code;
+            }
+        }
+    }
+
+    private static boolean matches(ByteBuffer buffer, int start, int length, byte[] name) {
+        if (length != name.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(start + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int parseInt(ByteBuffer buffer, int pos, int end) {
+        int value = 0;
+        int digits = 0;
+        while (pos < end) {
+            int digit = buffer.get(pos++) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = value * 10 + digit;
+            digits++;
+        }
+        return digits == 0 ? UnihanData.NO_VALUE : value;
+    }
+
+    private static int hexValue(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        return -1;
+    }
+}
@@ -1,6 +1,7 @@
 package xyz.ethxn.examples.example;
 
 import xyz.ethxn.HanziArt;
+import xyz.ethxn.HanziDictionary;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
@@ -15,7 +16,10 @@ public class HanziArtTester {
         String unihanIRGSourcesPath = ".\\src\\Unihan_IRGSources.txt";
         int outputWidth = 150;
 
-        HanziArt ha = new HanziArt(image, outputWidth, unihanDictionaryPath, unihanIRGSourcesPath);
+        // load the dictionary once and share it between both renders
+        HanziDictionary dictionary = HanziDictionary.load(unihanDictionaryPath, unihanIRGSourcesPath);
+
+        HanziArt ha = new HanziArt(image, outputWidth, dictionary);
         ha.setBuildType(1); // 0 = fast, 1 = complex
         ha.setMaxStrokeCount(20);
         ha.build(true);
@@ -24,8 +28,7 @@ public class HanziArtTester {
         HanziArt ha2 = new HanziArt();
         ha2.setImage(image);
         ha2.setOutputWidth(outputWidth);
-        ha2.setFourCornerCodeMap(unihanDictionaryPath);
-        ha2.setStrokeCountMap(unihanIRGSourcesPath);
+        ha2.setDictionary(dictionary);
 
         ha2.setMaxStrokeCount(20); // lower *usually* equals more clarity
         ha2.setBuildType(0); // 0 = fast, 1 = complex
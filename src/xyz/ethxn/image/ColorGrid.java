@@ -0,0 +1,94 @@
+package xyz.ethxn.image;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * The average color of each cell of an image, for colored output. Resampled
+ * the same way as a {@link LuminanceGrid}, averaging every source pixel that
+ * falls inside a cell.
+ */
+public final class ColorGrid {
+
+    private final int width;
+    private final int height;
+    private final int[] colors; // row major, packed 0xRRGGBB
+
+    private ColorGrid(int width, int height, int[] colors) {
+        this.width = width;
+        this.height = height;
+        this.colors = colors;
+    }
+
+    /**
+     * Averages the colors of an image into cells.
+     * @param image the image to sample
+     * @param columns the number of cells across
+     * @param rows the number of cells down
+     * @return the color grid
+     */
+    public static ColorGrid fromImage(BufferedImage image, int columns, int rows) {
+        int sourceWidth = image.getWidth();
+        int sourceHeight = image.getHeight();
+        int[] colors = new int[columns * rows];
+
+        // source column range of each cell
+        int[] x0 = new int[columns];
+        int[] x1 = new int[columns];
+        for (int x = 0; x < columns; x++) {
+            x0[x] = (int) ((long) x * sourceWidth / columns);
+            x1[x] = Math.max(x0[x] + 1, (int) ((long) (x + 1) * sourceWidth / columns));
+        }
+
+        int[] sourceRow = new int[sourceWidth];
+        long[] sums = new long[columns * 3];
+        for (int y = 0; y < rows; y++) {
+            int y0 = (int) ((long) y * sourceHeight / rows);
+            int y1 = Math.max(y0 + 1, (int) ((long) (y + 1) * sourceHeight / rows));
+
+            Arrays.fill(sums, 0);
+            for (int sy = y0; sy < y1; sy++) {
+                image.getRGB(0, sy, sourceWidth, 1, sourceRow, 0, sourceWidth);
+                for (int x = 0; x < columns; x++) {
+                    long r = 0, g = 0, b = 0;
+                    for (int sx = x0[x]; sx < x1[x]; sx++) {
+                        int rgb = sourceRow[sx];
+                        r += (rgb >> 16) & 0xFF;
+                        g += (rgb >> 8) & 0xFF;
+                        b += rgb & 0xFF;
+                    }
+                    sums[x * 3] += r;
+                    sums[x * 3 + 1] += g;
+                    sums[x * 3 + 2] += b;
+                }
+            }
+
+            int cellRows = y1 - y0;
+            for (int x = 0; x < columns; x++) {
+                long area = (long) cellRows * (x1[x] - x0[x]);
+                colors[y * columns + x] = (int) (sums[x * 3] / area) << 16
+                        | (int) (sums[x * 3 + 1] / area) << 8
+                        | (int) (sums[x * 3 + 2] / area);
+            }
+        }
+        return new ColorGrid(columns, rows, colors);
+    }
+
+    /**
+     * Returns the color of a cell.
+     * @param x the column
+     * @param y the row
+     * @return the color, packed as 0xRRGGBB
+     */
+    public int get(int x, int y) {
+        return colors[y * width + x];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
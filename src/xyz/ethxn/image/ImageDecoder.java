@@ -0,0 +1,200 @@
+package xyz.ethxn.image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Decodes only as much of an image as a render needs. The decoder is asked
+ * to skip source pixels (subsampling) and to read only a region of the
+ * source, so a huge scan never has to be decoded at full resolution when
+ * the output is a few hundred characters wide.
+ */
+public final class ImageDecoder {
+
+    /**
+     * How many source pixels to keep per grid pixel, where the source has them,
+     * so area averaging still has something to average.
+     */
+    private static final int OVERSAMPLE = 2;
+
+    private ImageDecoder() {}
+
+    /**
+     * Decodes an image file.
+     * @param path the image file
+     * @param minWidth the width the decoded image must be at least, e.g. the width of the luminance grid
+     * @param region the region of the source to decode, or {@code null} for all of it
+     * @return the decoded image
+     * @throws IOException if the file can't be read or has no supported format
+     */
+    public static BufferedImage decode(Path path, int minWidth, Rectangle region) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return decode(in, minWidth, region);
+        }
+    }
+
+    /**
+     * Decodes an image stream.
+     * @param in the image stream, left open
+     * @param minWidth the width the decoded image must be at least, e.g. the width of the luminance grid
+     * @param region the region of the source to decode, or {@code null} for all of it
+     * @return the decoded image
+     * @throws IOException if the stream can't be read or has no supported format
+     */
+    public static BufferedImage decode(InputStream in, int minWidth, Rectangle region) throws IOException {
+        return decode(in, region, minWidth, 0);
+    }
+
+    /**
+     * Decodes a region of an image file, keeping every {@code subsampling}-th
+     * pixel of every {@code subsampling}-th row, counted from the region's corner.
+     * Regions whose corner is a multiple of the step line up with a decode of
+     * the whole image at that step.
+     * @param path the image file
+     * @param region the region of the source to decode, or {@code null} for all of it
+     * @param subsampling the step, 1 to decode every pixel
+     * @return the decoded image
+     * @throws IOException if the file can't be read or has no supported format
+     */
+    public static BufferedImage decodeSubsampled(Path path, Rectangle region, int subsampling) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return decodeSubsampled(in, region, subsampling);
+        }
+    }
+
+    /**
+     * Decodes a region of an image stream, see {@link #decodeSubsampled(Path, Rectangle, int)}.
+     * @param in the image stream, left open
+     * @param region the region of the source to decode, or {@code null} for all of it
+     * @param subsampling the step, 1 to decode every pixel
+     * @return the decoded image
+     * @throws IOException if the stream can't be read or has no supported format
+     */
+    public static BufferedImage decodeSubsampled(InputStream in, Rectangle region, int subsampling) throws IOException {
+        if (subsampling < 1) {
+            throw new IllegalArgumentException("'" + subsampling + "'" + " is an invalid subsampling step.");
+        }
+        return decode(in, region, 0, subsampling);
+    }
+
+    /**
+     * Takes a region of an image that's already in memory the same way
+     * {@link #decodeSubsampled(Path, Rectangle, int)} decodes one from a file.
+     * @param image the image
+     * @param region the region to take, or {@code null} for all of it
+     * @param subsampling the step, 1 to take every pixel
+     * @return the region, sharing the image's pixels when the step is 1
+     * @throws IOException if the region is outside the image
+     */
+    public static BufferedImage subsample(BufferedImage image, Rectangle region, int subsampling) throws IOException {
+        Rectangle bounds = new Rectangle(image.getWidth(), image.getHeight());
+        Rectangle source = region == null ? bounds : region.intersection(bounds);
+        if (source.isEmpty()) {
+            throw new IOException("region " + region + " is outside the image " + bounds);
+        }
+        if (subsampling == 1) {
+            return image.getSubimage(source.x, source.y, source.width, source.height);
+        }
+
+        int width = (source.width + subsampling - 1) / subsampling;
+        int height = (source.height + subsampling - 1) / subsampling;
+        BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] row = new int[source.width];
+        int[] outputRow = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(source.x, source.y + y * subsampling, source.width, 1, row, 0, source.width);
+            for (int x = 0; x < width; x++) {
+                outputRow[x] = row[x * subsampling];
+            }
+            output.setRGB(0, y, width, 1, outputRow, 0, width);
+        }
+        return output;
+    }
+
+    /**
+     * Reads the size of an image file from its header, without decoding it.
+     * @param path the image file
+     * @return the width and height
+     * @throws IOException if the file can't be read or has no supported format
+     */
+    public static Dimension size(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return size(in);
+        }
+    }
+
+    /**
+     * Reads the size of an image stream from its header, without decoding it.
+     * @param in the image stream, left open
+     * @return the width and height
+     * @throws IOException if the stream can't be read or has no supported format
+     */
+    public static Dimension size(InputStream in) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            ImageReader reader = reader(input);
+            try {
+                reader.setInput(input, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Decodes a region, with a fixed subsampling step, or one picked for a minimum width when the step is 0.
+     */
+    private static BufferedImage decode(InputStream in, Rectangle region, int minWidth, int subsampling) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            ImageReader reader = reader(input);
+            try {
+                reader.setInput(input, true, true);
+                Rectangle bounds = new Rectangle(0, 0, reader.getWidth(0), reader.getHeight(0));
+                Rectangle source = region == null ? bounds : region.intersection(bounds);
+                if (source.isEmpty()) {
+                    throw new IOException("region " + region + " is outside the image " + bounds);
+                }
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(source);
+                int step = subsampling > 0 ? subsampling : subsampling(source.width, minWidth);
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static ImageReader reader(ImageInputStream input) throws IOException {
+        if (input == null) {
+            throw new IOException("can't read image stream");
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            throw new IOException("unsupported image format");
+        }
+        return readers.next();
+    }
+
+    /**
+     * Returns the largest whole subsampling step that keeps at least
+     * {@code OVERSAMPLE * minWidth} pixels across the source width.
+     * @param sourceWidth the width of the source region
+     * @param minWidth the width the decoded image must be at least
+     * @return the subsampling step, 1 to decode every pixel
+     */
+    public static int subsampling(int sourceWidth, int minWidth) {
+        return Math.max(1, sourceWidth / Math.max(1, minWidth * OVERSAMPLE));
+    }
+}
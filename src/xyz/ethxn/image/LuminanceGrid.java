@@ -0,0 +1,287 @@
+package xyz.ethxn.image;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * A resized, grayscale copy of an image as a plain byte array.
+ * Resampling and grayscale conversion happen together in one pass
+ * over the source pixels, averaging every source pixel that falls
+ * inside an output pixel.
+ */
+public final class LuminanceGrid {
+
+    private final int width;
+    private final int height;
+    private final byte[] pixels; // row major, 0-255
+
+    /**
+     * Wraps a luminance array.
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @param pixels the row major luminance values, 0-255
+     */
+    public LuminanceGrid(int width, int height, byte[] pixels) {
+        if (pixels.length != width * height) {
+            throw new IllegalArgumentException("expected " + (width * height) + " pixels, got " + pixels.length);
+        }
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /**
+     * Resizes an image to a specified width, maintaining aspect ratio, and converts it to grayscale.
+     * @param image the image to resize
+     * @param outputWidth the width to resize to in {@code pixels}
+     * @return the luminance grid
+     */
+    public static LuminanceGrid fromImage(BufferedImage image, int outputWidth) {
+        int outputHeight = (int) (outputWidth * (double) image.getHeight() / image.getWidth());
+        return fromImage(image, outputWidth, outputHeight);
+    }
+
+    /**
+     * Resizes an image to a specified size and converts it to grayscale.
+     * @param image the image to resize
+     * @param outputWidth the width to resize to in {@code pixels}
+     * @param outputHeight the height to resize to in {@code pixels}
+     * @return the luminance grid
+     */
+    public static LuminanceGrid fromImage(BufferedImage image, int outputWidth, int outputHeight) {
+        return fromImage(image, 0, 0, image.getWidth(), image.getHeight(),
+                outputWidth, outputHeight, new Rectangle(outputWidth, outputHeight));
+    }
+
+    /**
+     * Resizes part of a larger source, giving only some cells of the grid the
+     * whole source resizes to. The cells come out exactly as the same cells of
+     * {@code fromImage(source, outputWidth, outputHeight)}, as long as the part
+     * covers {@link #sourceRegion} of them.
+     * @param part the part of the source that's been read
+     * @param partX the column of the source where the part starts
+     * @param partY the row of the source where the part starts
+     * @param sourceWidth the width of the whole source
+     * @param sourceHeight the height of the whole source
+     * @param outputWidth the width of the grid of the whole source
+     * @param outputHeight the height of the grid of the whole source
+     * @param cells the cells of that grid to resize
+     * @return the cells, as a grid of their own
+     */
+    public static LuminanceGrid fromImage(BufferedImage part, int partX, int partY, int sourceWidth, int sourceHeight,
+                                          int outputWidth, int outputHeight, Rectangle cells) {
+        int columns = cells.width;
+        byte[] pixels = new byte[columns * cells.height];
+
+        // part column range of each output column
+        int[] x0 = new int[columns];
+        int[] x1 = new int[columns];
+        for (int x = 0; x < columns; x++) {
+            int cellX = cells.x + x;
+            int from = (int) ((long) cellX * sourceWidth / outputWidth);
+            x0[x] = from - partX;
+            x1[x] = Math.max(from + 1, (int) ((long) (cellX + 1) * sourceWidth / outputWidth)) - partX;
+        }
+
+        int[] sourceRow = new int[part.getWidth()];
+        long[] sums = new long[columns];
+        int loadedRow = -1;
+
+        for (int y = 0; y < cells.height; y++) {
+            int cellY = cells.y + y;
+            int y0 = (int) ((long) cellY * sourceHeight / outputHeight);
+            int y1 = Math.max(y0 + 1, (int) ((long) (cellY + 1) * sourceHeight / outputHeight));
+
+            Arrays.fill(sums, 0);
+            for (int sy = y0 - partY; sy < y1 - partY; sy++) {
+                if (sy != loadedRow) {
+                    readRow(part, sy, sourceRow);
+                    loadedRow = sy;
+                }
+                for (int x = 0; x < columns; x++) {
+                    long sum = 0;
+                    for (int sx = x0[x]; sx < x1[x]; sx++) {
+                        sum += sourceRow[sx];
+                    }
+                    sums[x] += sum;
+                }
+            }
+
+            int rowOffset = y * columns;
+            int rows = y1 - y0;
+            for (int x = 0; x < columns; x++) {
+                pixels[rowOffset + x] = (byte) (sums[x] / ((long) rows * (x1[x] - x0[x])));
+            }
+        }
+        return new LuminanceGrid(columns, cells.height, pixels);
+    }
+
+    /**
+     * Returns the source pixels some cells of a grid are averaged from.
+     * @param sourceWidth the width of the whole source
+     * @param sourceHeight the height of the whole source
+     * @param outputWidth the width of the grid of the whole source
+     * @param outputHeight the height of the grid of the whole source
+     * @param cells the cells of that grid
+     * @return the region of the source
+     */
+    public static Rectangle sourceRegion(int sourceWidth, int sourceHeight, int outputWidth, int outputHeight, Rectangle cells) {
+        int x0 = (int) ((long) cells.x * sourceWidth / outputWidth);
+        int y0 = (int) ((long) cells.y * sourceHeight / outputHeight);
+        int lastX = cells.x + cells.width - 1;
+        int lastY = cells.y + cells.height - 1;
+        int x1 = Math.max((int) ((long) lastX * sourceWidth / outputWidth) + 1, (int) ((long) (lastX + 1) * sourceWidth / outputWidth));
+        int y1 = Math.max((int) ((long) lastY * sourceHeight / outputHeight) + 1, (int) ((long) (lastY + 1) * sourceHeight / outputHeight));
+        return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    /**
+     * Resizes this grid down to a smaller one, averaging every pixel that falls
+     * inside an output pixel. Coarser levels of a pyramid are built from the
+     * level above this way, without going back to the image.
+     * @param outputWidth the width to resize to, at most the width of this grid
+     * @param outputHeight the height to resize to, at most the height of this grid
+     * @return the smaller grid
+     */
+    public LuminanceGrid downsample(int outputWidth, int outputHeight) {
+        byte[] output = new byte[outputWidth * outputHeight];
+
+        int[] x0 = new int[outputWidth];
+        int[] x1 = new int[outputWidth];
+        for (int x = 0; x < outputWidth; x++) {
+            x0[x] = (int) ((long) x * width / outputWidth);
+            x1[x] = Math.max(x0[x] + 1, (int) ((long) (x + 1) * width / outputWidth));
+        }
+
+        for (int y = 0; y < outputHeight; y++) {
+            int y0 = (int) ((long) y * height / outputHeight);
+            int y1 = Math.max(y0 + 1, (int) ((long) (y + 1) * height / outputHeight));
+            for (int x = 0; x < outputWidth; x++) {
+                int sum = 0;
+                for (int sy = y0; sy < y1; sy++) {
+                    for (int sx = x0[x], i = sy * width + sx; sx < x1[x]; sx++, i++) {
+                        sum += pixels[i] & 0xFF;
+                    }
+                }
+                output[y * outputWidth + x] = (byte) (sum / ((y1 - y0) * (x1[x] - x0[x])));
+            }
+        }
+        return new LuminanceGrid(outputWidth, outputHeight, output);
+    }
+
+    /**
+     * Copies a rectangle out of this grid.
+     * @param x the left edge of the rectangle
+     * @param y the top edge of the rectangle
+     * @param regionWidth the width of the rectangle
+     * @param regionHeight the height of the rectangle
+     * @return the rectangle as a grid of its own
+     */
+    public LuminanceGrid crop(int x, int y, int regionWidth, int regionHeight) {
+        if (x < 0 || y < 0 || regionWidth < 0 || regionHeight < 0 || x + regionWidth > width || y + regionHeight > height) {
+            throw new IndexOutOfBoundsException("region " + x + "," + y + " " + regionWidth + "x" + regionHeight
+                    + " is outside the " + width + "x" + height + " grid");
+        }
+        byte[] output = new byte[regionWidth * regionHeight];
+        for (int row = 0; row < regionHeight; row++) {
+            System.arraycopy(pixels, (y + row) * width + x, output, row * regionWidth, regionWidth);
+        }
+        return new LuminanceGrid(regionWidth, regionHeight, output);
+    }
+
+    /**
+     * Reads the luminance of one source row, straight from the data buffer for the common image types.
+     */
+    private static void readRow(BufferedImage image, int y, int[] row) {
+        int width = image.getWidth();
+        switch (image.getType()) {
+            case BufferedImage.TYPE_BYTE_GRAY -> {
+                byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+                int offset = rasterOffset(image, y, 1);
+                for (int x = 0; x < width; x++) {
+                    row[x] = data[offset + x] & 0xFF;
+                }
+            }
+            case BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR -> {
+                byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+                int channels = image.getType() == BufferedImage.TYPE_3BYTE_BGR ? 3 : 4;
+                int first = channels - 3; // skips alpha
+                int offset = rasterOffset(image, y, channels);
+                for (int x = 0, i = offset + first; x < width; x++, i += channels) {
+                    row[x] = luminance(data[i + 2] & 0xFF, data[i + 1] & 0xFF, data[i] & 0xFF);
+                }
+            }
+            case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB -> {
+                int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+                int offset = rasterOffset(image, y, 1);
+                for (int x = 0; x < width; x++) {
+                    int rgb = data[offset + x];
+                    row[x] = luminance((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+                }
+            }
+            default -> {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                for (int x = 0; x < width; x++) {
+                    int rgb = row[x];
+                    row[x] = luminance((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the data buffer index of the first element of a row. Sub-images share their
+     * parent's buffer, so the raster's translation and the buffer's offset are taken into account.
+     */
+    private static int rasterOffset(BufferedImage image, int y, int elementsPerPixel) {
+        WritableRaster raster = image.getRaster();
+        int scanlineStride = raster.getSampleModel() instanceof ComponentSampleModel sampleModel
+                ? sampleModel.getScanlineStride()
+                : ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+        int x = -raster.getSampleModelTranslateX();
+        int rasterY = y - raster.getSampleModelTranslateY();
+        return raster.getDataBuffer().getOffset() + rasterY * scanlineStride + x * elementsPerPixel;
+    }
+
+    /**
+     * Returns the Rec. 601 luma of a color, in the range 0-255.
+     * @param r the red channel
+     * @param g the green channel
+     * @param b the blue channel
+     * @return the luminance
+     */
+    public static int luminance(int r, int g, int b) {
+        return (77 * r + 150 * g + 29 * b) >> 8;
+    }
+
+    /**
+     * Returns the brightness of a pixel in the range 0-255
+     * @param x the x coordinate of the pixel
+     * @param y the y coordinate of the pixel
+     * @return the brightness of a pixel in the range 0-255
+     */
+    public int get(int x, int y) {
+        return pixels[y * width + x] & 0xFF;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the backing array, row major. Not a copy, don't modify it.
+     */
+    public byte[] getPixels() {
+        return pixels;
+    }
+}
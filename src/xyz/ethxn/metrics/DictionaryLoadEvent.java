@@ -0,0 +1,21 @@
+package xyz.ethxn.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for loading a dictionary.
+ */
+@Name("xyz.ethxn.DictionaryLoad")
+@Label("Dictionary Load")
+@Category("img-hanzi")
+public class DictionaryLoadEvent extends Event {
+
+    @Label("Source")
+    public String source;
+
+    @Label("Glyphs")
+    public int glyphs;
+}
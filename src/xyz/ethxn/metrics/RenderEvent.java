@@ -0,0 +1,50 @@
+package xyz.ethxn.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event for the glyph selection and output of a render,
+ * spanning the first row to the last.
+ */
+@Name("xyz.ethxn.Render")
+@Label("Render")
+@Category("img-hanzi")
+@Description("Picking the glyphs of a render and handing them to the sink")
+public class RenderEvent extends Event {
+
+    @Label("Build Type")
+    public String buildType;
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Columns")
+    public int columns;
+
+    @Label("Blank Cells")
+    public long blankCells;
+
+    @Label("Fallback Cells")
+    @Description("Cells with no glyph matching their corner")
+    public long fallbackCells;
+
+    @Label("Average Candidates")
+    public double averageCandidates;
+
+    @Label("Select Time")
+    @Description("Time spent picking glyphs, summed over all threads")
+    @Timespan
+    public long selectNanos;
+
+    @Label("Emit Time")
+    @Timespan
+    public long emitNanos;
+
+    @Label("Cells Per Second")
+    public double cellsPerSecond;
+}
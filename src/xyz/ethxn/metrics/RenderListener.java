@@ -0,0 +1,59 @@
+package xyz.ethxn.metrics;
+
+/**
+ * Follows the progress of renders. Every method does nothing by default, so
+ * implement only the ones you need. Methods are called on the rendering
+ * thread, so keep them quick; a listener shared by several HanziArt objects
+ * must be thread-safe.
+ */
+public interface RenderListener {
+
+    /** A listener that ignores everything. */
+    RenderListener NONE = new RenderListener() {};
+
+    /**
+     * Returns a listener that prints a line to the console for each emitted
+     * row, then passes every call on.
+     * @param next the listener to pass calls on to
+     * @return the listener
+     */
+    static RenderListener printingProgress(RenderListener next) {
+        return new RenderListener() {
+            @Override
+            public void phaseCompleted(RenderPhase phase, long nanos) {
+                next.phaseCompleted(phase, nanos);
+            }
+
+            @Override
+            public void rowEmitted(int row, int rows) {
+                System.out.println("...building row " + (row + 1) + " of " + rows);
+                next.rowEmitted(row, rows);
+            }
+
+            @Override
+            public void renderCompleted(RenderStats stats) {
+                next.renderCompleted(stats);
+            }
+        };
+    }
+
+    /**
+     * Called when a phase of a render finishes.
+     * @param phase the phase
+     * @param nanos how long it took
+     */
+    default void phaseCompleted(RenderPhase phase, long nanos) {}
+
+    /**
+     * Called after each row is handed to the sink, in order.
+     * @param row the row index
+     * @param rows the number of rows
+     */
+    default void rowEmitted(int row, int rows) {}
+
+    /**
+     * Called when every row has been handed to the sink.
+     * @param stats what the render did
+     */
+    default void renderCompleted(RenderStats stats) {}
+}
@@ -0,0 +1,17 @@
+package xyz.ethxn.metrics;
+
+/**
+ * The phases of a render, in the order they run.
+ */
+public enum RenderPhase {
+    /** Loading the dictionary, when a HanziArt object loads its own. */
+    LOAD,
+    /** Decoding the image, at the resolution and region the build needs. */
+    DECODE,
+    /** Resizing the decoded image to a luminance grid. */
+    RESIZE,
+    /** Picking a glyph for every cell, summed over all threads. */
+    SELECT,
+    /** Handing the finished rows to the sink. */
+    EMIT
+}
@@ -0,0 +1,24 @@
+package xyz.ethxn.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for one phase of a render. Costs next to nothing
+ * unless a recording has it enabled.
+ */
+@Name("xyz.ethxn.RenderPhase")
+@Label("Render Phase")
+@Category("img-hanzi")
+@Description("Decoding or resizing the image of a render")
+public class RenderPhaseEvent extends Event {
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Build Type")
+    public String buildType;
+}
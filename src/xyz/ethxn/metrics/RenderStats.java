@@ -0,0 +1,39 @@
+package xyz.ethxn.metrics;
+
+/**
+ * What a finished render did.
+ * @param buildType the build type
+ * @param rows the rows of output
+ * @param columns the columns of output
+ * @param blankCells cells too dark for any glyph, left blank
+ * @param fallbackCells cells with no glyph matching their corner, which took any glyph with their stroke count instead
+ * @param candidates the candidates the glyph of each other cell was picked from, summed, in fast and complex mode
+ * @param selectNanos the time spent picking glyphs, summed over all threads
+ * @param emitNanos the time spent handing rows to the sink
+ * @param elapsedNanos the wall clock time from the first row to the last
+ */
+public record RenderStats(String buildType, int rows, int columns, long blankCells, long fallbackCells,
+                          long candidates, long selectNanos, long emitNanos, long elapsedNanos) {
+
+    /**
+     * @return the number of cells rendered
+     */
+    public long cells() {
+        return (long) rows * columns;
+    }
+
+    /**
+     * @return the average number of candidates of a non-blank cell, or 0 if every cell was blank
+     */
+    public double averageCandidates() {
+        long sampled = cells() - blankCells;
+        return sampled == 0 ? 0 : candidates / (double) sampled;
+    }
+
+    /**
+     * @return the cells rendered per second of wall clock time
+     */
+    public double cellsPerSecond() {
+        return elapsedNanos == 0 ? 0 : cells() * 1e9 / elapsedNanos;
+    }
+}
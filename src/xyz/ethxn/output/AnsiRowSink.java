@@ -0,0 +1,40 @@
+package xyz.ethxn.output;
+
+import java.io.IOException;
+
+/**
+ * Writes the output art in 24-bit color for terminals, with one ANSI escape
+ * per run of similar cells and a reset at the end of each row.
+ */
+public class AnsiRowSink extends ColorRunRowSink {
+
+    public AnsiRowSink(Appendable out) {
+        this(out, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * @param out where to write the output
+     * @param tolerance how far, in the largest channel difference 0-255, a cell's color may be from its run's color
+     */
+    public AnsiRowSink(Appendable out, int tolerance) {
+        super(out, tolerance);
+    }
+
+    @Override
+    protected void startRun(int color) throws IOException {
+        out.append("\u001b[38;2;")
+                .append(String.valueOf((color >> 16) & 0xFF)).append(';')
+                .append(String.valueOf((color >> 8) & 0xFF)).append(';')
+                .append(String.valueOf(color & 0xFF)).append('m');
+    }
+
+    @Override
+    protected void endRun() {
+        // the next escape or the row's reset replaces the color
+    }
+
+    @Override
+    protected void endRow() throws IOException {
+        out.append("\u001b[0m\n");
+    }
+}
@@ -0,0 +1,36 @@
+package xyz.ethxn.output;
+
+import java.io.IOException;
+
+/**
+ * Appends rows to an {@link Appendable}, such as a StringBuilder or Writer, one line per row.
+ */
+public class AppendableRowSink implements RowSink {
+
+    private final Appendable out;
+
+    public AppendableRowSink(Appendable out) {
+        this.out = out;
+    }
+
+    @Override
+    public void acceptRow(int row, int[] codePoints, int length) throws IOException {
+        if (out instanceof StringBuilder builder) {
+            for (int i = 0; i < length; i++) {
+                builder.appendCodePoint(codePoints[i]);
+            }
+            builder.append('\n');
+            return;
+        }
+
+        for (int i = 0; i < length; i++) {
+            int codePoint = codePoints[i];
+            if (Character.isBmpCodePoint(codePoint)) {
+                out.append((char) codePoint);
+            } else {
+                out.append(Character.highSurrogate(codePoint)).append(Character.lowSurrogate(codePoint));
+            }
+        }
+        out.append('\n');
+    }
+}
@@ -0,0 +1,17 @@
+package xyz.ethxn.output;
+
+import xyz.ethxn.image.ColorGrid;
+
+/**
+ * A sink that colors its output. The builder samples the average color of
+ * every cell while it preprocesses the image, and hands them over before the
+ * first row.
+ */
+public interface ColorRowSink extends RowSink {
+
+    /**
+     * Receives the color of every cell.
+     * @param colors the cell colors, one per character of the output
+     */
+    void setColors(ColorGrid colors);
+}
@@ -0,0 +1,96 @@
+package xyz.ethxn.output;
+
+import xyz.ethxn.image.ColorGrid;
+
+import java.io.IOException;
+
+/**
+ * Base for colored text output. Neighbouring cells whose colors are within a
+ * tolerance of the first cell of their run share one style, so a mostly flat
+ * area costs one escape or tag rather than one per character. Without colors
+ * the rows are written as plain text.
+ */
+public abstract class ColorRunRowSink implements ColorRowSink {
+
+    /** Default tolerance, about the smallest step that's easy to tell apart in text. */
+    public static final int DEFAULT_TOLERANCE = 12;
+
+    protected final Appendable out;
+    private final int tolerance;
+    private ColorGrid colors;
+
+    /**
+     * @param out where to write the output
+     * @param tolerance how far, in the largest channel difference 0-255, a cell's color may be from its run's color
+     */
+    protected ColorRunRowSink(Appendable out, int tolerance) {
+        this.out = out;
+        this.tolerance = tolerance;
+    }
+
+    @Override
+    public void setColors(ColorGrid colors) {
+        this.colors = colors;
+    }
+
+    @Override
+    public void acceptRow(int row, int[] codePoints, int length) throws IOException {
+        boolean colored = colors != null && row < colors.getHeight();
+        int runColor = -1;
+        for (int x = 0; x < length; x++) {
+            if (colored && x < colors.getWidth()) {
+                int color = colors.get(x, row);
+                if (runColor < 0 || !similar(color, runColor)) {
+                    if (runColor >= 0) {
+                        endRun();
+                    }
+                    startRun(color);
+                    runColor = color;
+                }
+            }
+            appendGlyph(codePoints[x]);
+        }
+        if (runColor >= 0) {
+            endRun();
+        }
+        endRow();
+    }
+
+    private boolean similar(int a, int b) {
+        return Math.abs(((a >> 16) & 0xFF) - ((b >> 16) & 0xFF)) <= tolerance
+                && Math.abs(((a >> 8) & 0xFF) - ((b >> 8) & 0xFF)) <= tolerance
+                && Math.abs((a & 0xFF) - (b & 0xFF)) <= tolerance;
+    }
+
+    /**
+     * Writes one character.
+     * @param codePoint the character
+     * @throws IOException if the output fails
+     */
+    protected void appendGlyph(int codePoint) throws IOException {
+        if (Character.isBmpCodePoint(codePoint)) {
+            out.append((char) codePoint);
+        } else {
+            out.append(Character.highSurrogate(codePoint)).append(Character.lowSurrogate(codePoint));
+        }
+    }
+
+    /**
+     * Starts a run of cells with one color.
+     * @param color the color, packed as 0xRRGGBB
+     * @throws IOException if the output fails
+     */
+    protected abstract void startRun(int color) throws IOException;
+
+    /**
+     * Ends the current run.
+     * @throws IOException if the output fails
+     */
+    protected abstract void endRun() throws IOException;
+
+    /**
+     * Ends a row.
+     * @throws IOException if the output fails
+     */
+    protected abstract void endRow() throws IOException;
+}
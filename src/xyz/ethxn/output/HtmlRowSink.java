@@ -0,0 +1,57 @@
+package xyz.ethxn.output;
+
+import java.io.IOException;
+
+/**
+ * Writes the output art as an HTML {@code <pre>} block, with one colored
+ * {@code <span>} per run of similar cells.
+ */
+public class HtmlRowSink extends ColorRunRowSink {
+
+    public HtmlRowSink(Appendable out) {
+        this(out, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * @param out where to write the output
+     * @param tolerance how far, in the largest channel difference 0-255, a cell's color may be from its run's color
+     */
+    public HtmlRowSink(Appendable out, int tolerance) {
+        super(out, tolerance);
+    }
+
+    @Override
+    public void begin(int rows, int columns) throws IOException {
+        out.append("<pre class=\"hanzi-art\">\n");
+    }
+
+    @Override
+    protected void appendGlyph(int codePoint) throws IOException {
+        switch (codePoint) {
+            case '<' -> out.append("&lt;");
+            case '>' -> out.append("&gt;");
+            case '&' -> out.append("&amp;");
+            default -> super.appendGlyph(codePoint);
+        }
+    }
+
+    @Override
+    protected void startRun(int color) throws IOException {
+        out.append("<span style=\"color:#").append(Integer.toHexString(0x1000000 | color).substring(1)).append("\">");
+    }
+
+    @Override
+    protected void endRun() throws IOException {
+        out.append("</span>");
+    }
+
+    @Override
+    protected void endRow() throws IOException {
+        out.append('\n');
+    }
+
+    @Override
+    public void finish() throws IOException {
+        out.append("</pre>\n");
+    }
+}
@@ -0,0 +1,58 @@
+package xyz.ethxn.output;
+
+import xyz.ethxn.dictionary.GlyphAtlas;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Draws the output art into a grayscale image by copying each cell's tile
+ * from a {@link GlyphAtlas} straight into the image's raster.
+ */
+public class ImageRowSink implements RowSink {
+
+    private final GlyphAtlas glyphAtlas;
+    private BufferedImage image; // null until the first render begins
+    private byte[] pixels;
+    private int stride;
+
+    public ImageRowSink(GlyphAtlas glyphAtlas) {
+        this.glyphAtlas = glyphAtlas;
+    }
+
+    @Override
+    public void begin(int rows, int columns) {
+        int cellSize = glyphAtlas.getCellSize();
+        this.image = new BufferedImage(Math.max(1, columns * cellSize), Math.max(1, rows * cellSize), BufferedImage.TYPE_BYTE_GRAY);
+        this.pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        this.stride = image.getWidth();
+    }
+
+    @Override
+    public void acceptRow(int row, int[] codePoints, int length) {
+        int cellSize = glyphAtlas.getCellSize();
+        int offset = row * cellSize * stride;
+        for (int x = 0; x < length; x++, offset += cellSize) {
+            glyphAtlas.copyTile(codePoints[x], pixels, offset, stride);
+        }
+    }
+
+    /**
+     * @return the drawn image, or {@code null} before a render has begun
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Encodes the drawn image as a PNG.
+     * @param out the stream to write to, left open
+     * @throws IOException if the stream fails
+     */
+    public void writePng(OutputStream out) throws IOException {
+        ImageIO.write(image, "png", out);
+    }
+}
@@ -0,0 +1,33 @@
+package xyz.ethxn.output;
+
+import java.io.IOException;
+
+/**
+ * Receives the output art one finished row at a time, in order.
+ */
+public interface RowSink {
+
+    /**
+     * Called once before the first row, with the size of the art.
+     * @param rows the number of rows that will follow
+     * @param columns the number of characters in each row
+     * @throws IOException if the sink can't be set up
+     */
+    default void begin(int rows, int columns) throws IOException {}
+
+    /**
+     * Receives one row of output.
+     * @param row the index of the row
+     * @param codePoints the characters of the row. The array is reused for the
+     *                   next row, so copy anything that needs to be kept
+     * @param length the number of characters in the row
+     * @throws IOException if the row can't be written
+     */
+    void acceptRow(int row, int[] codePoints, int length) throws IOException;
+
+    /**
+     * Called once after the last row, or after a failed build.
+     * @throws IOException if pending output can't be written
+     */
+    default void finish() throws IOException {}
+}
@@ -0,0 +1,52 @@
+package xyz.ethxn.output;
+
+import java.io.IOException;
+
+/**
+ * Hands every row to several sinks, so one render can produce e.g. text and
+ * an image from the same glyph selection.
+ */
+public class TeeRowSink implements RowSink {
+
+    private final RowSink[] sinks;
+
+    public TeeRowSink(RowSink... sinks) {
+        this.sinks = sinks.clone();
+    }
+
+    @Override
+    public void begin(int rows, int columns) throws IOException {
+        for (RowSink sink : sinks) {
+            sink.begin(rows, columns);
+        }
+    }
+
+    @Override
+    public void acceptRow(int row, int[] codePoints, int length) throws IOException {
+        for (RowSink sink : sinks) {
+            sink.acceptRow(row, codePoints, length);
+        }
+    }
+
+    /**
+     * Finishes every sink, even if an earlier one fails.
+     */
+    @Override
+    public void finish() throws IOException {
+        IOException failure = null;
+        for (RowSink sink : sinks) {
+            try {
+                sink.finish();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package xyz.ethxn.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Encodes rows straight to UTF-8 and writes them to an {@link OutputStream},
+ * flushing after each row. Rows are encoded into one of two reused buffers;
+ * in asynchronous mode one buffer is written and flushed on a background
+ * thread while the next row is rendered and encoded into the other.
+ * The stream is not closed by this sink.
+ */
+public class Utf8RowSink implements RowSink {
+
+    private final OutputStream out;
+    private final ExecutorService writer; // null when writing on the calling thread
+    private byte[] buffer = new byte[256];
+    private byte[] spare = new byte[256];
+    private Future<?> pending;
+
+    /**
+     * Creates a sink that writes on the calling thread.
+     * @param out the stream to write to
+     */
+    public Utf8RowSink(OutputStream out) {
+        this(out, false);
+    }
+
+    /**
+     * Creates a sink.
+     * @param out the stream to write to
+     * @param async whether to write and flush on a background thread
+     */
+    public Utf8RowSink(OutputStream out, boolean async) {
+        this.out = out;
+        this.writer = async ? Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hanzi-row-writer");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    @Override
+    public void acceptRow(int row, int[] codePoints, int length) throws IOException {
+        int size = encode(codePoints, length);
+
+        if (writer == null) {
+            out.write(buffer, 0, size);
+            out.flush();
+            return;
+        }
+
+        awaitPending();
+        byte[] full = buffer;
+        pending = writer.submit(() -> {
+            try {
+                out.write(full, 0, size);
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        // the spare buffer is free again, the write that used it has finished
+        buffer = spare;
+        spare = full;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        try {
+            awaitPending();
+            out.flush();
+        } finally {
+            if (writer != null) {
+                writer.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Encodes a row and its line break into the current buffer.
+     * @return the number of bytes
+     */
+    private int encode(int[] codePoints, int length) {
+        int needed = length * 4 + 1;
+        if (buffer.length < needed) {
+            buffer = new byte[Math.max(needed, buffer.length * 2)];
+        }
+
+        byte[] bytes = buffer;
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            int codePoint = codePoints[i];
+            if (codePoint < 0x80) {
+                bytes[size++] = (byte) codePoint;
+            } else if (codePoint < 0x800) {
+                bytes[size++] = (byte) (0xC0 | (codePoint >> 6));
+                bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (codePoint < 0x10000) {
+                bytes[size++] = (byte) (0xE0 | (codePoint >> 12));
+                bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                bytes[size++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+        }
+        bytes[size++] = '\n';
+        return size;
+    }
+
+    private void awaitPending() throws IOException {
+        if (pending == null) {
+            return;
+        }
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while writing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pending = null;
+        }
+    }
+}
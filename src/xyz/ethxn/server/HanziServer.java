@@ -0,0 +1,436 @@
+package xyz.ethxn.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.HanziDictionary;
+import xyz.ethxn.output.RowSink;
+import xyz.ethxn.output.Utf8RowSink;
+import xyz.ethxn.util.Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local HTTP service that renders uploaded images with one dictionary,
+ * loaded once at startup. Each request runs on its own (virtual, where
+ * available) thread.
+ *
+ * <p>{@code POST /render?width=80&mode=complex&maxStrokes=25&seed=1&dither=true} with the
+ * encoded image as the body streams the art back row by row, using chunked
+ * transfer encoding. Jobs wider than the small job width go through a
+ * separate, smaller lane, so a burst of large jobs can't hold up the small
+ * ones. A job that can't get into its lane in time gets a 503. Uploads are
+ * held in memory until their render is done, so all requests together share
+ * a budget of buffered bytes; a request that can't reserve its upload within
+ * the same timeout also gets a 503.
+ * {@code GET /metrics} reports request counts and latency percentiles per lane.
+ */
+public class HanziServer {
+
+    /** Build types a request may ask for. */
+    private static final Set<String> MODES = Set.of("fast", "complex", "nearest", "density");
+
+    /** How long a job waits for room in its lane before it's turned away. */
+    private static final long ADMISSION_TIMEOUT_MILLIS = 2000;
+
+    /** Requests kept per lane for the latency percentiles. */
+    private static final int LATENCY_SAMPLES = 4096;
+
+    private final HanziDictionary dictionary;
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+    private final int smallJobWidth;
+    private final Lane small;
+    private final Lane large;
+    private int maxWidth = 2000;
+    private int maxUploadBytes = 32 * 1024 * 1024;
+    private int uploadBudgetBytes = 256 * 1024 * 1024;
+    private Semaphore uploadBudget = new Semaphore(uploadBudgetBytes, true);
+
+    /**
+     * Limits the number of jobs of one size that render at once, and keeps their stats.
+     */
+    private static final class Lane {
+        final String name;
+        final Semaphore permits;
+        final int capacity;
+        final LatencyRecorder latencies = new LatencyRecorder(LATENCY_SAMPLES);
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+
+        Lane(String name, int capacity) {
+            this.name = name;
+            this.capacity = capacity;
+            this.permits = new Semaphore(capacity, true);
+        }
+    }
+
+    /**
+     * Creates a server on a local port, with lanes sized to the processor count.
+     * @param dictionary the dictionary shared by every render
+     * @param port the port to listen on, 0 for any free port
+     * @throws IOException if the port can't be bound
+     */
+    public HanziServer(HanziDictionary dictionary, int port) throws IOException {
+        this(dictionary, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 200,
+                Runtime.getRuntime().availableProcessors() * 2,
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * Creates a server.
+     * @param dictionary the dictionary shared by every render
+     * @param address the address to listen on
+     * @param smallJobWidth the widest output that still counts as a small job
+     * @param smallJobs how many small jobs may render at once
+     * @param largeJobs how many large jobs may render at once
+     * @throws IOException if the address can't be bound
+     */
+    public HanziServer(HanziDictionary dictionary, InetSocketAddress address, int smallJobWidth, int smallJobs, int largeJobs) throws IOException {
+        this.dictionary = dictionary;
+        this.smallJobWidth = smallJobWidth;
+        this.small = new Lane("small", smallJobs);
+        this.large = new Lane("large", largeJobs);
+        this.executor = Util.newVirtualThreadPerTaskExecutor("hanzi-http");
+        this.httpServer = HttpServer.create(address, 0);
+        httpServer.setExecutor(executor);
+        httpServer.createContext("/render", this::render);
+        httpServer.createContext("/metrics", this::metrics);
+    }
+
+    /**
+     * Starts a server on localhost.
+     * @param args the port, then either a snapshot file or the Unihan txt files
+     * @throws IOException if the dictionary can't be loaded or the port can't be bound
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: HanziServer <port> <snapshot | txt...>");
+            System.exit(2);
+        }
+        HanziDictionary dictionary;
+        if (args.length == 2 && !args[1].endsWith(".txt")) {
+            dictionary = HanziDictionary.fromSnapshot(args[1]);
+        } else {
+            String[] txtPaths = new String[args.length - 1];
+            System.arraycopy(args, 1, txtPaths, 0, txtPaths.length);
+            dictionary = HanziDictionary.load(txtPaths);
+        }
+
+        HanziServer server = new HanziServer(dictionary, Integer.parseInt(args[0]));
+        server.start();
+        System.out.println("listening on http://localhost:" + server.getPort());
+    }
+
+    public void start() {
+        httpServer.start();
+    }
+
+    /**
+     * Stops accepting requests, and gives the running ones a few seconds to finish.
+     */
+    public void stop() {
+        httpServer.stop(5);
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Sets the widest output a request may ask for.
+     * @param maxWidth the width in characters
+     */
+    public void setMaxWidth(int maxWidth) {
+        this.maxWidth = maxWidth;
+    }
+
+    /**
+     * Sets the largest image a request may upload.
+     * @param maxUploadBytes the size in bytes
+     */
+    public void setMaxUploadBytes(int maxUploadBytes) {
+        this.maxUploadBytes = maxUploadBytes;
+    }
+
+    /**
+     * Sets how many upload bytes all requests together may hold in memory.
+     * Call before {@link #start()}.
+     * @param uploadBudgetBytes the budget in bytes
+     */
+    public void setUploadBudgetBytes(int uploadBudgetBytes) {
+        this.uploadBudgetBytes = uploadBudgetBytes;
+        this.uploadBudget = new Semaphore(uploadBudgetBytes, true);
+    }
+
+    private void render(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "POST an image to /render\n");
+                return;
+            }
+
+            HanziArt hanziArt;
+            try {
+                hanziArt = newHanziArt(query(exchange.getRequestURI()));
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, e.getMessage() + "\n");
+                return;
+            }
+
+            Lane lane = hanziArt.getOutputWidth() <= smallJobWidth ? small : large;
+            long contentLength = contentLength(exchange);
+            if (contentLength > maxUploadBytes) {
+                lane.failed.incrementAndGet();
+                send(exchange, 413, "images are limited to " + maxUploadBytes + " bytes\n");
+                return;
+            }
+
+            // reserve the declared size, or the most a chunked upload may take
+            Semaphore budget = uploadBudget;
+            int reserved = contentLength >= 0 ? (int) contentLength : maxUploadBytes + 1;
+            if (!acquire(budget, reserved)) {
+                lane.rejected.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, "too many uploads in progress, try again later\n");
+                return;
+            }
+            try {
+                // read the upload before taking a permit, so a slow client can't hold up the lane
+                byte[] image = exchange.getRequestBody().readNBytes(maxUploadBytes + 1);
+                if (image.length > maxUploadBytes) {
+                    lane.failed.incrementAndGet();
+                    send(exchange, 413, "images are limited to " + maxUploadBytes + " bytes\n");
+                    return;
+                }
+                budget.release(reserved - image.length);
+                reserved = image.length;
+
+                if (!admit(lane)) {
+                    lane.rejected.incrementAndGet();
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    send(exchange, 503, "too many " + lane.name + " jobs, try again later\n");
+                    return;
+                }
+                try {
+                    render(exchange, hanziArt, image, lane);
+                    lane.latencies.record(System.nanoTime() - start);
+                } finally {
+                    lane.permits.release();
+                }
+            } finally {
+                budget.release(reserved);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return the declared size of the request body, or -1 if it's chunked
+     */
+    private static long contentLength(HttpExchange exchange) {
+        String value = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void render(HttpExchange exchange, HanziArt hanziArt, byte[] image, Lane lane) throws IOException {
+        hanziArt.setImage(new ByteArrayInputStream(image));
+
+        ResponseSink sink = new ResponseSink(exchange);
+        try {
+            hanziArt.render(sink);
+        } catch (IOException | RuntimeException e) {
+            lane.failed.incrementAndGet();
+            if (sink.rows != null) {
+                throw e; // the art is already streaming, all we can do is cut it short
+            }
+            send(exchange, e instanceof IOException ? 422 : 500, "can't render the image: " + e.getMessage() + "\n");
+            return;
+        }
+        if (sink.rows == null) {
+            send(exchange, 200, ""); // an image with no rows of art
+        }
+    }
+
+    private static boolean admit(Lane lane) {
+        return acquire(lane.permits, 1);
+    }
+
+    private static boolean acquire(Semaphore semaphore, int permits) {
+        try {
+            return semaphore.tryAcquire(permits, ADMISSION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Sets up a render from the query parameters of a request.
+     * @throws IllegalArgumentException if a parameter is invalid
+     */
+    private HanziArt newHanziArt(Map<String, String> params) {
+        HanziArt hanziArt = new HanziArt();
+        hanziArt.setDictionary(dictionary);
+
+        int width = intParam(params, "width", 80);
+        if (width < 1 || width > maxWidth) {
+            throw new IllegalArgumentException("width must be 1-" + maxWidth);
+        }
+        hanziArt.setOutputWidth(width);
+
+        String mode = params.getOrDefault("mode", "fast").toLowerCase(Locale.ROOT);
+        if (!MODES.contains(mode)) {
+            throw new IllegalArgumentException("mode must be one of " + MODES);
+        }
+        if (mode.equals("density") && dictionary.getInkDensityTable() == null) {
+            throw new IllegalArgumentException("density mode needs an ink density table");
+        }
+        hanziArt.setBuildType(mode);
+
+        int maxStrokes = intParam(params, "maxStrokes", 25);
+        if (maxStrokes < 1 || maxStrokes > dictionary.getGlyphIndex().getMaxStrokeCount()) {
+            throw new IllegalArgumentException("maxStrokes must be 1-" + dictionary.getGlyphIndex().getMaxStrokeCount());
+        }
+        hanziArt.setMaxStrokeCount(maxStrokes);
+
+        hanziArt.setBlockSize(intParam(params, "blockSize", 2));
+        hanziArt.setDither(Boolean.parseBoolean(params.get("dither")));
+        if (params.containsKey("seed")) {
+            try {
+                hanziArt.setSeed(Long.parseLong(params.get("seed")));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("seed must be a number");
+            }
+        }
+        return hanziArt;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+    }
+
+    private static Map<String, String> query(URI uri) {
+        Map<String, String> params = new HashMap<>();
+        String query = uri.getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        try {
+            StringBuilder out = new StringBuilder();
+            for (Lane lane : new Lane[] {small, large}) {
+                String label = "{lane=\"" + lane.name + "\"";
+                out.append("hanzi_requests_total").append(label).append("} ").append(lane.latencies.count()).append('\n');
+                out.append("hanzi_requests_rejected_total").append(label).append("} ").append(lane.rejected.get()).append('\n');
+                out.append("hanzi_requests_failed_total").append(label).append("} ").append(lane.failed.get()).append('\n');
+                out.append("hanzi_requests_in_flight").append(label).append("} ")
+                        .append(lane.capacity - lane.permits.availablePermits()).append('\n');
+
+                double[] quantiles = {50, 90, 99};
+                long[] latencies = lane.latencies.percentiles(quantiles);
+                for (int i = 0; i < quantiles.length; i++) {
+                    out.append("hanzi_request_latency_seconds").append(label)
+                            .append(",quantile=\"").append(quantiles[i] / 100).append("\"} ")
+                            .append(latencies[i] / 1e9).append('\n');
+                }
+            }
+            out.append("hanzi_upload_bytes_buffered ")
+                    .append(uploadBudgetBytes - uploadBudget.availablePermits()).append('\n');
+            send(exchange, 200, out.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Streams rows as a chunked response. The headers go out with the first
+     * row, so a render that fails before then can still answer with an error.
+     * Finishing before any row has gone out does nothing, as rendering finishes
+     * its sink even when it fails.
+     */
+    private static final class ResponseSink implements RowSink {
+        private final HttpExchange exchange;
+        private Utf8RowSink rows; // null until the response has started
+
+        ResponseSink(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        private Utf8RowSink rows() throws IOException {
+            if (rows == null) {
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                exchange.sendResponseHeaders(200, 0); // chunked
+                rows = new Utf8RowSink(exchange.getResponseBody());
+            }
+            return rows;
+        }
+
+        @Override
+        public void acceptRow(int row, int[] codePoints, int length) throws IOException {
+            rows().acceptRow(row, codePoints, length);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (rows != null) {
+                rows.finish();
+            }
+        }
+    }
+}
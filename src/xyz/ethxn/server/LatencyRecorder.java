@@ -0,0 +1,55 @@
+package xyz.ethxn.server;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latencies of the most recent requests, for percentiles. Older
+ * samples are overwritten, so the percentiles follow recent load and memory
+ * stays fixed.
+ */
+class LatencyRecorder {
+
+    private final long[] samples; // ring buffer of nanoseconds
+    private int next;
+    private long count;
+
+    LatencyRecorder(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count++;
+    }
+
+    /**
+     * @return every request recorded, including those no longer kept
+     */
+    synchronized long count() {
+        return count;
+    }
+
+    /**
+     * Returns percentiles of the kept samples.
+     * @param percentiles the percentiles to compute, 0-100
+     * @return the latency at each percentile in nanoseconds, all 0 if nothing was recorded
+     */
+    long[] percentiles(double... percentiles) {
+        long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+        }
+        Arrays.sort(sorted);
+
+        long[] result = new long[percentiles.length];
+        if (sorted.length == 0) {
+            return result;
+        }
+        for (int i = 0; i < percentiles.length; i++) {
+            int rank = (int) Math.ceil(percentiles[i] / 100 * sorted.length) - 1; // nearest rank
+            result[i] = sorted[Math.max(0, Math.min(rank, sorted.length - 1))];
+        }
+        return result;
+    }
+}
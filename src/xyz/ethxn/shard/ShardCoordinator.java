@@ -0,0 +1,411 @@
+package xyz.ethxn.shard;
+
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.builder.HanziBuilder;
+import xyz.ethxn.builder.RowRenderer;
+import xyz.ethxn.image.LuminanceGrid;
+import xyz.ethxn.output.RowSink;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders one image across several worker processes, for renders too big for
+ * one JVM. The image is decoded and resized here, once, and its grid is split
+ * into stripes of rows that are sent to the workers over their standard input
+ * and output, see {@link ShardWorker}. Each row of a stripe draws from the
+ * generator it would have in a single-process render, so the stitched output
+ * is the same as {@link HanziArt#render(RowSink)} with the same seed.
+ *
+ * <p>Finished stripes are handed to the sink in order as soon as every stripe
+ * before them is in, and workers only run a few stripes ahead of the sink, so
+ * memory stays bounded. A worker that dies or breaks its pipe has its stripe
+ * given to another worker, and so does one that takes longer than the stripe
+ * timeout, as it's killed. The render only fails once every worker is gone.
+ * Dithered renders are rejected, as error can't cross the edges between
+ * stripes, see {@link RowRenderer#isOrdered()}.
+ *
+ * <p>Workers load only the dictionary, not an ink density table, so density
+ * renders are rejected.
+ */
+public class ShardCoordinator implements AutoCloseable {
+
+    /** One worker process and its pipes. */
+    private static final class Worker {
+        final Process process;
+        final DataOutputStream out;
+        final DataInputStream in;
+        boolean alive = true;
+
+        Worker(Process process) {
+            this.process = process;
+            this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        }
+    }
+
+    private final HanziBuilder hanziBuilder = new HanziBuilder();
+    private final List<Worker> workers = new ArrayList<>();
+    private final ExecutorService executor;
+    private final ScheduledExecutorService watchdog;
+    private int stripeRows = 64;
+    private int stripesAheadPerWorker = 2;
+    private long stripeTimeoutMillis = 60_000;
+
+    /**
+     * Starts the worker processes.
+     * @param command the command line of a worker, see {@link #workerCommand(String...)}
+     * @param workerCount how many workers to start
+     * @throws IOException if a worker can't be started
+     */
+    public ShardCoordinator(List<String> command, int workerCount) throws IOException {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("'" + workerCount + "'" + " is an invalid worker count.");
+        }
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hanzi-shard-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ProcessBuilder processBuilder = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT);
+        try {
+            for (int i = 0; i < workerCount; i++) {
+                workers.add(new Worker(processBuilder.start()));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        this.executor = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "hanzi-shard");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the command line that runs a {@link ShardWorker} with the same
+     * Java and class path as this JVM.
+     * @param dictionaryArgs either a snapshot file or the Unihan txt files
+     * @return the command line
+     */
+    public static List<String> workerCommand(String... dictionaryArgs) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ShardWorker.class.getName());
+        command.addAll(List.of(dictionaryArgs));
+        return command;
+    }
+
+    /**
+     * Sets how many rows each stripe has.
+     * @param stripeRows the rows per stripe
+     */
+    public void setStripeRows(int stripeRows) {
+        if (stripeRows < 1) {
+            throw new IllegalArgumentException("'" + stripeRows + "'" + " is an invalid stripe height.");
+        }
+        this.stripeRows = stripeRows;
+    }
+
+    public int getStripeRows() {
+        return stripeRows;
+    }
+
+    /**
+     * Sets how many stripes each worker may finish ahead of the sink.
+     * @param stripesAheadPerWorker the stripes per worker
+     */
+    public void setStripesAheadPerWorker(int stripesAheadPerWorker) {
+        if (stripesAheadPerWorker < 1) {
+            throw new IllegalArgumentException("'" + stripesAheadPerWorker + "'" + " is an invalid number of stripes.");
+        }
+        this.stripesAheadPerWorker = stripesAheadPerWorker;
+    }
+
+    /**
+     * Sets how long a worker may take over one stripe before it's killed and
+     * the stripe is given to another worker.
+     * @param stripeTimeoutMillis the timeout in milliseconds
+     */
+    public void setStripeTimeout(long stripeTimeoutMillis) {
+        if (stripeTimeoutMillis < 1) {
+            throw new IllegalArgumentException("'" + stripeTimeoutMillis + "'" + " is an invalid timeout.");
+        }
+        this.stripeTimeoutMillis = stripeTimeoutMillis;
+    }
+
+    public long getStripeTimeout() {
+        return stripeTimeoutMillis;
+    }
+
+    /**
+     * @return the number of workers that haven't failed
+     */
+    public synchronized int getLiveWorkers() {
+        int live = 0;
+        for (Worker worker : workers) {
+            if (worker.alive) {
+                live++;
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Renders a hanzi art object across the workers. The workers must have
+     * loaded the same dictionary as the hanzi art object. An unseeded hanzi
+     * art object is left with the seed that was picked, as after
+     * {@link HanziArt#render(RowSink)}, so {@link HanziArt#getSeed()} reproduces the render.
+     * @param hanziArt the image and options to render with
+     * @param sink the sink to receive the rows, in order
+     * @throws IOException if the image can't be decoded, a stripe can't be
+     *                     rendered, every worker has failed, or the sink fails
+     * @throws IllegalArgumentException if the build type is density, which the workers can't render,
+     *                                  or the render is dithered
+     */
+    public void render(HanziArt hanziArt, RowSink sink) throws IOException {
+        if (hanziArt.getDictionary() == null) {
+            throw new IllegalStateException("No dictionary set");
+        }
+        if (hanziArt.getBuildType().equals("density")) {
+            throw new IllegalArgumentException("density renders can't be sharded, the workers have no ink density table");
+        }
+        if (!hanziArt.isSeeded()) {
+            hanziArt.setSeed(ThreadLocalRandom.current().nextLong());
+            hanziArt.clearSeed(); // still picked per render, but kept as the seed of this one
+        }
+        long seed = hanziArt.getSeed();
+        LuminanceGrid grid = hanziBuilder.prepareGrid(hanziArt);
+        RowRenderer renderer = hanziBuilder.rowRenderer(hanziArt, grid);
+        if (renderer.isOrdered()) {
+            throw new IllegalArgumentException("dithered renders can't be sharded, error can't cross between stripes");
+        }
+        int rows = renderer.getRows();
+        int columns = renderer.getColumns();
+        int scale = HanziBuilder.gridScale(hanziArt);
+        Render render = new Render(hanziArt, grid, scale, seed, rows, stripeRows);
+
+        List<Future<?>> tasks = new ArrayList<>();
+        boolean finished = false;
+        try {
+            synchronized (this) {
+                for (Worker worker : workers) {
+                    if (worker.alive) {
+                        tasks.add(executor.submit(() -> serve(worker, render)));
+                    }
+                }
+            }
+            sink.begin(rows, columns);
+            int[] row = new int[columns];
+            for (int stripe = 0; stripe < render.stripes; stripe++) {
+                int[] codePoints = render.await(stripe);
+                int from = stripe * stripeRows;
+                int to = Math.min(rows, from + stripeRows);
+                for (int y = from; y < to; y++) {
+                    System.arraycopy(codePoints, (y - from) * columns, row, 0, columns);
+                    sink.acceptRow(y, row, columns);
+                }
+            }
+            finished = true;
+            sink.finish();
+        } finally {
+            render.stop();
+            for (Future<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (Exception e) {
+                    // serve doesn't throw, a failure is reported through the render
+                }
+            }
+            if (!finished) {
+                sink.finish();
+            }
+        }
+    }
+
+    /**
+     * Hands stripes to one worker until the render is done or the worker fails.
+     */
+    private void serve(Worker worker, Render render) {
+        for (int stripe = render.take(); stripe >= 0; stripe = render.take()) {
+            ShardProtocol.StripeResult result;
+            // pipes can't time out, so a worker that hangs is killed, which breaks its pipes
+            ScheduledFuture<?> timeout = watchdog.schedule(worker.process::destroyForcibly,
+                    stripeTimeoutMillis, TimeUnit.MILLISECONDS);
+            try {
+                ShardProtocol.writeRequest(worker.out, render.request(stripe));
+                result = ShardProtocol.readResult(worker.in);
+            } catch (IOException e) {
+                synchronized (this) {
+                    worker.alive = false;
+                }
+                worker.process.destroyForcibly();
+                render.reassign(stripe, e);
+                return;
+            } finally {
+                timeout.cancel(false);
+            }
+            if (result.error() != null) {
+                render.fail(new IOException("stripe " + stripe + " couldn't be rendered: " + result.error()));
+                return;
+            }
+            render.complete(stripe, result.codePoints());
+        }
+    }
+
+    /**
+     * The stripes of one render, shared between the threads serving the
+     * workers and the thread writing to the sink.
+     */
+    private final class Render {
+        final HanziArt hanziArt;
+        final LuminanceGrid grid;
+        final int scale;
+        final long seed;
+        final int rows;
+        final int stripeRows;
+        final int stripes;
+        final int[][] results;
+        final PriorityQueue<Integer> pending = new PriorityQueue<>(); // lowest stripe first, so reassigned ones go next
+        final int window;    // how many stripes past the next one to emit may be handed out
+        int nextToEmit;
+        int liveWorkers;
+        boolean stopped;
+        IOException failure;
+
+        Render(HanziArt hanziArt, LuminanceGrid grid, int scale, long seed, int rows, int stripeRows) {
+            this.hanziArt = hanziArt;
+            this.grid = grid;
+            this.scale = scale;
+            this.seed = seed;
+            this.rows = rows;
+            this.stripeRows = stripeRows;
+            this.stripes = (rows + stripeRows - 1) / stripeRows;
+            this.results = new int[stripes][];
+            this.liveWorkers = getLiveWorkers();
+            this.window = liveWorkers * stripesAheadPerWorker;
+            if (liveWorkers == 0) {
+                failure = new IOException("every shard worker has failed");
+            }
+            for (int stripe = 0; stripe < stripes; stripe++) {
+                pending.add(stripe);
+            }
+        }
+
+        ShardProtocol.StripeRequest request(int stripe) {
+            int from = stripe * stripeRows;
+            int to = Math.min(rows, from + stripeRows);
+            return new ShardProtocol.StripeRequest(stripe, hanziArt.getBuildType(), hanziArt.getMaxStrokeCount(),
+                    hanziArt.getBlockSize(), seed, from,
+                    grid.crop(0, from * scale, grid.getWidth(), (to - from) * scale));
+        }
+
+        /**
+         * @return the next stripe to render, or -1 once there's nothing left to do
+         */
+        synchronized int take() {
+            try {
+                while (!stopped && failure == null
+                        && (pending.isEmpty() || pending.peek() >= nextToEmit + window)) {
+                    if (pending.isEmpty() && nextToEmit >= stripes) {
+                        return -1;
+                    }
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+            return stopped || failure != null ? -1 : pending.poll();
+        }
+
+        synchronized void complete(int stripe, int[] codePoints) {
+            results[stripe] = codePoints;
+            notifyAll();
+        }
+
+        synchronized void reassign(int stripe, IOException cause) {
+            pending.add(stripe);
+            if (--liveWorkers == 0) {
+                failure = new IOException("every shard worker has failed", cause);
+            }
+            notifyAll();
+        }
+
+        synchronized void fail(IOException failure) {
+            if (this.failure == null) {
+                this.failure = failure;
+            }
+            notifyAll();
+        }
+
+        synchronized int[] await(int stripe) throws IOException {
+            try {
+                while (results[stripe] == null && failure == null) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while waiting for stripe " + stripe, e);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            int[] codePoints = results[stripe];
+            results[stripe] = null;
+            nextToEmit = stripe + 1;
+            notifyAll();
+            return codePoints;
+        }
+
+        synchronized void stop() {
+            stopped = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Closes the input of every worker so they exit, and waits a few seconds before killing them.
+     */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        watchdog.shutdownNow();
+        for (Worker worker : workers) {
+            try {
+                worker.out.close();
+            } catch (IOException e) {
+                // the worker is already gone
+            }
+        }
+        for (Worker worker : workers) {
+            try {
+                if (!worker.process.waitFor(5, TimeUnit.SECONDS)) {
+                    worker.process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                worker.process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package xyz.ethxn.shard;
+
+import xyz.ethxn.image.LuminanceGrid;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The messages between a coordinator and its workers, over the standard input
+ * and output of the worker process. The coordinator sends a stripe request:
+ * the stripe number, the build type, max stroke count, block size, the seed
+ * of the whole render and the index of the stripe's first row, then the
+ * width, height and pixels of the stripe's grid. The worker answers with the
+ * stripe number and a status, then either the rows, columns and code points
+ * of the stripe, or an error message. Closing the worker's input shuts it
+ * down.
+ */
+final class ShardProtocol {
+
+    static final int OK = 0;
+    static final int ERROR = 1;
+
+    /** A stripe to render. */
+    record StripeRequest(int stripe, String buildType, int maxStrokeCount, int blockSize, long seed, int firstRow, LuminanceGrid grid) {}
+
+    /** A rendered stripe, or the reason it couldn't be rendered. */
+    record StripeResult(int stripe, int rows, int columns, int[] codePoints, String error) {}
+
+    private ShardProtocol() {}
+
+    static void writeRequest(DataOutputStream out, StripeRequest request) throws IOException {
+        out.writeInt(request.stripe());
+        out.writeUTF(request.buildType());
+        out.writeInt(request.maxStrokeCount());
+        out.writeInt(request.blockSize());
+        out.writeLong(request.seed());
+        out.writeInt(request.firstRow());
+        out.writeInt(request.grid().getWidth());
+        out.writeInt(request.grid().getHeight());
+        out.write(request.grid().getPixels());
+        out.flush();
+    }
+
+    /**
+     * @return the request, or {@code null} at the end of the stream
+     */
+    static StripeRequest readRequest(DataInputStream in) throws IOException {
+        int stripe;
+        try {
+            stripe = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        String buildType = in.readUTF();
+        int maxStrokeCount = in.readInt();
+        int blockSize = in.readInt();
+        long seed = in.readLong();
+        int firstRow = in.readInt();
+        int width = in.readInt();
+        int height = in.readInt();
+        byte[] pixels = new byte[width * height];
+        in.readFully(pixels);
+        return new StripeRequest(stripe, buildType, maxStrokeCount, blockSize, seed, firstRow, new LuminanceGrid(width, height, pixels));
+    }
+
+    static void writeResult(DataOutputStream out, StripeResult result) throws IOException {
+        out.writeInt(result.stripe());
+        if (result.error() != null) {
+            out.writeInt(ERROR);
+            out.writeUTF(result.error());
+        } else {
+            out.writeInt(OK);
+            out.writeInt(result.rows());
+            out.writeInt(result.columns());
+            ByteBuffer buffer = ByteBuffer.allocate(result.codePoints().length * Integer.BYTES);
+            buffer.asIntBuffer().put(result.codePoints());
+            out.write(buffer.array());
+        }
+        out.flush();
+    }
+
+    static StripeResult readResult(DataInputStream in) throws IOException {
+        int stripe = in.readInt();
+        if (in.readInt() == ERROR) {
+            return new StripeResult(stripe, 0, 0, null, in.readUTF());
+        }
+        int rows = in.readInt();
+        int columns = in.readInt();
+        byte[] bytes = new byte[rows * columns * Integer.BYTES];
+        in.readFully(bytes);
+        int[] codePoints = new int[rows * columns];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(codePoints);
+        return new StripeResult(stripe, rows, columns, codePoints, null);
+    }
+}
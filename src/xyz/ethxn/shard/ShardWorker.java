@@ -0,0 +1,82 @@
+package xyz.ethxn.shard;
+
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.HanziDictionary;
+import xyz.ethxn.builder.HanziBuilder;
+import xyz.ethxn.builder.RowRenderer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * A worker process for a {@link ShardCoordinator}. It loads the dictionary
+ * once, then renders stripes read from its standard input and writes them to
+ * its standard output until the input is closed. Anything else that would go
+ * to standard output, such as progress messages, goes to standard error.
+ * Only the dictionary is loaded, without an ink density table, so density
+ * stripes can't be rendered.
+ */
+public final class ShardWorker {
+
+    private ShardWorker() {}
+
+    /**
+     * Starts a worker.
+     * @param args either a snapshot file or the Unihan txt files
+     * @throws IOException if the dictionary can't be loaded or the coordinator can't be reached
+     */
+    public static void main(String[] args) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err); // standard output carries the protocol only
+
+        if (args.length == 0) {
+            System.err.println("usage: ShardWorker <snapshot | txt...>");
+            System.exit(2);
+        }
+        HanziDictionary dictionary;
+        if (args.length == 1 && !args[0].endsWith(".txt")) {
+            dictionary = HanziDictionary.fromSnapshot(args[0]);
+        } else {
+            dictionary = HanziDictionary.load(args);
+        }
+
+        HanziBuilder hanziBuilder = new HanziBuilder();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        for (ShardProtocol.StripeRequest request = ShardProtocol.readRequest(in); request != null;
+             request = ShardProtocol.readRequest(in)) {
+            ShardProtocol.StripeResult result;
+            try {
+                result = render(hanziBuilder, dictionary, request);
+            } catch (RuntimeException e) {
+                result = new ShardProtocol.StripeResult(request.stripe(), 0, 0, null, String.valueOf(e));
+            }
+            ShardProtocol.writeResult(out, result);
+        }
+    }
+
+    private static ShardProtocol.StripeResult render(HanziBuilder hanziBuilder, HanziDictionary dictionary,
+                                                     ShardProtocol.StripeRequest request) {
+        HanziArt hanziArt = new HanziArt();
+        hanziArt.setDictionary(dictionary);
+        hanziArt.setBuildType(request.buildType());
+        hanziArt.setMaxStrokeCount(request.maxStrokeCount());
+        hanziArt.setBlockSize(request.blockSize());
+        hanziArt.setSeed(request.seed());
+
+        RowRenderer renderer = hanziBuilder.rowRenderer(hanziArt, request.grid(), request.firstRow());
+        int rows = renderer.getRows();
+        int columns = renderer.getColumns();
+        int[] codePoints = new int[rows * columns];
+        int[] row = new int[columns];
+        for (int y = 0; y < rows; y++) {
+            renderer.renderRow(y, row);
+            System.arraycopy(row, 0, codePoints, y * columns, columns);
+        }
+        return new ShardProtocol.StripeResult(request.stripe(), rows, columns, codePoints, null);
+    }
+}
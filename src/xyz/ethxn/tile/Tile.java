@@ -0,0 +1,14 @@
+package xyz.ethxn.tile;
+
+/**
+ * A rendered square of a tiled render. Tiles at the right and bottom edges
+ * of a level may be smaller than the tile size.
+ * @param level the pyramid level, 0 for the full output width
+ * @param tileX the column of the tile within the level
+ * @param tileY the row of the tile within the level
+ * @param rows the number of rows
+ * @param columns the number of characters in each row
+ * @param codePoints the glyphs, row major
+ */
+public record Tile(int level, int tileX, int tileY, int rows, int columns, int[] codePoints) {
+}
@@ -0,0 +1,419 @@
+package xyz.ethxn.tile;
+
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.HanziDictionary;
+import xyz.ethxn.builder.HanziBuilder;
+import xyz.ethxn.builder.RowRenderer;
+import xyz.ethxn.cache.LruCache;
+import xyz.ethxn.image.ImageDecoder;
+import xyz.ethxn.image.LuminanceGrid;
+import xyz.ethxn.output.RowSink;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Renders a large image in tiles, for viewers that pan and zoom around it.
+ * Nothing is decoded up front but the image's header. Each zoom level halves
+ * the level below it, and a tile decodes only the region of the image it
+ * covers, subsampled to its level, so memory follows the tiles in view
+ * rather than the size of the image or of the finest level. A level's tiles
+ * all use the same subsampling step and cell boundaries, so they stitch
+ * together exactly as if the whole level had been resized at once.
+ * A viewport only renders the tiles it can see that aren't cached yet, and
+ * the tiles around it are rendered ahead in the background, so a pan mostly
+ * costs the tiles that just came into view.
+ *
+ * <p>The options of the given HanziArt object are read once, when the
+ * renderer is created; its image is read again for each tile, so leave it
+ * set while the renderer is in use. Each tile draws from a seed of its own,
+ * so a tile comes out the same whenever it's rendered again after being
+ * evicted. Dithered renders are rejected, as error can't cross the edges
+ * between tiles.
+ */
+public class TileRenderer implements AutoCloseable {
+
+    /** Spacing between the tile seeds, so each tile draws from its own streams. */
+    private static final long TILE_SEED_GAMMA = 0xBF58476D1CE4E5B9L;
+
+    private record TileKey(int level, int tileX, int tileY) {}
+
+    /** The tiles of one level that should be rendered ahead, inclusive. */
+    private record TileRange(int level, int fromX, int fromY, int toX, int toY) {
+        boolean contains(TileKey key) {
+            return key.level() == level && key.tileX() >= fromX && key.tileX() <= toX
+                    && key.tileY() >= fromY && key.tileY() <= toY;
+        }
+    }
+
+    private final HanziBuilder hanziBuilder = new HanziBuilder();
+    private final HanziArt source;     // the image, read a region per tile
+    private final HanziDictionary dictionary;
+    private final String buildType;
+    private final int maxStrokeCount;
+    private final int blockSize;
+    private final boolean dither;
+    private final long seed;
+    private final int scale;           // grid pixels per side of a cell
+    private final int tileSize;        // cells per side of a tile
+    private final int sourceWidth;
+    private final int sourceHeight;
+    private final int[] levelColumns;  // characters across each level
+    private final int[] levelRows;     // rows of each level
+    private final LruCache<TileKey, Tile> tiles;
+    private final ConcurrentHashMap<TileKey, CompletableFuture<Tile>> rendering = new ConcurrentHashMap<>();
+    private final Set<TileKey> prefetchQueue = ConcurrentHashMap.newKeySet();
+    private final ExecutorService prefetcher;
+    private final LongAdder renderedTiles = new LongAdder();
+    private volatile TileRange prefetchRange;
+    private volatile int prefetchMargin = 1;
+
+    /**
+     * Reads the size of the image of a hanzi art object and lays out its levels.
+     * @param hanziArt the image, dictionary and options to render with. Its
+     *                 output width is the width of level 0, the most zoomed in
+     * @param tileSize the number of characters per side of a tile
+     * @param maxTileBytes how much memory the cached tiles may take
+     * @param prefetchThreads how many threads render tiles ahead, 0 for none
+     * @throws IOException if the image can't be read
+     * @throws IllegalArgumentException if the render is dithered
+     */
+    public TileRenderer(HanziArt hanziArt, int tileSize, long maxTileBytes, int prefetchThreads) throws IOException {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("'" + tileSize + "'" + " is an invalid tile size.");
+        }
+        if (hanziArt.getDictionary() == null) {
+            throw new IllegalStateException("No dictionary set");
+        }
+        this.source = hanziArt;
+        this.dictionary = hanziArt.getDictionary();
+        this.buildType = hanziArt.getBuildType();
+        this.maxStrokeCount = hanziArt.getMaxStrokeCount();
+        this.blockSize = hanziArt.getBlockSize();
+        this.dither = hanziArt.isDither();
+        this.seed = hanziArt.isSeeded() ? hanziArt.getSeed() : ThreadLocalRandom.current().nextLong();
+        this.scale = HanziBuilder.gridScale(hanziArt);
+        this.tileSize = tileSize;
+        this.tiles = new LruCache<>(maxTileBytes, tile -> tile.codePoints().length * 4L + 64);
+
+        LuminanceGrid probe = new LuminanceGrid(scale, scale, new byte[scale * scale]);
+        if (hanziBuilder.rowRenderer(tileArt(seed), probe).isOrdered()) {
+            throw new IllegalArgumentException("dithered renders can't be tiled, error can't cross the edges between tiles");
+        }
+
+        Dimension size = hanziArt.getImageSize();
+        this.sourceWidth = size.width;
+        this.sourceHeight = size.height;
+
+        // halve each level until the whole image fits in one tile
+        List<int[]> levels = new ArrayList<>();
+        int columns = hanziArt.getOutputWidth();
+        int rows = (int) (columns * scale * (double) sourceHeight / sourceWidth) / scale;
+        while (true) {
+            levels.add(new int[]{columns, rows});
+            if ((columns <= tileSize && rows <= tileSize) || columns < 2 || rows < 2) {
+                break;
+            }
+            columns /= 2;
+            rows /= 2;
+        }
+        this.levelColumns = levels.stream().mapToInt(level -> level[0]).toArray();
+        this.levelRows = levels.stream().mapToInt(level -> level[1]).toArray();
+
+        this.prefetcher = prefetchThreads <= 0 ? null : Executors.newFixedThreadPool(prefetchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "hanzi-tiles");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets how many tiles around the viewport are rendered ahead.
+     * @param prefetchMargin the margin in tiles, 0 to render nothing ahead
+     */
+    public void setPrefetchMargin(int prefetchMargin) {
+        this.prefetchMargin = prefetchMargin;
+    }
+
+    public int getPrefetchMargin() {
+        return prefetchMargin;
+    }
+
+    /**
+     * @return the number of zoom levels, level 0 being the full output width
+     */
+    public int getLevels() {
+        return levelColumns.length;
+    }
+
+    /**
+     * @param level the zoom level
+     * @return the number of characters across the whole image at the level
+     */
+    public int getColumns(int level) {
+        return levelColumns[checkLevel(level)];
+    }
+
+    /**
+     * @param level the zoom level
+     * @return the number of rows in the whole image at the level
+     */
+    public int getRows(int level) {
+        return levelRows[checkLevel(level)];
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * @return the number of tiles rendered so far, in the foreground and ahead
+     */
+    public long getRenderedTileCount() {
+        return renderedTiles.sum();
+    }
+
+    /**
+     * @return the cache of rendered tiles, for its counters
+     */
+    public LruCache<?, Tile> getTileCache() {
+        return tiles;
+    }
+
+    /**
+     * Renders the part of a zoom level inside a viewport, and starts rendering
+     * the tiles around it ahead. A viewport that reaches past the edges of the
+     * level is clipped to them.
+     * @param level the zoom level
+     * @param x the first column of the viewport
+     * @param y the first row of the viewport
+     * @param columns the width of the viewport in characters
+     * @param rows the height of the viewport in rows
+     * @param sink the sink to receive the rows of the viewport
+     * @throws IOException if the image can't be decoded or the sink fails
+     */
+    public void renderViewport(int level, int x, int y, int columns, int rows, RowSink sink) throws IOException {
+        int fromX = Math.max(0, x);
+        int fromY = Math.max(0, y);
+        int toX = Math.min(getColumns(level), x + columns);
+        int toY = Math.min(getRows(level), y + rows);
+        int width = Math.max(0, toX - fromX);
+        int height = Math.max(0, toY - fromY);
+
+        boolean finished = false;
+        try {
+            sink.begin(height, width);
+            if (width > 0 && height > 0) {
+                int firstTileX = fromX / tileSize;
+                int firstTileY = fromY / tileSize;
+                int lastTileX = (toX - 1) / tileSize;
+                int lastTileY = (toY - 1) / tileSize;
+                prefetch(level, firstTileX, firstTileY, lastTileX, lastTileY);
+
+                int[] row = new int[width];
+                for (int tileY = firstTileY; tileY <= lastTileY; tileY++) {
+                    Tile[] tileRow = new Tile[lastTileX - firstTileX + 1];
+                    for (int tileX = firstTileX; tileX <= lastTileX; tileX++) {
+                        try {
+                            tileRow[tileX - firstTileX] = getTile(level, tileX, tileY);
+                        } catch (UncheckedIOException e) {
+                            throw e.getCause();
+                        }
+                    }
+
+                    int rowFrom = Math.max(fromY, tileY * tileSize);
+                    int rowTo = Math.min(toY, (tileY + 1) * tileSize);
+                    for (int cellY = rowFrom; cellY < rowTo; cellY++) {
+                        for (Tile tile : tileRow) {
+                            int left = tile.tileX() * tileSize;
+                            int copyFrom = Math.max(fromX, left);
+                            int copyTo = Math.min(toX, left + tile.columns());
+                            System.arraycopy(tile.codePoints(), (cellY - tileY * tileSize) * tile.columns() + copyFrom - left,
+                                    row, copyFrom - fromX, copyTo - copyFrom);
+                        }
+                        sink.acceptRow(cellY - fromY, row, width);
+                    }
+                }
+            }
+            finished = true;
+            sink.finish();
+        } finally {
+            if (!finished) {
+                sink.finish();
+            }
+        }
+    }
+
+    /**
+     * Returns one tile, from the cache if it's there. A tile that's already
+     * being rendered ahead is waited for rather than rendered twice.
+     * @param level the zoom level
+     * @param tileX the column of the tile
+     * @param tileY the row of the tile
+     * @return the tile
+     * @throws UncheckedIOException if the tile's region of the image can't be decoded
+     */
+    public Tile getTile(int level, int tileX, int tileY) {
+        int columns = getColumns(level);
+        int rows = getRows(level);
+        if (tileX < 0 || tileY < 0 || tileX * tileSize >= columns || tileY * tileSize >= rows) {
+            throw new IndexOutOfBoundsException("tile " + tileX + "," + tileY + " is outside level " + level);
+        }
+
+        TileKey key = new TileKey(level, tileX, tileY);
+        Tile tile = tiles.get(key);
+        if (tile != null) {
+            return tile;
+        }
+
+        CompletableFuture<Tile> own = new CompletableFuture<>();
+        CompletableFuture<Tile> inFlight = rendering.putIfAbsent(key, own);
+        if (inFlight != null) {
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            tile = renderTile(key);
+            tiles.put(key, tile);
+            own.complete(tile);
+            return tile;
+        } catch (RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            rendering.remove(key, own);
+        }
+    }
+
+    /**
+     * Queues the tiles in a margin around the visible ones. Queued tiles that
+     * have left the margin by the time a thread gets to them are dropped.
+     */
+    private void prefetch(int level, int firstTileX, int firstTileY, int lastTileX, int lastTileY) {
+        int margin = prefetchMargin;
+        if (prefetcher == null || margin <= 0) {
+            return;
+        }
+        int maxTileX = (getColumns(level) - 1) / tileSize;
+        int maxTileY = (getRows(level) - 1) / tileSize;
+        TileRange range = new TileRange(level, Math.max(0, firstTileX - margin), Math.max(0, firstTileY - margin),
+                Math.min(maxTileX, lastTileX + margin), Math.min(maxTileY, lastTileY + margin));
+        prefetchRange = range;
+
+        for (int tileY = range.fromY(); tileY <= range.toY(); tileY++) {
+            for (int tileX = range.fromX(); tileX <= range.toX(); tileX++) {
+                boolean visible = tileX >= firstTileX && tileX <= lastTileX && tileY >= firstTileY && tileY <= lastTileY;
+                TileKey key = new TileKey(level, tileX, tileY);
+                if (visible || tiles.containsKey(key) || !prefetchQueue.add(key)) {
+                    continue;
+                }
+                prefetcher.execute(() -> {
+                    prefetchQueue.remove(key);
+                    if (prefetchRange.contains(key) && !tiles.containsKey(key)) {
+                        try {
+                            getTile(key.level(), key.tileX(), key.tileY());
+                        } catch (RuntimeException e) {
+                            // the viewport that needs the tile renders it again and reports the failure
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    private Tile renderTile(TileKey key) {
+        LuminanceGrid grid;
+        try {
+            grid = tileGrid(key.level(), key.tileX(), key.tileY());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int columns = grid.getWidth() / scale;
+        int rows = grid.getHeight() / scale;
+
+        HanziArt tileArt = tileArt(seed + ((long) key.level() << 48 ^ (long) key.tileY() << 24 ^ key.tileX()) * TILE_SEED_GAMMA);
+        RowRenderer renderer = hanziBuilder.rowRenderer(tileArt, grid);
+        int[] codePoints = new int[rows * columns];
+        int[] row = new int[columns];
+        for (int y = 0; y < rows; y++) {
+            renderer.renderRow(y, row);
+            System.arraycopy(row, 0, codePoints, y * columns, columns);
+        }
+        renderedTiles.increment();
+        return new Tile(key.level(), key.tileX(), key.tileY(), rows, columns, codePoints);
+    }
+
+    /**
+     * Decodes the region of the image under one tile and resizes it to the
+     * tile's cells of its level. The whole level is subsampled with one step,
+     * so a region whose corner is a multiple of the step lines up with the
+     * pixels a decode of the whole level would have.
+     */
+    LuminanceGrid tileGrid(int level, int tileX, int tileY) throws IOException {
+        int gridWidth = getColumns(level) * scale;
+        int gridHeight = getRows(level) * scale;
+        int left = tileX * tileSize;
+        int top = tileY * tileSize;
+        Rectangle cells = new Rectangle(left * scale, top * scale,
+                Math.min(tileSize, getColumns(level) - left) * scale, Math.min(tileSize, getRows(level) - top) * scale);
+
+        int subsampling = ImageDecoder.subsampling(sourceWidth, gridWidth);
+        int decodedWidth = (sourceWidth + subsampling - 1) / subsampling;
+        int decodedHeight = (sourceHeight + subsampling - 1) / subsampling;
+        Rectangle region = LuminanceGrid.sourceRegion(decodedWidth, decodedHeight, gridWidth, gridHeight, cells);
+        BufferedImage part = source.readImage(new Rectangle(region.x * subsampling, region.y * subsampling,
+                region.width * subsampling, region.height * subsampling), subsampling);
+        return LuminanceGrid.fromImage(part, region.x, region.y, decodedWidth, decodedHeight, gridWidth, gridHeight, cells);
+    }
+
+    private HanziArt tileArt(long tileSeed) {
+        HanziArt tileArt = new HanziArt();
+        tileArt.setDictionary(dictionary);
+        tileArt.setBuildType(buildType);
+        tileArt.setMaxStrokeCount(maxStrokeCount);
+        tileArt.setBlockSize(blockSize);
+        tileArt.setDither(dither);
+        tileArt.setSeed(tileSeed);
+        return tileArt;
+    }
+
+    private int checkLevel(int level) {
+        if (level < 0 || level >= levelColumns.length) {
+            throw new IndexOutOfBoundsException("'" + level + "'" + " is an invalid level.");
+        }
+        return level;
+    }
+
+    /**
+     * Stops rendering ahead, dropping queued tiles, and waits for the ones already being rendered.
+     */
+    @Override
+    public void close() {
+        if (prefetcher == null) {
+            return;
+        }
+        prefetcher.shutdownNow();
+        try {
+            prefetcher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
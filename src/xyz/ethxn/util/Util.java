@@ -7,7 +7,13 @@ import java.awt.image.ColorConvertOp;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Util {
 
@@ -52,11 +58,11 @@ public class Util {
 
     /**
      * Returns the complexity of a number, based of character
-     * visual density. Used mostly in the HanziArt classes.
+     * visual density. Used for the corner features of nearest mode,
+     * density mode measures real glyphs instead.
      * @param number the number to check
      * @return the complexity of the number
      */
-    // todo: find a use for this class. unsure why it's unused...
     public static int getComplexity(int number) {
         return switch (number) {
             case 1 -> 10;
@@ -167,4 +173,44 @@ public class Util {
 
         return (pixel >> 16) & 0xFF;
     }
+
+    /**
+     * Returns an executor that starts a virtual thread per task where the
+     * runtime has them (Java 21+), or a cached pool of daemon threads otherwise.
+     * @param name the name prefix of the threads
+     * @return the executor
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String name) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // no virtual threads on this runtime
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Hashes the content of a stream with SHA-256.
+     * @param in the stream to hash, read to the end but left open
+     * @return the hash as lowercase hex
+     * @throws IOException if the stream can't be read
+     */
+    public static String sha256(InputStream in) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JVM has SHA-256
+        }
+        byte[] buffer = new byte[64 * 1024];
+        for (int read; (read = in.read(buffer)) != -1; ) {
+            digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
 }
@@ -0,0 +1,99 @@
+package xyz.ethxn;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Shared fixtures for the tests. The Unihan IRG sources file with the stroke
+ * counts isn't in the repository, so the stroke counts are made up: every
+ * unified ideograph gets one, spread over 1-25. The four corner codes come
+ * from the real dictionary-like data file.
+ */
+public final class TestDictionaries {
+
+    /** The dictionary-like data file, relative to the project root the tests run in. */
+    public static final String DICTIONARY_LIKE_DATA = "src/Unihan_DictionaryLikeData.txt";
+
+    private static Path strokesFile;
+    private static HanziDictionary dictionary;
+
+    private TestDictionaries() {}
+
+    /**
+     * @return a made up IRG sources file, written once per test run
+     */
+    public static synchronized Path strokesFile() {
+        if (strokesFile == null) {
+            StringBuilder lines = new StringBuilder();
+            for (int codePoint = 0x4E00; codePoint <= 0x9FA5; codePoint++) {
+                int strokes = 1 + Math.floorMod(codePoint * 31 + (codePoint >> 3), 25);
+                lines.append("U+").append(Integer.toHexString(codePoint).toUpperCase())
+                        .append("\tkTotalStrokes\t").append(strokes).append('\n');
+            }
+            try {
+                strokesFile = Files.createTempFile("Unihan_IRGSources", ".txt");
+                strokesFile.toFile().deleteOnExit();
+                Files.writeString(strokesFile, lines, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return strokesFile;
+    }
+
+    /**
+     * @return the paths to load the test dictionary from, as given to {@link HanziDictionary#load(String...)}
+     */
+    public static String[] txtPaths() {
+        return new String[]{DICTIONARY_LIKE_DATA, strokesFile().toString()};
+    }
+
+    /**
+     * @return the test dictionary, loaded once per test run
+     */
+    public static synchronized HanziDictionary dictionary() {
+        if (dictionary == null) {
+            try {
+                dictionary = HanziDictionary.load(txtPaths());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * @return an image of one flat color
+     */
+    public static BufferedImage flatImage(int width, int height, int gray) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(gray, gray, gray));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return image;
+    }
+
+    /**
+     * @return an image that goes from black at the left to white at the right, with a dark square in the middle
+     */
+    public static BufferedImage gradientImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int gray = x * 255 / Math.max(1, width - 1);
+                if (x > width / 3 && x < width * 2 / 3 && y > height / 3 && y < height * 2 / 3) {
+                    gray = 255 - gray;
+                }
+                image.setRGB(x, y, gray * 0x010101);
+            }
+        }
+        return image;
+    }
+}
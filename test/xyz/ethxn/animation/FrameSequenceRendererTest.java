@@ -0,0 +1,86 @@
+package xyz.ethxn.animation;
+
+import org.junit.jupiter.api.Test;
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.TestDictionaries;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameSequenceRendererTest {
+
+    private static HanziArt art() {
+        HanziArt hanziArt = new HanziArt();
+        hanziArt.setDictionary(TestDictionaries.dictionary());
+        hanziArt.setOutputWidth(30);
+        hanziArt.setDither(true);
+        return hanziArt;
+    }
+
+    @Test
+    void unseededArtStaysUnseeded() throws IOException {
+        HanziArt hanziArt = art();
+        new FrameSequenceRenderer(hanziArt).renderFrame(TestDictionaries.gradientImage(120, 80), new FrameSink() {});
+        assertFalse(hanziArt.isSeeded());
+        assertTrue(hanziArt.isDither());
+    }
+
+    @Test
+    void seededArtKeepsItsSeed() throws IOException {
+        HanziArt hanziArt = art();
+        hanziArt.setSeed(9);
+        FrameSequenceRenderer renderer = new FrameSequenceRenderer(hanziArt);
+        renderer.renderFrame(TestDictionaries.gradientImage(120, 80), new FrameSink() {});
+        renderer.renderFrame(TestDictionaries.flatImage(120, 80, 90), new FrameSink() {});
+        assertTrue(hanziArt.isSeeded());
+        assertEquals(9, hanziArt.getSeed());
+    }
+
+    /** A 4x4 block of grays, row major. */
+    private static BufferedImage block(int... grays) {
+        BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < grays.length; i++) {
+            image.setRGB(i % 4, i / 4, grays[i] * 0x010101);
+        }
+        return image;
+    }
+
+    private static int lastGlyph(HanziArt hanziArt, BufferedImage... frames) throws IOException {
+        FrameSequenceRenderer renderer = new FrameSequenceRenderer(hanziArt);
+        int[] glyph = new int[1];
+        FrameSink sink = new FrameSink() {
+            @Override
+            public void acceptFrame(int frame, int rows, int columns, int[] codePoints) {
+                glyph[0] = codePoints[0];
+            }
+        };
+        for (BufferedImage frame : frames) {
+            renderer.renderFrame(frame, sink);
+        }
+        return glyph[0];
+    }
+
+    @Test
+    void cellsAreComparedPixelByPixel() throws IOException {
+        HanziArt hanziArt = art();
+        hanziArt.setBuildType("nearest");
+        hanziArt.setBlockSize(4);
+        hanziArt.setOutputWidth(1);
+        hanziArt.setMaxStrokeCount(25);
+        hanziArt.setSeed(4);
+
+        // the stroke counts of these two blocks have the same base 31 hash, once it overflows
+        BufferedImage before = block(0, 0, 0, 0, 0, 0, 0, 0, 0, 22, 0, 0, 43, 75, 107, 75);
+        BufferedImage after = block(0, 0, 0, 0, 0, 0, 0, 0, 11, 0, 11, 43, 0, 0, 0, 0);
+        BufferedImage white = block(255, 255, 255, 255, 255, 255, 255, 255, 255, 255, 255, 255, 255, 255, 255, 255);
+
+        int rendered = lastGlyph(hanziArt, white, after);
+        assertNotEquals(lastGlyph(hanziArt, white, before), rendered);
+        assertEquals(rendered, lastGlyph(hanziArt, before, after));
+    }
+}
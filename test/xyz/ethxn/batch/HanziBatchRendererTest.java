@@ -0,0 +1,132 @@
+package xyz.ethxn.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.TestDictionaries;
+import xyz.ethxn.util.Util;
+
+import javax.imageio.ImageIO;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HanziBatchRendererTest {
+
+    private static HanziBatchRenderer renderer() {
+        return new HanziBatchRenderer(TestDictionaries.dictionary(), hanziArt -> {
+            hanziArt.setOutputWidth(40);
+            hanziArt.setSeed(3);
+        }, 2, 4);
+    }
+
+    private static Path png(Path dir, String name) throws IOException {
+        Path path = dir.resolve(name);
+        ImageIO.write(TestDictionaries.gradientImage(240, 160), "png", path.toFile());
+        return path;
+    }
+
+    @Test
+    void rendersTheSameArtAsABuild(@TempDir Path dir) throws Exception {
+        Path input = png(dir, "a.png");
+        BatchResult result;
+        try (HanziBatchRenderer renderer = renderer()) {
+            result = renderer.submit(input).get(1, TimeUnit.MINUTES);
+        }
+
+        HanziArt hanziArt = new HanziArt();
+        hanziArt.setDictionary(TestDictionaries.dictionary());
+        hanziArt.setImage(input);
+        hanziArt.setOutputWidth(40);
+        hanziArt.setSeed(3);
+        hanziArt.build();
+        assertEquals(hanziArt.getOutputArt().toString(), result.outputArt());
+        assertEquals(3, result.seed());
+    }
+
+    @Test
+    void listenerExceptionsAreReportedAsFailures(@TempDir Path dir) throws Exception {
+        List<Path> inputs = List.of(png(dir, "a.png"), png(dir, "b.png"));
+        Map<Path, Throwable> failures = new ConcurrentHashMap<>();
+        try (HanziBatchRenderer renderer = renderer()) {
+            renderer.renderAll(inputs.stream(), new BatchListener() {
+                @Override
+                public void rendered(BatchResult result) {
+                    throw new IllegalStateException("can't write " + result.input());
+                }
+
+                @Override
+                public void failed(Path input, Throwable error) {
+                    failures.put(input, error);
+                }
+            }).get(1, TimeUnit.MINUTES);
+        }
+        assertEquals(2, failures.size());
+        failures.values().forEach(error -> assertInstanceOf(IllegalStateException.class, error));
+    }
+
+    @Test
+    void failedListenersFailTheBatch(@TempDir Path dir) throws Exception {
+        Path broken = Files.write(dir.resolve("broken.png"), new byte[]{1, 2, 3});
+        try (HanziBatchRenderer renderer = renderer()) {
+            CompletableFuture<Void> done = renderer.renderAll(Stream.of(png(dir, "a.png"), broken), new BatchListener() {
+                @Override
+                public void rendered(BatchResult result) {}
+
+                @Override
+                public void failed(Path input, Throwable error) {
+                    throw new IllegalStateException("can't report " + input);
+                }
+            });
+            ExecutionException e = assertThrows(ExecutionException.class, () -> done.get(1, TimeUnit.MINUTES));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            assertTrue(e.getCause().getMessage().contains("broken.png"));
+        }
+    }
+
+    @Test
+    void inputsTheListenerCallsCurrentAreSkipped(@TempDir Path dir) throws Exception {
+        Path current = png(dir, "a.png");
+        Path stale = png(dir, "b.png");
+        String hash;
+        try (InputStream in = Files.newInputStream(current)) {
+            hash = Util.sha256(in);
+        }
+        Map<Path, String> rendered = new ConcurrentHashMap<>();
+        List<Path> unchanged = new CopyOnWriteArrayList<>();
+        try (HanziBatchRenderer renderer = renderer()) {
+            renderer.renderAll(Stream.of(current, stale), new BatchListener() {
+                @Override
+                public boolean isCurrent(Path input, String imageHash) {
+                    return imageHash.equals(hash) && input.equals(current);
+                }
+
+                @Override
+                public void unchanged(Path input) {
+                    unchanged.add(input);
+                }
+
+                @Override
+                public void rendered(BatchResult result) {
+                    rendered.put(result.input(), result.imageHash());
+                }
+            }).get(1, TimeUnit.MINUTES);
+        }
+        assertEquals(List.of(current), unchanged);
+        assertEquals(Map.of(stale, hash), rendered); // both files hold the same image
+    }
+}
@@ -0,0 +1,121 @@
+package xyz.ethxn.builder;
+
+import org.junit.jupiter.api.Test;
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.TestDictionaries;
+import xyz.ethxn.dictionary.GlyphIndex;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DithererTest {
+
+    @Test
+    void brightnessPastTheEndsDrawsTheNearestStrokeCount() {
+        assertEquals(1, HanziBuilder.strokeCount(-300, 25));
+        assertEquals(25, HanziBuilder.strokeCount(600, 25));
+    }
+
+    @Test
+    void blankCellsStandForBlack() {
+        assertEquals(0, Ditherer.strokeBrightness(1, 25));
+        assertEquals(255, Ditherer.strokeBrightness(25, 25));
+    }
+
+    @Test
+    void brightnessIsClampedBeforeTheErrorIsTaken() {
+        Ditherer ditherer = new Ditherer(3);
+        ditherer.startRow();
+        ditherer.diffuse(0, -300);
+        assertEquals(0, ditherer.apply(1, 10));
+    }
+
+    /**
+     * Black cells are drawn blank, as black as they can get, so they carry no
+     * error into the gray below them.
+     */
+    @Test
+    void saturatedRegionsDontSpillIntoTheirNeighbours() {
+        BufferedImage image = TestDictionaries.flatImage(400, 400, 128);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(0, 0, 400, 200);
+        graphics.dispose();
+
+        for (String buildType : new String[]{"fast", "complex"}) {
+            HanziArt hanziArt = new HanziArt();
+            hanziArt.setDictionary(TestDictionaries.dictionary());
+            hanziArt.setImage(image);
+            hanziArt.setOutputWidth(100);
+            hanziArt.setBuildType(buildType);
+            hanziArt.setSeed(1);
+            hanziArt.setDither(true);
+            hanziArt.build();
+
+            String[] rows = hanziArt.getOutputArt().toString().split("\n");
+            int blankCells = 0;
+            // the first few rows entirely below the edge
+            for (int y = rows.length / 2 + 1; y < rows.length / 2 + 4; y++) {
+                blankCells += (int) rows[y].codePoints().filter(codePoint -> codePoint == GlyphIndex.BLANK).count();
+            }
+            assertTrue(blankCells < 5, buildType + ": " + blankCells + " blank cells in mid gray");
+        }
+    }
+
+    @Test
+    void ditheredRenderersAreOrdered() throws IOException {
+        HanziArt hanziArt = new HanziArt();
+        hanziArt.setDictionary(TestDictionaries.dictionary());
+        hanziArt.setImage(TestDictionaries.flatImage(100, 100, 128));
+        hanziArt.setOutputWidth(20);
+        HanziBuilder hanziBuilder = new HanziBuilder();
+        assertFalse(hanziBuilder.rowRenderer(hanziArt, hanziBuilder.prepareGrid(hanziArt)).isOrdered());
+        hanziArt.setDither(true);
+        assertTrue(hanziBuilder.rowRenderer(hanziArt, hanziBuilder.prepareGrid(hanziArt)).isOrdered());
+    }
+
+    /**
+     * The average brightness the drawn stroke counts stand for should match the
+     * flat image, including near black and white where the error overshoots.
+     */
+    @Test
+    void ditheredFlatImagesKeepTheirAverageBrightness() {
+        GlyphIndex glyphIndex = TestDictionaries.dictionary().getGlyphIndex();
+        Map<Integer, Integer> strokeCounts = new HashMap<>();
+        for (int s = 1; s <= glyphIndex.getMaxStrokeCount(); s++) {
+            for (int i = 0; i < glyphIndex.bucketSize(s); i++) {
+                strokeCounts.put(glyphIndex.codePoint(s, i), s);
+            }
+        }
+
+        for (int gray : new int[]{3, 40, 128, 250}) {
+            HanziArt hanziArt = new HanziArt();
+            hanziArt.setDictionary(TestDictionaries.dictionary());
+            hanziArt.setImage(TestDictionaries.flatImage(400, 400, gray));
+            hanziArt.setOutputWidth(100);
+            hanziArt.setSeed(1);
+            hanziArt.setDither(true);
+            hanziArt.build();
+
+            long sum = 0;
+            int cells = 0;
+            for (int codePoint : hanziArt.getOutputArt().codePoints().toArray()) {
+                if (codePoint == '\n') {
+                    continue;
+                }
+                int strokeCount = codePoint == GlyphIndex.BLANK ? 1 : strokeCounts.get(codePoint);
+                sum += Ditherer.strokeBrightness(strokeCount, hanziArt.getMaxStrokeCount());
+                cells++;
+            }
+            assertEquals(gray, sum / (double) cells, 3, "gray " + gray);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package xyz.ethxn.builder;
+
+import org.junit.jupiter.api.Test;
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.TestDictionaries;
+import xyz.ethxn.image.LuminanceGrid;
+import xyz.ethxn.metrics.RenderListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HanziBuilderTest {
+
+    private static HanziArt art(String buildType, long seed) {
+        HanziArt hanziArt = new HanziArt();
+        hanziArt.setDictionary(TestDictionaries.dictionary());
+        hanziArt.setImage(TestDictionaries.gradientImage(240, 160));
+        hanziArt.setOutputWidth(60);
+        hanziArt.setBuildType(buildType);
+        hanziArt.setSeed(seed);
+        return hanziArt;
+    }
+
+    private static String build(HanziArt hanziArt) {
+        hanziArt.build();
+        return hanziArt.getOutputArt().toString();
+    }
+
+    @Test
+    void neighbouringRowStreamsAreUnrelated() {
+        int draws = 100;
+        int matches = 0;
+        for (int row = 0; row < 50; row++) {
+            SplittableRandom above = HanziBuilder.rowRandom(7, row);
+            SplittableRandom below = HanziBuilder.rowRandom(7, row + 1);
+            long[] aboveDraws = new long[draws + 1];
+            for (int i = 0; i <= draws; i++) {
+                aboveDraws[i] = above.nextLong();
+            }
+            for (int i = 0; i < draws; i++) {
+                if (below.nextLong() == aboveDraws[i + 1]) {
+                    matches++;
+                }
+            }
+        }
+        assertEquals(0, matches, "a row's stream is the row above it shifted by one draw");
+    }
+
+    @Test
+    void flatImageRowsAreNotShiftedCopies() {
+        HanziArt hanziArt = new HanziArt();
+        hanziArt.setDictionary(TestDictionaries.dictionary());
+        hanziArt.setImage(TestDictionaries.flatImage(200, 200, 128));
+        hanziArt.setOutputWidth(20);
+        hanziArt.setSeed(7);
+        String[] rows = build(hanziArt).split("\n");
+        assertTrue(rows.length > 10);
+
+        int shifted = 0;
+        for (int y = 0; y + 1 < rows.length; y++) {
+            int[] above = rows[y].codePoints().toArray();
+            int[] below = rows[y + 1].codePoints().toArray();
+            boolean same = true;
+            for (int x = 0; x + 1 < above.length && same; x++) {
+                same = below[x] == above[x + 1];
+            }
+            if (same) {
+                shifted++;
+            }
+        }
+        assertEquals(0, shifted, "rows are the row above shifted left by one glyph");
+    }
+
+    @Test
+    void seededBuildsAreReproducible() {
+        for (String buildType : new String[]{"fast", "complex", "nearest"}) {
+            assertEquals(build(art(buildType, 42)), build(art(buildType, 42)), buildType);
+            assertNotEquals(build(art(buildType, 42)), build(art(buildType, 43)), buildType);
+        }
+    }
+
+    @Test
+    void parallelBuildsMatchSerialBuilds() {
+        for (String buildType : new String[]{"fast", "complex", "nearest"}) {
+            HanziArt parallel = art(buildType, 42);
+            parallel.setParallel(true);
+            assertEquals(build(art(buildType, 42)), build(parallel), buildType);
+        }
+    }
+
+    @Test
+    void stripesMatchTheWholeRender() throws IOException {
+        HanziArt hanziArt = art("complex", 42);
+        HanziBuilder hanziBuilder = new HanziBuilder();
+        String whole = build(hanziArt);
+
+        // render the grid in stripes of 5 rows, each with its own renderer
+        LuminanceGrid grid = hanziBuilder.prepareGrid(hanziArt);
+        int scale = HanziBuilder.gridScale(hanziArt);
+        int rows = grid.getHeight() / scale;
+        StringBuilder stitched = new StringBuilder();
+        for (int from = 0; from < rows; from += 5) {
+            int to = Math.min(rows, from + 5);
+            RowRenderer renderer = hanziBuilder.rowRenderer(hanziArt,
+                    grid.crop(0, from * scale, grid.getWidth(), (to - from) * scale), from);
+            int[] row = new int[renderer.getColumns()];
+            for (int y = 0; y < renderer.getRows(); y++) {
+                renderer.renderRow(y, row);
+                for (int codePoint : row) {
+                    stitched.appendCodePoint(codePoint);
+                }
+                stitched.append('\n');
+            }
+        }
+        assertEquals(whole, stitched.toString());
+    }
+
+    @Test
+    void progressIsPrintedOncePerEmittedRow() {
+        HanziArt hanziArt = art("complex", 3);
+        hanziArt.setParallel(true);
+        List<Integer> emitted = new ArrayList<>();
+        hanziArt.setRenderListener(new RenderListener() {
+            @Override
+            public void rowEmitted(int row, int rows) {
+                emitted.add(row);
+            }
+        });
+
+        PrintStream console = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed, true, StandardCharsets.UTF_8));
+        try {
+            hanziArt.build(true);
+        } finally {
+            System.setOut(console);
+        }
+
+        String[] lines = printed.toString(StandardCharsets.UTF_8).split("\\R");
+        int rows = hanziArt.getOutputArt().toString().split("\n").length;
+        assertEquals(rows, lines.length);
+        assertEquals(rows, emitted.size());
+        for (int y = 0; y < rows; y++) {
+            assertEquals("...building row " + (y + 1) + " of " + rows, lines[y]);
+            assertEquals(y, emitted.get(y));
+        }
+    }
+}
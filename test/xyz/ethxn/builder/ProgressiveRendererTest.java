@@ -0,0 +1,84 @@
+package xyz.ethxn.builder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.TestDictionaries;
+import xyz.ethxn.metrics.RenderListener;
+import xyz.ethxn.metrics.RenderStats;
+
+import javax.imageio.ImageIO;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProgressiveRendererTest {
+
+    private static HanziArt art(Path dir) throws IOException {
+        Path image = dir.resolve("image.png");
+        ImageIO.write(TestDictionaries.gradientImage(1200, 800), "png", image.toFile());
+        HanziArt hanziArt = new HanziArt();
+        hanziArt.setDictionary(TestDictionaries.dictionary());
+        hanziArt.setImage(image);
+        hanziArt.setOutputWidth(60);
+        hanziArt.setBuildType("complex");
+        hanziArt.setSeed(8);
+        return hanziArt;
+    }
+
+    @Test
+    void passesGoFromCoarseToTheFullBuild(@TempDir Path dir) throws IOException {
+        HanziArt hanziArt = art(dir);
+        List<ProgressiveLevel> levels = new ArrayList<>();
+        List<String> modesSeen = new ArrayList<>();
+        hanziArt.renderProgressive(level -> {
+            levels.add(level);
+            modesSeen.add(hanziArt.getBuildType());
+        });
+
+        assertEquals(3, levels.size());
+        assertEquals("fast", levels.get(0).buildType());
+        assertEquals(15, levels.get(0).columns());
+        assertEquals(4, levels.get(0).cellScale());
+        assertFalse(levels.get(0).last());
+        assertEquals("fast", levels.get(1).buildType());
+        assertEquals(60, levels.get(1).columns());
+        assertEquals("complex", levels.get(2).buildType());
+        assertTrue(levels.get(2).last());
+
+        // the options of the art are never swapped out, not even while a pass is handed over
+        assertEquals(List.of("complex", "complex", "complex"), modesSeen);
+        hanziArt.build();
+        assertEquals(hanziArt.getOutputArt().toString(), levels.get(2).toText());
+    }
+
+    @Test
+    void statsNameTheBuildTypeOfEachPass(@TempDir Path dir) throws IOException {
+        HanziArt hanziArt = art(dir);
+        List<String> buildTypes = new ArrayList<>();
+        hanziArt.setRenderListener(new RenderListener() {
+            @Override
+            public void renderCompleted(RenderStats stats) {
+                buildTypes.add(stats.buildType());
+            }
+        });
+        hanziArt.renderProgressive(level -> {});
+        assertEquals(List.of("fast", "fast", "complex"), buildTypes);
+    }
+
+    @Test
+    void aCoarseFactorOfOneSkipsTheCoarsePass(@TempDir Path dir) throws IOException {
+        HanziArt hanziArt = art(dir);
+        ProgressiveRenderer renderer = new ProgressiveRenderer();
+        renderer.setCoarseFactor(1);
+        List<ProgressiveLevel> levels = new ArrayList<>();
+        renderer.render(hanziArt, levels::add);
+        assertEquals(2, levels.size());
+        assertEquals(60, levels.get(0).columns());
+    }
+}
@@ -0,0 +1,119 @@
+package xyz.ethxn.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.TestDictionaries;
+import xyz.ethxn.output.AppendableRowSink;
+
+import javax.imageio.ImageIO;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class RenderCacheTest {
+
+    private final RenderCache cache = new RenderCache(64L << 20, 16L << 20);
+
+    private HanziArt art(Path image) {
+        HanziArt hanziArt = new HanziArt();
+        hanziArt.setDictionary(TestDictionaries.dictionary());
+        hanziArt.setImage(image);
+        hanziArt.setOutputWidth(40);
+        hanziArt.setSeed(5);
+        hanziArt.setCache(cache);
+        return hanziArt;
+    }
+
+    private static String render(HanziArt hanziArt) throws IOException {
+        StringBuilder art = new StringBuilder();
+        hanziArt.render(new AppendableRowSink(art));
+        return art.toString();
+    }
+
+    private static Path png(Path dir, int gray) throws IOException {
+        Path path = dir.resolve("image.png");
+        ImageIO.write(gray < 0 ? TestDictionaries.gradientImage(240, 160) : TestDictionaries.flatImage(240, 160, gray),
+                "png", path.toFile());
+        return path;
+    }
+
+    @Test
+    void repeatedSeededRendersAreReplayed(@TempDir Path dir) throws IOException {
+        Path image = png(dir, -1);
+        String first = render(art(image));
+        String second = render(art(image));
+
+        assertEquals(first, second);
+        assertEquals(1, cache.getArtCache().getHitCount());
+        assertEquals(1, cache.getGridCache().getMissCount()); // the second render never got to the grid
+
+        HanziArt uncached = art(image);
+        uncached.setCache(null);
+        assertEquals(render(uncached), first);
+    }
+
+    @Test
+    void changedOptionsReuseTheGrid(@TempDir Path dir) throws IOException {
+        Path image = png(dir, -1);
+        String full = render(art(image));
+        HanziArt fewerStrokes = art(image);
+        fewerStrokes.setMaxStrokeCount(10);
+        String reduced = render(fewerStrokes);
+
+        assertNotEquals(full, reduced);
+        assertEquals(0, cache.getArtCache().getHitCount());
+        assertEquals(1, cache.getGridCache().getHitCount());
+    }
+
+    @Test
+    void filesChangedUnderTheSameArtAreRenderedAgain(@TempDir Path dir) throws IOException {
+        HanziArt hanziArt = art(png(dir, -1));
+        String gradient = render(hanziArt);
+        png(dir, 200);
+        String flat = render(hanziArt);
+
+        assertNotEquals(gradient, flat);
+        assertEquals(0, cache.getArtCache().getHitCount());
+        HanziArt uncached = art(dir.resolve("image.png"));
+        uncached.setCache(null);
+        assertEquals(render(uncached), flat);
+    }
+
+    @Test
+    void changedImagesAreRenderedAgain(@TempDir Path dir) throws IOException {
+        String gradient = render(art(png(dir, -1)));
+        // the same path with new content hashes differently
+        String flat = render(art(png(dir, 200)));
+
+        assertNotEquals(gradient, flat);
+        assertEquals(0, cache.getArtCache().getHitCount());
+        assertEquals(0, cache.getGridCache().getHitCount());
+        assertEquals(2, cache.getGridCache().size());
+    }
+
+    @Test
+    void unseededArtIsNotCached(@TempDir Path dir) throws IOException {
+        Path image = png(dir, -1);
+        HanziArt unseeded = art(image);
+        unseeded.clearSeed();
+        render(unseeded);
+        render(unseeded);
+
+        assertEquals(0, cache.getArtCache().size());
+        assertEquals(1, cache.getGridCache().getHitCount());
+    }
+
+    @Test
+    void bufferedImagesBypassTheCache() throws IOException {
+        HanziArt hanziArt = art(null);
+        hanziArt.setImage(TestDictionaries.gradientImage(240, 160));
+        render(hanziArt);
+        render(hanziArt);
+
+        assertEquals(0, cache.getGridCache().size());
+        assertEquals(0, cache.getArtCache().size());
+    }
+}
@@ -0,0 +1,59 @@
+package xyz.ethxn.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RenderManifestTest {
+
+    @Test
+    void imagesRenderedWithTheSameContentAndOptionsAreCurrent(@TempDir Path dir) throws Exception {
+        RenderManifest manifest = new RenderManifest(dir.resolve("manifest.properties"));
+        Path input = dir.resolve("a.png");
+        assertFalse(manifest.isCurrent(input, "abc", "width=100"));
+
+        manifest.put(input, "abc", "width=100");
+        assertTrue(manifest.isCurrent(input, "abc", "width=100"));
+        assertTrue(manifest.isCurrent(dir.resolve("x/../a.png"), "abc", "width=100"));
+        assertFalse(manifest.isCurrent(dir.resolve("b.png"), "abc", "width=100"));
+    }
+
+    @Test
+    void changedContentOrOptionsInvalidateAnImage(@TempDir Path dir) throws Exception {
+        RenderManifest manifest = new RenderManifest(dir.resolve("manifest.properties"));
+        Path input = dir.resolve("a.png");
+        manifest.put(input, "abc", "width=100");
+        assertFalse(manifest.isCurrent(input, "abd", "width=100"));
+        assertFalse(manifest.isCurrent(input, "abc", "width=120"));
+
+        manifest.put(input, "abd", "width=100");
+        assertTrue(manifest.isCurrent(input, "abd", "width=100"));
+        assertFalse(manifest.isCurrent(input, "abc", "width=100"));
+    }
+
+    @Test
+    void savedEntriesAreLoadedByTheNextRun(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("manifest.properties");
+        Path input = dir.resolve("a b=c.png");
+        RenderManifest manifest = new RenderManifest(file);
+        manifest.put(input, "abc", "width=100 seed=3");
+        manifest.save();
+        assertFalse(Files.exists(dir.resolve("manifest.properties.tmp")));
+
+        RenderManifest loaded = new RenderManifest(file);
+        assertTrue(loaded.isCurrent(input, "abc", "width=100 seed=3"));
+        assertFalse(loaded.isCurrent(input, "abc", "width=100"));
+    }
+
+    @Test
+    void unchangedManifestsArentWritten(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("manifest.properties");
+        new RenderManifest(file).save();
+        assertFalse(Files.exists(file));
+    }
+}
@@ -0,0 +1,80 @@
+package xyz.ethxn.dictionary;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.ethxn.TestDictionaries;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DictionarySnapshotTest {
+
+    private static void assertSameIndex(GlyphIndex expected, GlyphIndex actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.getMaxStrokeCount(), actual.getMaxStrokeCount());
+        for (int s = 0; s <= expected.getMaxStrokeCount(); s++) {
+            assertEquals(expected.bucketSize(s), actual.bucketSize(s));
+            for (int i = 0; i < expected.bucketSize(s); i++) {
+                assertEquals(expected.codePoint(s, i), actual.codePoint(s, i));
+                assertEquals(expected.fourCornerCode(s, i), actual.fourCornerCode(s, i));
+                assertEquals(expected.brightestCorner(s, i), actual.brightestCorner(s, i));
+            }
+            for (int corner = 0; corner < 4; corner++) {
+                assertEquals(expected.cornerBucketSize(s, corner), actual.cornerBucketSize(s, corner));
+                for (int i = 0; i < expected.cornerBucketSize(s, corner); i++) {
+                    assertEquals(expected.cornerCodePoint(s, corner, i), actual.cornerCodePoint(s, corner, i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void snapshotsRoundTrip(@TempDir Path dir) throws IOException {
+        GlyphIndex glyphIndex = TestDictionaries.dictionary().getGlyphIndex();
+        Path snapshot = dir.resolve("hanzi.snapshot");
+        DictionarySnapshot.write(glyphIndex, snapshot);
+
+        assertSameIndex(glyphIndex, DictionarySnapshot.load(snapshot));
+        try (InputStream in = Files.newInputStream(snapshot)) {
+            assertSameIndex(glyphIndex, DictionarySnapshot.load(in));
+        }
+    }
+
+    @Test
+    void mappedSnapshotsAreReadInPlace(@TempDir Path dir) throws IOException {
+        Path snapshot = dir.resolve("hanzi.snapshot");
+        DictionarySnapshot.write(TestDictionaries.dictionary().getGlyphIndex(), snapshot);
+        GlyphIndex glyphIndex = DictionarySnapshot.load(snapshot);
+
+        // views of the mapping, not copies on the heap
+        assertTrue(glyphIndex.codePoints.isDirect());
+        assertTrue(glyphIndex.cornerCodePoints.isDirect());
+        assertTrue(glyphIndex.fourCornerCodes.isDirect());
+        assertTrue(glyphIndex.brightestCorners.isDirect());
+    }
+
+    @Test
+    void corruptedSnapshotsAreRejected(@TempDir Path dir) throws IOException {
+        Path snapshot = dir.resolve("hanzi.snapshot");
+        DictionarySnapshot.write(TestDictionaries.dictionary().getGlyphIndex(), snapshot);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(snapshot, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> DictionarySnapshot.load(snapshot));
+        assertEquals("snapshot checksum mismatch", e.getMessage());
+    }
+
+    @Test
+    void otherFilesAreRejected(@TempDir Path dir) throws IOException {
+        Path notASnapshot = Files.writeString(dir.resolve("hanzi.snapshot"), "U+4E00\tkTotalStrokes\t1\n");
+        assertThrows(IOException.class, () -> DictionarySnapshot.load(notASnapshot));
+        assertThrows(IOException.class, () -> DictionarySnapshot.load(Files.createFile(dir.resolve("empty"))));
+    }
+}
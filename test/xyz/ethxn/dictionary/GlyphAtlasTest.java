@@ -0,0 +1,115 @@
+package xyz.ethxn.dictionary;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.HanziDictionary;
+import xyz.ethxn.TestDictionaries;
+
+import java.awt.Font;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GlyphAtlasTest {
+
+    private static final int CELL = 12;
+    private static final Font FONT = new Font(Font.DIALOG, Font.PLAIN, 1);
+
+    // the build machine may have no CJK font, so draw glyphs any font can draw, two to a stroke count
+    private static final int[] CODE_POINTS = "ilWM#@".codePoints().toArray();
+    private static GlyphIndex glyphIndex;
+
+    @BeforeAll
+    static void index() {
+        System.setProperty("java.awt.headless", "true");
+        glyphIndex = GlyphIndex.of(CODE_POINTS, new int[]{0, 0, 2, 4, 6},
+                new short[CODE_POINTS.length], new byte[CODE_POINTS.length]);
+    }
+
+    private static byte[] tile(GlyphAtlas atlas, int codePoint) {
+        byte[] tile = new byte[CELL * CELL];
+        atlas.copyTile(codePoint, tile, 0, CELL);
+        return tile;
+    }
+
+    @Test
+    void everyGlyphGetsItsOwnTile() {
+        GlyphAtlas atlas = GlyphAtlas.rasterize(glyphIndex, FONT, CELL);
+        assertEquals(CODE_POINTS.length + 1, atlas.size());
+        assertEquals(3, atlas.getMaxStrokeCount());
+        assertEquals(0, atlas.slot(GlyphIndex.BLANK));
+
+        boolean[] used = new boolean[atlas.size()];
+        for (int codePoint : CODE_POINTS) {
+            int slot = atlas.slot(codePoint);
+            assertTrue(slot > 0, "no tile for " + Character.toString(codePoint));
+            assertFalse(used[slot]);
+            used[slot] = true;
+        }
+        assertNotEquals(0, sum(tile(atlas, 'W')));
+        assertTrue(sum(tile(atlas, 'W')) > sum(tile(atlas, 'i')), "W has more ink than i");
+        assertEquals(0, sum(tile(atlas, GlyphIndex.BLANK)));
+    }
+
+    @Test
+    void tilesAreCopiedIntoTheRaster() {
+        GlyphAtlas atlas = GlyphAtlas.rasterize(glyphIndex, FONT, CELL);
+        int stride = CELL * 3;
+        byte[] raster = new byte[stride * CELL];
+        atlas.copyTile('M', raster, CELL, stride);
+
+        byte[] copied = new byte[CELL * CELL];
+        for (int y = 0; y < CELL; y++) {
+            System.arraycopy(raster, y * stride + CELL, copied, y * CELL, CELL);
+        }
+        assertArrayEquals(tile(atlas, 'M'), copied);
+        assertEquals(sum(tile(atlas, 'M')), sum(raster));
+    }
+
+    @Test
+    void glyphsPastTheMaxStrokeCountComeOutBlank() {
+        GlyphAtlas atlas = GlyphAtlas.rasterize(glyphIndex, FONT, CELL, 2, 255, 0);
+        assertEquals(2, atlas.getMaxStrokeCount());
+        assertTrue(atlas.slot('l') > 0);
+        assertEquals(0, atlas.slot('#'));
+        assertEquals(0, atlas.slot('x'));
+    }
+
+    @Test
+    void rendersThatCanPickUndrawnGlyphsFailFast() throws IOException {
+        HanziDictionary dictionary = TestDictionaries.dictionary();
+        GlyphIndex index = dictionary.getGlyphIndex();
+        HanziArt hanziArt = new HanziArt();
+        hanziArt.setDictionary(dictionary.withGlyphAtlas(GlyphAtlas.rasterize(index, FONT, 4, 5, 255, 0)));
+        hanziArt.setImage(TestDictionaries.gradientImage(80, 40));
+        hanziArt.setOutputWidth(10);
+        hanziArt.setSeed(1);
+
+        hanziArt.setMaxStrokeCount(5);
+        BufferedImage image = hanziArt.buildImage();
+        assertEquals(40, image.getWidth());
+
+        hanziArt.setMaxStrokeCount(6);
+        assertThrows(IllegalStateException.class, hanziArt::buildImage);
+
+        hanziArt.setMaxStrokeCount(5);
+        hanziArt.setBuildType("nearest");
+        IllegalStateException e = assertThrows(IllegalStateException.class, hanziArt::buildImage);
+        assertTrue(e.getMessage().contains("up to 5 strokes"), e.getMessage());
+    }
+
+    private static long sum(byte[] pixels) {
+        long sum = 0;
+        for (byte pixel : pixels) {
+            sum += pixel & 0xFF;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,108 @@
+package xyz.ethxn.dictionary;
+
+import org.junit.jupiter.api.Test;
+import xyz.ethxn.TestDictionaries;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GlyphIndexTest {
+
+    private static UnihanData unihanData() throws IOException {
+        return UnihanLoader.load(TestDictionaries.txtPaths());
+    }
+
+    @Test
+    void bucketsHoldEveryRenderableGlyphByStrokeCount() throws IOException {
+        UnihanData unihanData = unihanData();
+        GlyphIndex glyphIndex = GlyphIndex.fromUnihanData(unihanData);
+
+        int expected = 0;
+        for (int codePoint = 0; codePoint <= 0xFFFF; codePoint++) {
+            if (unihanData.getTotalStrokes(codePoint) >= 1 && GlyphIndex.isRenderable(codePoint)) {
+                expected++;
+            }
+        }
+        assertEquals(expected, glyphIndex.size());
+
+        int total = 0;
+        for (int s = 0; s <= glyphIndex.getMaxStrokeCount(); s++) {
+            int previous = -1;
+            for (int i = 0; i < glyphIndex.bucketSize(s); i++) {
+                int codePoint = glyphIndex.codePoint(s, i);
+                assertEquals(s, unihanData.getTotalStrokes(codePoint));
+                assertEquals(unihanData.getFourCornerCode(codePoint), glyphIndex.fourCornerCode(s, i));
+                assertTrue(codePoint > previous, "buckets are in code point order");
+                previous = codePoint;
+            }
+            total += glyphIndex.bucketSize(s);
+        }
+        assertEquals(glyphIndex.size(), total);
+    }
+
+    @Test
+    void cornerBucketsHoldTheGlyphsWithThatBrightestCorner() throws IOException {
+        GlyphIndex glyphIndex = GlyphIndex.fromUnihanData(unihanData());
+        for (int s = 1; s <= glyphIndex.getMaxStrokeCount(); s++) {
+            for (int corner = 0; corner < 4; corner++) {
+                int expected = 0;
+                for (int i = 0; i < glyphIndex.bucketSize(s); i++) {
+                    int brightest = glyphIndex.brightestCorner(s, i);
+                    if (brightest == corner || brightest == GlyphIndex.ANY_CORNER) {
+                        expected++;
+                    }
+                }
+                assertEquals(expected, glyphIndex.cornerBucketSize(s, corner));
+                for (int i = 0; i < glyphIndex.cornerBucketSize(s, corner); i++) {
+                    int fourCornerCode = fourCornerCodeOf(glyphIndex, s, glyphIndex.cornerCodePoint(s, corner, i));
+                    int brightest = GlyphIndex.brightestCornerOf(fourCornerCode);
+                    assertTrue(brightest == corner || brightest == GlyphIndex.ANY_CORNER);
+                }
+            }
+        }
+    }
+
+    private static int fourCornerCodeOf(GlyphIndex glyphIndex, int strokeCount, int codePoint) {
+        for (int i = 0; i < glyphIndex.bucketSize(strokeCount); i++) {
+            if (glyphIndex.codePoint(strokeCount, i) == codePoint) {
+                return glyphIndex.fourCornerCode(strokeCount, i);
+            }
+        }
+        throw new AssertionError(Integer.toHexString(codePoint) + " isn't in bucket " + strokeCount);
+    }
+
+    @Test
+    void brightestCornerTiesGoToTheFirstCorner() {
+        assertEquals(0, GlyphIndex.brightestCornerOf(9000));
+        assertEquals(3, GlyphIndex.brightestCornerOf(1239));
+        assertEquals(1, GlyphIndex.brightestCornerOf(1771));
+        assertEquals(GlyphIndex.ANY_CORNER, GlyphIndex.brightestCornerOf(0));
+        assertEquals(GlyphIndex.NO_CORNER, GlyphIndex.brightestCornerOf(UnihanData.NO_VALUE));
+    }
+
+    @Test
+    void randomGlyphsComeFromTheirBucket() throws IOException {
+        GlyphIndex glyphIndex = GlyphIndex.fromUnihanData(unihanData());
+        UnihanData unihanData = unihanData();
+        SplittableRandom random = new SplittableRandom(1);
+        assertEquals(GlyphIndex.BLANK, glyphIndex.randomCodePoint(1, random));
+        assertEquals(GlyphIndex.BLANK, glyphIndex.randomCodePoint(0, random));
+        for (int s = 2; s <= glyphIndex.getMaxStrokeCount(); s++) {
+            for (int n = 0; n < 20; n++) {
+                assertEquals(s, unihanData.getTotalStrokes(glyphIndex.randomCodePoint(s, random)));
+            }
+        }
+    }
+
+    @Test
+    void compatibilityAndPrivateUseCharactersAreNotRenderable() {
+        assertTrue(GlyphIndex.isRenderable(0x4E00));
+        assertFalse(GlyphIndex.isRenderable(0xF900));
+        assertFalse(GlyphIndex.isRenderable(0x4E0F));
+        assertFalse(GlyphIndex.isRenderable(0x20000));
+    }
+}
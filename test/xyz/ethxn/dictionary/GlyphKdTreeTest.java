@@ -0,0 +1,72 @@
+package xyz.ethxn.dictionary;
+
+import org.junit.jupiter.api.Test;
+import xyz.ethxn.TestDictionaries;
+import xyz.ethxn.util.Util;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GlyphKdTreeTest {
+
+    private static float distance(int strokeCount, int fourCornerCode, float[] target) {
+        float diff = strokeCount * GlyphKdTree.STROKE_WEIGHT - target[0] * GlyphKdTree.STROKE_WEIGHT;
+        float distance = diff * diff;
+        int d = 1;
+        for (int divisor = 1000; divisor > 0; divisor /= 10, d++) {
+            diff = Util.getComplexity((fourCornerCode / divisor) % 10) - target[d];
+            distance += diff * diff;
+        }
+        return distance;
+    }
+
+    @Test
+    void nearestMatchesBruteForce() throws IOException {
+        UnihanData unihanData = UnihanLoader.load(TestDictionaries.txtPaths());
+        GlyphIndex glyphIndex = GlyphIndex.fromUnihanData(unihanData);
+        GlyphKdTree tree = GlyphKdTree.fromGlyphIndex(glyphIndex);
+        GlyphKdTree.Query query = tree.newQuery(new SplittableRandom(3));
+        SplittableRandom random = new SplittableRandom(11);
+
+        float[] target = new float[GlyphKdTree.DIMENSIONS];
+        for (int n = 0; n < 500; n++) {
+            target[0] = 1 + random.nextInt(glyphIndex.getMaxStrokeCount() + 5);
+            for (int d = 1; d < GlyphKdTree.DIMENSIONS; d++) {
+                target[d] = 1 + random.nextInt(10) + (float) random.nextDouble();
+            }
+
+            float best = Float.MAX_VALUE;
+            for (int s = 0; s <= glyphIndex.getMaxStrokeCount(); s++) {
+                for (int i = 0; i < glyphIndex.bucketSize(s); i++) {
+                    int fourCornerCode = glyphIndex.fourCornerCode(s, i);
+                    if (fourCornerCode != UnihanData.NO_VALUE) {
+                        best = Math.min(best, distance(s, fourCornerCode, target));
+                    }
+                }
+            }
+
+            int codePoint = query.nearest(target[0], target[1], target[2], target[3], target[4]);
+            float found = distance(unihanData.getTotalStrokes(codePoint), unihanData.getFourCornerCode(codePoint), target);
+            assertEquals(best, found, 1e-3f, "query " + n);
+        }
+    }
+
+    @Test
+    void identicalVectorsShareANode() throws IOException {
+        GlyphIndex glyphIndex = GlyphIndex.fromUnihanData(UnihanLoader.load(TestDictionaries.txtPaths()));
+        GlyphKdTree tree = GlyphKdTree.fromGlyphIndex(glyphIndex);
+        assertTrue(tree.size() > 0);
+        assertTrue(tree.size() < glyphIndex.size());
+    }
+
+    @Test
+    void emptyTreesReturnBlank() {
+        GlyphIndex empty = GlyphIndex.of(new int[0], new int[]{0, 0}, new short[0], new byte[0]);
+        GlyphKdTree tree = GlyphKdTree.fromGlyphIndex(empty);
+        assertEquals(0, tree.size());
+        assertEquals(GlyphIndex.BLANK, tree.newQuery(new SplittableRandom()).nearest(3, 5, 5, 5, 5));
+    }
+}
@@ -0,0 +1,104 @@
+package xyz.ethxn.dictionary;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.Font;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InkDensityTableTest {
+
+    private static GlyphIndex glyphIndex;
+    private static InkDensityTable table;
+
+    @BeforeAll
+    static void calibrate() {
+        System.setProperty("java.awt.headless", "true");
+        // the build machine may have no CJK font, so measure glyphs any font can draw
+        int[] codePoints = ".:-=+*#%@oO0ilIWM".codePoints().toArray();
+        glyphIndex = GlyphIndex.of(codePoints, new int[]{0, codePoints.length, codePoints.length},
+                new short[codePoints.length], new byte[codePoints.length]);
+        table = InkDensityTable.calibrate(glyphIndex, new Font(Font.DIALOG, Font.PLAIN, 1), 16);
+    }
+
+    @Test
+    void levelsSpanTheWholeRange() {
+        assertTrue(table.size() > 1, "no glyph could be drawn");
+        assertEquals(0, table.level(0));
+        assertEquals(255, table.level(255));
+        assertEquals(GlyphIndex.BLANK, table.randomCodePoint(0, new SplittableRandom(1)));
+    }
+
+    @Test
+    void luminanceGetsTheNearestLevelWithGlyphs() {
+        Set<Integer> drawn = new HashSet<>();
+        for (int luminance = 0; luminance < 256; luminance++) {
+            drawn.add(table.level(luminance));
+        }
+        for (int luminance = 0; luminance < 256; luminance++) {
+            int distance = Math.abs(table.level(luminance) - luminance);
+            for (int level : drawn) {
+                assertTrue(Math.abs(level - luminance) >= distance, "luminance " + luminance);
+            }
+        }
+    }
+
+    @Test
+    void picksComeFromTheMeasuredGlyphs() {
+        Set<Integer> measured = new HashSet<>();
+        measured.add(GlyphIndex.BLANK);
+        for (int i = 0; i < glyphIndex.size(); i++) {
+            measured.add(glyphIndex.codePoints.get(i));
+        }
+        SplittableRandom random = new SplittableRandom(5);
+        for (int luminance = 0; luminance < 256; luminance++) {
+            assertTrue(measured.contains(table.randomCodePoint(luminance, random)));
+        }
+    }
+
+    @Test
+    void tablesRoundTrip(@TempDir Path dir) throws IOException {
+        Path path = dir.resolve("hanzi.ink");
+        table.write(path);
+        InkDensityTable loaded = InkDensityTable.load(path);
+
+        assertEquals(table.size(), loaded.size());
+        assertEquals(table.getFontName(), loaded.getFontName());
+        assertEquals(table.getCellSize(), loaded.getCellSize());
+        for (int luminance = 0; luminance < 256; luminance++) {
+            assertEquals(table.level(luminance), loaded.level(luminance));
+            assertEquals(table.randomCodePoint(luminance, new SplittableRandom(luminance)),
+                    loaded.randomCodePoint(luminance, new SplittableRandom(luminance)));
+        }
+    }
+
+    @Test
+    void corruptedTablesAreRejected(@TempDir Path dir) throws IOException {
+        Path path = dir.resolve("hanzi.ink");
+        table.write(path);
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 6] ^= 1;
+        Files.write(path, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> InkDensityTable.load(path));
+        assertEquals("ink density table checksum mismatch", e.getMessage());
+    }
+
+    @Test
+    void otherFilesAreRejected(@TempDir Path dir) throws IOException {
+        Path path = dir.resolve("not.ink");
+        Files.write(path, ByteBuffer.allocate(64).putInt(42).array());
+        assertThrows(IOException.class, () -> InkDensityTable.load(path));
+    }
+}
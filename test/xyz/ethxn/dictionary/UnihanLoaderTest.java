@@ -0,0 +1,80 @@
+package xyz.ethxn.dictionary;
+
+import org.junit.jupiter.api.Test;
+import xyz.ethxn.TestDictionaries;
+import xyz.ethxn.util.Util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UnihanLoaderTest {
+
+    @Test
+    void strokeCountsMatchTheLineByLineParser() throws IOException {
+        String strokesFile = TestDictionaries.strokesFile().toString();
+        Map<String, String> expected = Util.hashMapFromTXT("kTotalStrokes", strokesFile);
+        UnihanData data = UnihanLoader.load(strokesFile);
+
+        assertEquals(0x9FA5 - 0x4E00 + 1, expected.size());
+        int found = 0;
+        for (int codePoint = 0; codePoint < UnihanData.CODE_POINT_LIMIT; codePoint++) {
+            String value = expected.get(String.format("U+%04X", codePoint));
+            if (value == null) {
+                assertEquals(UnihanData.NO_VALUE, data.getTotalStrokes(codePoint));
+            } else {
+                assertEquals(Integer.parseInt(value), data.getTotalStrokes(codePoint), value);
+                found++;
+            }
+        }
+        assertEquals(expected.size(), found);
+    }
+
+    @Test
+    void fourCornerCodesMatchTheLineByLineParser() throws IOException {
+        Map<String, String> expected = Util.hashMapFromTXT("kFourCornerCode", TestDictionaries.DICTIONARY_LIKE_DATA);
+        UnihanData data = UnihanLoader.load(TestDictionaries.DICTIONARY_LIKE_DATA);
+
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            int codePoint = Integer.parseInt(entry.getKey().substring(2), 16);
+            // the primary value, without the fifth digit
+            int code = Integer.parseInt(entry.getValue().substring(0, 4));
+            assertEquals(code, data.getFourCornerCode(codePoint), entry.getKey());
+        }
+    }
+
+    @Test
+    void loadsPropertiesSpreadOverSeveralFiles() throws IOException {
+        UnihanData data = UnihanLoader.load(TestDictionaries.txtPaths());
+        assertEquals(1 + Math.floorMod(0x4E00 * 31 + (0x4E00 >> 3), 25), data.getTotalStrokes(0x4E00));
+        assertEquals(1000, data.getFourCornerCode(0x4E00));
+    }
+
+    @Test
+    void parsesOddlyFormattedLines() {
+        String text = """
+                # comment\tkTotalStrokes\t9
+                U+4E01\tkTotalStrokes\t2 3
+                U+4E02\tkTotalStrokes\t4\r
+                U+20000\tkTotalStrokes\t7
+                U+4E03\tkFourCornerCode\t4071.0 4073.0
+                U+4E04\tkFourCornerCode\t12
+                U+4E05\tkSomethingElse\t5
+
+                U+4E06\tkTotalStrokes\t""" + "\t\nU+4E07\tkTotalStrokes\t11";
+        UnihanData data = new UnihanData();
+        UnihanLoader.parse(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), data);
+
+        assertEquals(2, data.getTotalStrokes(0x4E01));
+        assertEquals(4, data.getTotalStrokes(0x4E02));
+        assertEquals(7, data.getTotalStrokes(0x20000));
+        assertEquals(4071, data.getFourCornerCode(0x4E03));
+        assertEquals(UnihanData.NO_VALUE, data.getFourCornerCode(0x4E04));
+        assertEquals(UnihanData.NO_VALUE, data.getTotalStrokes(0x4E05));
+        assertEquals(UnihanData.NO_VALUE, data.getTotalStrokes(0x4E06));
+        assertEquals(11, data.getTotalStrokes(0x4E07)); // no newline at the end
+    }
+}
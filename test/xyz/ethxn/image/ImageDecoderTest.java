@@ -0,0 +1,105 @@
+package xyz.ethxn.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.ethxn.TestDictionaries;
+
+import javax.imageio.ImageIO;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageDecoderTest {
+
+    private static Path png(Path dir, BufferedImage image) throws IOException {
+        Path path = dir.resolve("image.png");
+        ImageIO.write(image, "png", path.toFile());
+        return path;
+    }
+
+    @Test
+    void subsamplingKeepsTwoSourcePixelsPerGridPixel() {
+        assertEquals(1, ImageDecoder.subsampling(100, 80));
+        assertEquals(1, ImageDecoder.subsampling(300, 80));
+        assertEquals(6, ImageDecoder.subsampling(1000, 80));
+        assertEquals(500, ImageDecoder.subsampling(1000, 1));
+    }
+
+    @Test
+    void decodesOnlyTheResolutionNeeded(@TempDir Path dir) throws IOException {
+        Path path = png(dir, TestDictionaries.gradientImage(1200, 600));
+        BufferedImage image = ImageDecoder.decode(path, 100, null);
+
+        // every 6th pixel of every 6th row
+        assertEquals(200, image.getWidth());
+        assertEquals(100, image.getHeight());
+        BufferedImage full = ImageIO.read(path.toFile());
+        assertEquals(full.getRGB(60, 30), image.getRGB(10, 5));
+    }
+
+    @Test
+    void decodesOnlyTheRegionNeeded(@TempDir Path dir) throws IOException {
+        BufferedImage source = TestDictionaries.gradientImage(400, 300);
+        Path path = png(dir, source);
+        BufferedImage region = ImageDecoder.decode(path, 1000, new Rectangle(50, 40, 120, 90));
+
+        assertEquals(120, region.getWidth());
+        assertEquals(90, region.getHeight());
+        for (int y = 0; y < 90; y += 7) {
+            for (int x = 0; x < 120; x += 7) {
+                assertEquals(source.getRGB(x + 50, y + 40), region.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    void regionsAreClippedToTheImage(@TempDir Path dir) throws IOException {
+        Path path = png(dir, TestDictionaries.gradientImage(100, 100));
+        BufferedImage clipped = ImageDecoder.decode(path, 100, new Rectangle(80, 90, 50, 50));
+        assertEquals(20, clipped.getWidth());
+        assertEquals(10, clipped.getHeight());
+
+        IOException e = assertThrows(IOException.class,
+                () -> ImageDecoder.decode(path, 100, new Rectangle(200, 200, 10, 10)));
+        assertTrue(e.getMessage().contains("outside the image"));
+    }
+
+    @Test
+    void streamsThatArentImagesAreRejected() {
+        assertThrows(IOException.class,
+                () -> ImageDecoder.decode(new ByteArrayInputStream(new byte[]{1, 2, 3}), 10, null));
+    }
+
+    @Test
+    void sizesAreReadFromTheHeader(@TempDir Path dir) throws IOException {
+        Path path = png(dir, TestDictionaries.gradientImage(321, 123));
+        assertEquals(new Dimension(321, 123), ImageDecoder.size(path));
+    }
+
+    @Test
+    void regionsAtMultiplesOfTheStepLineUpWithTheWholeImage(@TempDir Path dir) throws IOException {
+        BufferedImage source = TestDictionaries.gradientImage(401, 301);
+        Path path = png(dir, source);
+        BufferedImage whole = ImageDecoder.decodeSubsampled(path, null, 3);
+        BufferedImage region = ImageDecoder.decodeSubsampled(path, new Rectangle(30 * 3, 20 * 3, 50 * 3, 40 * 3), 3);
+        BufferedImage inMemory = ImageDecoder.subsample(source, new Rectangle(30 * 3, 20 * 3, 50 * 3, 40 * 3), 3);
+
+        assertEquals(134, whole.getWidth());
+        assertEquals(101, whole.getHeight());
+        assertEquals(50, region.getWidth());
+        assertEquals(50, inMemory.getWidth());
+        for (int y = 0; y < 40; y++) {
+            for (int x = 0; x < 50; x++) {
+                assertEquals(whole.getRGB(x + 30, y + 20), region.getRGB(x, y));
+                assertEquals(whole.getRGB(x + 30, y + 20), inMemory.getRGB(x, y));
+            }
+        }
+    }
+}
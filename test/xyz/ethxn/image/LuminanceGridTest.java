@@ -0,0 +1,134 @@
+package xyz.ethxn.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LuminanceGridTest {
+
+    private static BufferedImage noise(int width, int height, int type) {
+        BufferedImage rgb = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(width * 31L + height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                rgb.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        if (type == BufferedImage.TYPE_INT_RGB) {
+            return rgb;
+        }
+        BufferedImage converted = type == BufferedImage.TYPE_BYTE_INDEXED
+                ? new BufferedImage(width, height, type, grayPalette())
+                : new BufferedImage(width, height, type);
+        Graphics2D graphics = converted.createGraphics();
+        graphics.drawImage(rgb, 0, 0, null);
+        graphics.dispose();
+        return converted;
+    }
+
+    private static IndexColorModel grayPalette() {
+        byte[] levels = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            levels[i] = (byte) i;
+        }
+        return new IndexColorModel(8, 256, levels, levels, levels);
+    }
+
+    /**
+     * The area average of every output pixel, read pixel by pixel through the slow, general API.
+     */
+    private static byte[] expected(BufferedImage image, int outputWidth, int outputHeight) {
+        byte[] pixels = new byte[outputWidth * outputHeight];
+        for (int y = 0; y < outputHeight; y++) {
+            int y0 = y * image.getHeight() / outputHeight;
+            int y1 = Math.max(y0 + 1, (y + 1) * image.getHeight() / outputHeight);
+            for (int x = 0; x < outputWidth; x++) {
+                int x0 = x * image.getWidth() / outputWidth;
+                int x1 = Math.max(x0 + 1, (x + 1) * image.getWidth() / outputWidth);
+                long sum = 0;
+                for (int sy = y0; sy < y1; sy++) {
+                    for (int sx = x0; sx < x1; sx++) {
+                        sum += image.getType() == BufferedImage.TYPE_BYTE_GRAY
+                                ? image.getRaster().getSample(sx, sy, 0)
+                                : luminance(image.getRGB(sx, sy));
+                    }
+                }
+                pixels[y * outputWidth + x] = (byte) (sum / ((long) (y1 - y0) * (x1 - x0)));
+            }
+        }
+        return pixels;
+    }
+
+    private static int luminance(int rgb) {
+        return LuminanceGrid.luminance((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+    }
+
+    @Test
+    void everyImageTypeMatchesTheGeneralPath() {
+        int[] types = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR,
+                BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_BYTE_INDEXED};
+        for (int type : types) {
+            BufferedImage image = noise(97, 61, type);
+            LuminanceGrid grid = LuminanceGrid.fromImage(image, 40, 25);
+            assertArrayEquals(expected(image, 40, 25), grid.getPixels(), "type " + type);
+        }
+    }
+
+    @Test
+    void subImagesReadTheirOwnPixels() {
+        for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY}) {
+            BufferedImage sub = noise(120, 90, type).getSubimage(13, 7, 60, 50);
+            assertArrayEquals(expected(sub, 30, 25), LuminanceGrid.fromImage(sub, 30, 25).getPixels(), "type " + type);
+        }
+    }
+
+    @Test
+    void keepsTheAspectRatio() {
+        LuminanceGrid grid = LuminanceGrid.fromImage(noise(200, 100, BufferedImage.TYPE_INT_RGB), 50);
+        assertEquals(50, grid.getWidth());
+        assertEquals(25, grid.getHeight());
+    }
+
+    @Test
+    void upscalingRepeatsPixels() {
+        BufferedImage image = noise(3, 2, BufferedImage.TYPE_INT_RGB);
+        LuminanceGrid grid = LuminanceGrid.fromImage(image, 6, 4);
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 6; x++) {
+                assertEquals(luminance(image.getRGB(x / 2, y / 2)), grid.get(x, y));
+            }
+        }
+    }
+
+    @Test
+    void downsamplingMatchesResizingTheImage() {
+        // when the sizes divide evenly, averaging twice is averaging once, up to rounding
+        BufferedImage image = noise(120, 80, BufferedImage.TYPE_INT_RGB);
+        byte[] once = expected(image, 30, 20);
+        byte[] twice = LuminanceGrid.fromImage(image, 60, 40).downsample(30, 20).getPixels();
+        for (int i = 0; i < once.length; i++) {
+            assertEquals(once[i] & 0xFF, twice[i] & 0xFF, 1, "pixel " + i);
+        }
+    }
+
+    @Test
+    void cropsCopyTheRegion() {
+        LuminanceGrid grid = LuminanceGrid.fromImage(noise(40, 30, BufferedImage.TYPE_INT_RGB), 40, 30);
+        LuminanceGrid crop = grid.crop(5, 10, 20, 15);
+        assertEquals(20, crop.getWidth());
+        assertEquals(15, crop.getHeight());
+        for (int y = 0; y < 15; y++) {
+            for (int x = 0; x < 20; x++) {
+                assertEquals(grid.get(x + 5, y + 10), crop.get(x, y));
+            }
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> grid.crop(30, 0, 20, 10));
+    }
+}
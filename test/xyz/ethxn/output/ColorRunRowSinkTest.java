@@ -0,0 +1,69 @@
+package xyz.ethxn.output;
+
+import org.junit.jupiter.api.Test;
+import xyz.ethxn.image.ColorGrid;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ColorRunRowSinkTest {
+
+    private static ColorGrid colors(int... rgb) {
+        BufferedImage image = new BufferedImage(rgb.length, 1, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, rgb.length, 1, rgb, 0, rgb.length);
+        return ColorGrid.fromImage(image, rgb.length, 1);
+    }
+
+    private static String render(int tolerance, ColorGrid colors, String... rows) throws IOException {
+        StringBuilder out = new StringBuilder();
+        HtmlRowSink sink = new HtmlRowSink(out, tolerance);
+        sink.setColors(colors);
+        for (int y = 0; y < rows.length; y++) {
+            int[] codePoints = rows[y].codePoints().toArray();
+            sink.acceptRow(y, codePoints, codePoints.length);
+        }
+        return out.toString();
+    }
+
+    private static String span(String color, String text) {
+        return "<span style=\"color:#" + color + "\">" + text + "</span>";
+    }
+
+    @Test
+    void cellsAtTheToleranceJoinTheRun() throws IOException {
+        assertEquals(span("808080", "ab") + "\n",
+                render(12, colors(0x808080, 0x8C8080), "ab"));
+        assertEquals(span("808080", "ab") + "\n",
+                render(12, colors(0x808080, 0x80808C), "ab"));
+    }
+
+    @Test
+    void cellsPastTheToleranceStartANewRun() throws IOException {
+        assertEquals(span("808080", "a") + span("8d8080", "b") + "\n",
+                render(12, colors(0x808080, 0x8D8080), "ab"));
+        assertEquals(span("808080", "a") + span("807380", "b") + "\n",
+                render(12, colors(0x808080, 0x807380), "ab"));
+    }
+
+    @Test
+    void cellsAreComparedWithTheFirstCellOfTheirRun() throws IOException {
+        // each step is within the tolerance, but the third cell drifted too far from the first
+        assertEquals(span("808080", "ab") + span("909090", "cd") + "\n",
+                render(12, colors(0x808080, 0x888888, 0x909090, 0x989898), "abcd"));
+    }
+
+    @Test
+    void zeroToleranceSplitsEveryChange() throws IOException {
+        assertEquals(span("808080", "a") + span("808081", "b") + span("808080", "c") + "\n",
+                render(0, colors(0x808080, 0x808081, 0x808080), "abc"));
+    }
+
+    @Test
+    void rowsWithoutColorsArePlain() throws IOException {
+        assertEquals("𠀀a\n", render(12, null, "𠀀a"));
+        assertEquals(span("000000", "ab") + "\n" + "cd\n",
+                render(12, colors(0x000000, 0x000000), "ab", "cd"));
+    }
+}
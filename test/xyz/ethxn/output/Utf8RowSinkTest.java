@@ -0,0 +1,103 @@
+package xyz.ethxn.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class Utf8RowSinkTest {
+
+    private static final String[] ROWS = {
+            "plain ascii",
+            "éßΩ two bytes",
+            "汉字　龘",
+            "𠀀𪛞😀 supplementary",
+            "",
+    };
+
+    private static String write(Utf8RowSink sink, String... rows) throws IOException {
+        StringBuilder expected = new StringBuilder();
+        for (int y = 0; y < rows.length; y++) {
+            int[] codePoints = rows[y].codePoints().toArray();
+            // trailing garbage past the length must be ignored
+            int[] padded = Arrays.copyOf(codePoints, codePoints.length + 3);
+            padded[codePoints.length] = 0x20000;
+            sink.acceptRow(y, padded, codePoints.length);
+            expected.append(rows[y]).append('\n');
+        }
+        sink.finish();
+        return expected.toString();
+    }
+
+    @Test
+    void encodesEveryPlane() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String expected = write(new Utf8RowSink(out), ROWS);
+        assertEquals(expected, out.toString(StandardCharsets.UTF_8));
+        assertEquals(expected.getBytes(StandardCharsets.UTF_8).length, out.size());
+    }
+
+    @Test
+    void longRowsGrowTheBuffer() throws IOException {
+        StringBuilder row = new StringBuilder();
+        SplittableRandom random = new SplittableRandom(2);
+        for (int i = 0; i < 1000; i++) {
+            row.appendCodePoint(random.nextBoolean() ? 0x4E00 + random.nextInt(0x5000) : 0x20000 + random.nextInt(0xA000));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String expected = write(new Utf8RowSink(out), "short", row.toString(), "short");
+        assertEquals(expected, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void asyncWritesKeepRowsIntact() throws IOException {
+        // a slow stream, so rows are encoded while the previous one is still being written
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream slow = new OutputStream() {
+            @Override
+            public void write(int b) {
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                for (int i = off; i < off + len; i++) {
+                    out.write(b[i]);
+                    Thread.onSpinWait();
+                }
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        String[] rows = new String[60];
+        for (int y = 0; y < rows.length; y++) {
+            rows[y] = ROWS[y % ROWS.length] + y;
+        }
+        String expected = write(new Utf8RowSink(slow, true), rows);
+        assertEquals(expected, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void asyncWriteFailuresSurface() {
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        Utf8RowSink sink = new Utf8RowSink(broken, true);
+        IOException e = assertThrows(IOException.class, () -> write(sink, ROWS));
+        assertEquals("disk full", e.getMessage());
+    }
+}
@@ -0,0 +1,150 @@
+package xyz.ethxn.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.TestDictionaries;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HanziServerTest {
+
+    private HanziServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+    private static byte[] png;
+
+    @BeforeEach
+    void start() throws IOException {
+        // jobs up to 100 wide render two at a time, wider ones never get in
+        server = new HanziServer(TestDictionaries.dictionary(),
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 100, 2, 0);
+        server.setMaxUploadBytes(64 * 1024);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    private static synchronized byte[] png() throws IOException {
+        if (png == null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(TestDictionaries.gradientImage(240, 160), "png", out);
+            png = out.toByteArray();
+        }
+        return png;
+    }
+
+    private HttpResponse<String> post(String query, byte[] body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/render?" + query))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void rendersTheSameArtAsABuild() throws Exception {
+        HttpResponse<String> response = post("width=40&mode=complex&seed=5", png());
+        assertEquals(200, response.statusCode());
+
+        HanziArt hanziArt = new HanziArt();
+        hanziArt.setDictionary(TestDictionaries.dictionary());
+        hanziArt.setImage(TestDictionaries.gradientImage(240, 160));
+        hanziArt.setOutputWidth(40);
+        hanziArt.setBuildType("complex");
+        hanziArt.setSeed(5);
+        hanziArt.build();
+        assertEquals(hanziArt.getOutputArt().toString(), response.body());
+    }
+
+    @Test
+    void invalidParametersAreBadRequests() throws Exception {
+        assertEquals(400, post("width=0", png()).statusCode());
+        assertEquals(400, post("mode=sideways", png()).statusCode());
+        // the test dictionary has no ink density table
+        assertEquals(400, post("mode=density", png()).statusCode());
+    }
+
+    @Test
+    void imagesThatCantBeDecodedAreNotStreamedAsEmptyArt() throws Exception {
+        HttpResponse<String> response = post("width=40", new byte[]{1, 2, 3, 4});
+        assertTrue(response.statusCode() >= 400, "status " + response.statusCode());
+    }
+
+    @Test
+    void oversizedUploadsAreRejectedWithoutWaitingForTheLane() throws Exception {
+        long start = System.nanoTime();
+        // the large lane never has room, so a 413 here means the size was checked first
+        HttpResponse<String> response = post("width=500", new byte[64 * 1024 + 1]);
+        assertEquals(413, response.statusCode());
+        assertTrue(System.nanoTime() - start < 1_000_000_000L, "waited for admission");
+    }
+
+    @Test
+    void jobsThatCantGetIntoTheirLaneAreTurnedAway() throws Exception {
+        HttpResponse<String> large = post("width=500", png());
+        assertEquals(503, large.statusCode());
+        assertEquals("1", large.headers().firstValue("Retry-After").orElse(null));
+
+        // a full large lane doesn't hold up small jobs
+        assertEquals(200, post("width=40", png()).statusCode());
+
+        HttpResponse<String> metrics = client.send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/metrics")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertTrue(metrics.body().contains("hanzi_requests_rejected_total{lane=\"large\"} 1\n"), metrics.body());
+        assertTrue(metrics.body().contains("hanzi_requests_total{lane=\"small\"} 1\n"), metrics.body());
+    }
+
+    private String metrics() throws IOException, InterruptedException {
+        return client.send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/metrics")).build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    @Test
+    void uploadsThatDontFitTheBudgetAreTurnedAway() throws Exception {
+        server.setUploadBudgetBytes(60_000);
+
+        // a client that declares a large upload and then stalls holds its share of the budget
+        try (Socket stalled = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            OutputStream out = stalled.getOutputStream();
+            out.write(("POST /render?width=40 HTTP/1.1\r\nHost: localhost\r\nContent-Length: 40000\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (!metrics().contains("hanzi_upload_bytes_buffered 40000\n")) {
+                assertTrue(System.nanoTime() < deadline, "the stalled upload never reserved its bytes");
+                Thread.sleep(10);
+            }
+
+            HttpResponse<String> response = post("width=40", new byte[30_000]);
+            assertEquals(503, response.statusCode());
+            assertEquals("1", response.headers().firstValue("Retry-After").orElse(null));
+        }
+
+        // once the stalled client is gone its bytes are free again
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!metrics().contains("hanzi_upload_bytes_buffered 0\n")) {
+            assertTrue(System.nanoTime() < deadline, "the stalled upload kept its bytes");
+            Thread.sleep(10);
+        }
+        assertEquals(200, post("width=40", png()).statusCode());
+    }
+}
@@ -0,0 +1,140 @@
+package xyz.ethxn.shard;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.TestDictionaries;
+import xyz.ethxn.builder.HanziBuilder;
+import xyz.ethxn.output.AppendableRowSink;
+import xyz.ethxn.output.RowSink;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShardCoordinatorTest {
+
+    private static HanziArt art() {
+        HanziArt hanziArt = new HanziArt();
+        hanziArt.setDictionary(TestDictionaries.dictionary());
+        hanziArt.setImage(TestDictionaries.gradientImage(300, 600));
+        hanziArt.setOutputWidth(50);
+        hanziArt.setBuildType("complex");
+        hanziArt.setSeed(11);
+        return hanziArt;
+    }
+
+    private static String build() {
+        HanziArt hanziArt = art();
+        hanziArt.build();
+        return hanziArt.getOutputArt().toString();
+    }
+
+    @Test
+    void requestsSurviveTheProtocol() throws IOException {
+        HanziArt hanziArt = art();
+        ShardProtocol.StripeRequest request = new ShardProtocol.StripeRequest(3, "complex", 20, 2, 11, 12,
+                new HanziBuilder().prepareGrid(hanziArt));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ShardProtocol.writeRequest(new DataOutputStream(bytes), request);
+        ShardProtocol.StripeRequest read = ShardProtocol.readRequest(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(request.stripe(), read.stripe());
+        assertEquals(request.buildType(), read.buildType());
+        assertEquals(request.maxStrokeCount(), read.maxStrokeCount());
+        assertEquals(request.blockSize(), read.blockSize());
+        assertEquals(request.seed(), read.seed());
+        assertEquals(request.firstRow(), read.firstRow());
+        assertEquals(request.grid().getWidth(), read.grid().getWidth());
+        assertEquals(request.grid().getHeight(), read.grid().getHeight());
+    }
+
+    @Test
+    void killedWorkersHaveTheirStripesReassigned() throws IOException {
+        try (ShardCoordinator coordinator = new ShardCoordinator(
+                ShardCoordinator.workerCommand(TestDictionaries.txtPaths()), 3)) {
+            coordinator.setStripeRows(2);
+            StringBuilder art = new StringBuilder();
+            AppendableRowSink rows = new AppendableRowSink(art);
+            RowSink sink = new RowSink() {
+                @Override
+                public void acceptRow(int row, int[] codePoints, int length) throws IOException {
+                    if (row == 0) {
+                        // the workers are the only children of the test JVM
+                        ProcessHandle.current().children().findFirst().orElseThrow().destroyForcibly();
+                    }
+                    rows.acceptRow(row, codePoints, length);
+                }
+            };
+            coordinator.render(art(), sink);
+
+            assertEquals(2, coordinator.getLiveWorkers());
+            assertEquals(build(), art.toString());
+        }
+    }
+
+    @Test
+    void hungWorkersAreKilledAfterTheStripeTimeout(@TempDir Path tempDir) throws IOException {
+        // the first worker to start takes the lock and sleeps instead of answering
+        List<String> command = new ArrayList<>(List.of("sh", "-c",
+                "if mkdir \"$0\" 2>/dev/null; then exec sleep 600; else exec \"$@\"; fi",
+                tempDir.resolve("lock").toString()));
+        command.addAll(ShardCoordinator.workerCommand(TestDictionaries.txtPaths()));
+        try (ShardCoordinator coordinator = new ShardCoordinator(command, 2)) {
+            coordinator.setStripeRows(4);
+            coordinator.setStripeTimeout(3000);
+            StringBuilder art = new StringBuilder();
+            coordinator.render(art(), new AppendableRowSink(art));
+
+            assertEquals(1, coordinator.getLiveWorkers());
+            assertEquals(build(), art.toString());
+        }
+    }
+
+    @Test
+    void unseededRendersCanBeReproduced() throws IOException {
+        try (ShardCoordinator coordinator = new ShardCoordinator(
+                ShardCoordinator.workerCommand(TestDictionaries.txtPaths()), 2)) {
+            HanziArt hanziArt = art();
+            hanziArt.clearSeed();
+            StringBuilder art = new StringBuilder();
+            coordinator.render(hanziArt, new AppendableRowSink(art));
+
+            HanziArt reproduced = art();
+            reproduced.setSeed(hanziArt.getSeed());
+            reproduced.build();
+            assertEquals(reproduced.getOutputArt().toString(), art.toString());
+        }
+    }
+
+    @Test
+    void ditheredRendersAreRejected() throws IOException {
+        try (ShardCoordinator coordinator = new ShardCoordinator(
+                ShardCoordinator.workerCommand(TestDictionaries.txtPaths()), 1)) {
+            HanziArt hanziArt = art();
+            hanziArt.setDither(true);
+            assertThrows(IllegalArgumentException.class,
+                    () -> coordinator.render(hanziArt, new AppendableRowSink(new StringBuilder())));
+        }
+    }
+
+    @Test
+    void densityRendersAreRejected() throws IOException {
+        try (ShardCoordinator coordinator = new ShardCoordinator(
+                ShardCoordinator.workerCommand(TestDictionaries.txtPaths()), 1)) {
+            HanziArt hanziArt = art();
+            hanziArt.setBuildType("density");
+            assertThrows(IllegalArgumentException.class,
+                    () -> coordinator.render(hanziArt, new AppendableRowSink(new StringBuilder())));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package xyz.ethxn.tile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.ethxn.HanziArt;
+import xyz.ethxn.TestDictionaries;
+import xyz.ethxn.builder.HanziBuilder;
+import xyz.ethxn.image.ImageDecoder;
+import xyz.ethxn.image.LuminanceGrid;
+import xyz.ethxn.output.RowSink;
+
+import javax.imageio.ImageIO;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TileRendererTest {
+
+    private static HanziArt art(Path dir, String buildType) throws IOException {
+        // an odd size, so cell boundaries and subsampling steps don't divide evenly
+        Path image = dir.resolve("image.png");
+        ImageIO.write(TestDictionaries.gradientImage(997, 613), "png", image.toFile());
+        HanziArt hanziArt = new HanziArt();
+        hanziArt.setDictionary(TestDictionaries.dictionary());
+        hanziArt.setImage(image);
+        hanziArt.setOutputWidth(90);
+        hanziArt.setBuildType(buildType);
+        hanziArt.setSeed(12);
+        return hanziArt;
+    }
+
+    private static int[] viewport(TileRenderer renderer, int level, int x, int y, int columns, int rows) throws IOException {
+        int[][] out = new int[1][];
+        renderer.renderViewport(level, x, y, columns, rows, new RowSink() {
+            private int width;
+
+            @Override
+            public void begin(int rows, int columns) {
+                out[0] = new int[rows * columns];
+                width = columns;
+            }
+
+            @Override
+            public void acceptRow(int row, int[] codePoints, int length) {
+                System.arraycopy(codePoints, 0, out[0], row * width, length);
+            }
+        });
+        return out[0];
+    }
+
+    /**
+     * Checks every tile grid of a level against the same cells of a renderer
+     * with bigger tiles, a multiple of the tile size of the other.
+     */
+    private static void assertStitches(TileRenderer reference, TileRenderer tiled, int level, int scale, String message) throws IOException {
+        assertEquals(reference.getColumns(level), tiled.getColumns(level));
+        assertEquals(reference.getRows(level), tiled.getRows(level));
+        int size = tiled.getTileSize();
+        int ratio = reference.getTileSize() / size;
+        for (int tileY = 0; tileY * size < tiled.getRows(level); tileY++) {
+            for (int tileX = 0; tileX * size < tiled.getColumns(level); tileX++) {
+                LuminanceGrid tile = tiled.tileGrid(level, tileX, tileY);
+                LuminanceGrid big = reference.tileGrid(level, tileX / ratio, tileY / ratio);
+                LuminanceGrid expected = big.crop(tileX % ratio * size * scale, tileY % ratio * size * scale,
+                        tile.getWidth(), tile.getHeight());
+                assertArrayEquals(expected.getPixels(), tile.getPixels(),
+                        message + " level " + level + " tile " + tileX + "," + tileY);
+            }
+        }
+    }
+
+    @Test
+    void tileGridsStitchIntoTheWholeLevel(@TempDir Path dir) throws IOException {
+        for (String buildType : new String[]{"fast", "complex"}) {
+            HanziArt hanziArt = art(dir, buildType);
+            int scale = HanziBuilder.gridScale(hanziArt);
+            try (TileRenderer tiled = new TileRenderer(hanziArt, 7, 1 << 20, 0);
+                 TileRenderer bigger = new TileRenderer(hanziArt, 21, 1 << 20, 0);
+                 // one tile covers the whole of level 0, so its region is the whole image
+                 TileRenderer whole = new TileRenderer(hanziArt, 1001, 1 << 20, 0)) {
+                assertEquals(1, whole.getLevels());
+                assertStitches(whole, tiled, 0, scale, buildType);
+                for (int level = 0; level < bigger.getLevels(); level++) {
+                    assertStitches(bigger, tiled, level, scale, buildType);
+                }
+            }
+        }
+    }
+
+    @Test
+    void wholeLevelsMatchAResizeOfTheSubsampledImage(@TempDir Path dir) throws IOException {
+        HanziArt hanziArt = art(dir, "fast");
+        BufferedImage image = TestDictionaries.gradientImage(997, 613);
+        hanziArt.setImage(image);
+        try (TileRenderer whole = new TileRenderer(hanziArt, 1000, 1 << 20, 0)) {
+            LuminanceGrid grid = whole.tileGrid(0, 0, 0);
+            assertEquals(90, grid.getWidth());
+            assertEquals(90 * 613 / 997, grid.getHeight());
+            BufferedImage subsampled = ImageDecoder.subsample(image, null, ImageDecoder.subsampling(997, 90));
+            LuminanceGrid expected = LuminanceGrid.fromImage(subsampled, grid.getWidth(), grid.getHeight());
+            assertArrayEquals(expected.getPixels(), grid.getPixels());
+        }
+    }
+
+    @Test
+    void viewportsAreStitchedFromTheTiles(@TempDir Path dir) throws IOException {
+        try (TileRenderer renderer = new TileRenderer(art(dir, "complex"), 7, 1 << 20, 0)) {
+            int columns = renderer.getColumns(0);
+            int rows = renderer.getRows(0);
+            int[] full = viewport(renderer, 0, 0, 0, columns, rows);
+
+            for (int tileY = 0; tileY * 7 < rows; tileY++) {
+                for (int tileX = 0; tileX * 7 < columns; tileX++) {
+                    Tile tile = renderer.getTile(0, tileX, tileY);
+                    for (int y = 0; y < tile.rows(); y++) {
+                        for (int x = 0; x < tile.columns(); x++) {
+                            assertEquals(full[(tileY * 7 + y) * columns + tileX * 7 + x], tile.codePoints()[y * tile.columns() + x]);
+                        }
+                    }
+                }
+            }
+
+            // a viewport that straddles tile edges is a window onto the same art
+            int[] window = viewport(renderer, 0, 5, 3, 20, 11);
+            for (int y = 0; y < 11; y++) {
+                for (int x = 0; x < 20; x++) {
+                    assertEquals(full[(y + 3) * columns + x + 5], window[y * 20 + x]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void evictedTilesComeBackTheSame(@TempDir Path dir) throws IOException {
+        HanziArt hanziArt = art(dir, "fast");
+        int[] first;
+        try (TileRenderer renderer = new TileRenderer(hanziArt, 7, 1 << 20, 0)) {
+            first = renderer.getTile(0, 2, 1).codePoints();
+        }
+        // a cache too small for any tile renders every tile again
+        try (TileRenderer renderer = new TileRenderer(hanziArt, 7, 1, 0)) {
+            renderer.getTile(0, 2, 1);
+            assertArrayEquals(first, renderer.getTile(0, 2, 1).codePoints());
+            assertEquals(2, renderer.getRenderedTileCount());
+        }
+    }
+
+    @Test
+    void sourceRegionsAreTiledOnTheirOwn(@TempDir Path dir) throws IOException {
+        HanziArt cropped = art(dir, "fast");
+        cropped.setSourceRegion(new Rectangle(100, 50, 400, 300));
+        try (TileRenderer renderer = new TileRenderer(cropped, 1000, 1 << 20, 0)) {
+            assertEquals(90 * 300 / 400, renderer.getRows(0));
+            LuminanceGrid grid = renderer.tileGrid(0, 0, 0);
+            BufferedImage region = TestDictionaries.gradientImage(997, 613).getSubimage(100, 50, 400, 300);
+            LuminanceGrid expected = LuminanceGrid.fromImage(ImageDecoder.subsample(region, null, ImageDecoder.subsampling(400, 90)),
+                    grid.getWidth(), grid.getHeight());
+            assertArrayEquals(expected.getPixels(), grid.getPixels());
+        }
+    }
+
+    @Test
+    void ditheredRendersAreRejected(@TempDir Path dir) throws IOException {
+        HanziArt hanziArt = art(dir, "fast");
+        hanziArt.setDither(true);
+        assertThrows(IllegalArgumentException.class, () -> new TileRenderer(hanziArt, 7, 1 << 20, 0));
+    }
+}